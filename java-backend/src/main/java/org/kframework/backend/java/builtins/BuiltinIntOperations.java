@@ -14,18 +14,46 @@ import java.util.Random;
 public class BuiltinIntOperations {
 
     public static IntToken add(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            try {
+                return IntToken.of(Math.addExact(term1.longValue(), term2.longValue()));
+            } catch (ArithmeticException e) {
+                // overflow; fall back to arbitrary precision
+            }
+        }
         return IntToken.of(term1.bigIntegerValue().add(term2.bigIntegerValue()));
     }
 
     public static IntToken sub(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            try {
+                return IntToken.of(Math.subtractExact(term1.longValue(), term2.longValue()));
+            } catch (ArithmeticException e) {
+                // overflow; fall back to arbitrary precision
+            }
+        }
         return IntToken.of(term1.bigIntegerValue().subtract(term2.bigIntegerValue()));
     }
 
     public static IntToken mul(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            try {
+                return IntToken.of(Math.multiplyExact(term1.longValue(), term2.longValue()));
+            } catch (ArithmeticException e) {
+                // overflow; fall back to arbitrary precision
+            }
+        }
         return IntToken.of(term1.bigIntegerValue().multiply(term2.bigIntegerValue()));
     }
 
     public static IntToken div(IntToken term1, IntToken term2, TermContext context) {
+        if (term2.signum() == 0) {
+            return null;
+        }
+        /* Long.MIN_VALUE / -1 overflows */
+        if (term1.isLong() && term2.isLong() && (term1.longValue() != Long.MIN_VALUE || term2.longValue() != -1)) {
+            return IntToken.of(term1.longValue() / term2.longValue());
+        }
         try {
             return IntToken.of(term1.bigIntegerValue().divide(term2.bigIntegerValue()));
         } catch (ArithmeticException e) {
@@ -44,6 +72,13 @@ public class BuiltinIntOperations {
     }
 
     public static IntToken rem(IntToken term1, IntToken term2, TermContext context) {
+        if (term2.signum() == 0) {
+            return null;
+        }
+        if (term1.isLong() && term2.isLong()) {
+            /* the remainder of Long.MIN_VALUE by -1 is 0 in Java, so no overflow check is needed */
+            return IntToken.of(term1.longValue() % term2.longValue());
+        }
         try {
             return IntToken.of(term1.bigIntegerValue().remainder(term2.bigIntegerValue()));
         } catch (ArithmeticException e) {
@@ -52,6 +87,9 @@ public class BuiltinIntOperations {
     }
 
     public static IntToken mod(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong() && term2.longValue() > 0) {
+            return IntToken.of(Math.floorMod(term1.longValue(), term2.longValue()));
+        }
         return IntToken.of(term1.bigIntegerValue().mod(term2.bigIntegerValue()));
     }
 
@@ -60,69 +98,98 @@ public class BuiltinIntOperations {
     }
 
     public static IntToken shl(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong() && term2.longValue() >= 0 && term2.longValue() < Long.SIZE) {
+            long value = term1.longValue();
+            int shift = (int) term2.longValue();
+            long result = value << shift;
+            if (result >> shift == value) {
+                return IntToken.of(result);
+            }
+        }
         return IntToken.of(term1.bigIntegerValue().shiftLeft(term2.bigIntegerValue().intValue()));
     }
 
     public static IntToken shr(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong() && term2.longValue() >= 0) {
+            return IntToken.of(term1.longValue() >> Math.min(term2.longValue(), Long.SIZE - 1));
+        }
         return IntToken.of(term1.bigIntegerValue().shiftRight(term2.bigIntegerValue().intValue()));
     }
 
     public static IntToken not(IntToken term, TermContext context) {
+        if (term.isLong()) {
+            return IntToken.of(~term.longValue());
+        }
         return IntToken.of(term.bigIntegerValue().not());
     }
 
     public static IntToken and(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            return IntToken.of(term1.longValue() & term2.longValue());
+        }
         return IntToken.of(term1.bigIntegerValue().and(term2.bigIntegerValue()));
     }
 
     public static IntToken or(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            return IntToken.of(term1.longValue() | term2.longValue());
+        }
         return IntToken.of(term1.bigIntegerValue().or(term2.bigIntegerValue()));
     }
 
     public static IntToken xor(IntToken term1, IntToken term2, TermContext context) {
+        if (term1.isLong() && term2.isLong()) {
+            return IntToken.of(term1.longValue() ^ term2.longValue());
+        }
         return IntToken.of(term1.bigIntegerValue().xor(term2.bigIntegerValue()));
     }
 
     public static IntToken min(IntToken term1, IntToken term2, TermContext context) {
-        return IntToken.of(term1.bigIntegerValue().min(term2.bigIntegerValue()));
+        return term1.compareTo(term2) <= 0 ? term1 : term2;
     }
 
     public static IntToken max(IntToken term1, IntToken term2, TermContext context) {
-        return IntToken.of(term1.bigIntegerValue().max(term2.bigIntegerValue()));
+        return term1.compareTo(term2) >= 0 ? term1 : term2;
     }
 
     public static IntToken abs(IntToken term, TermContext context) {
+        if (term.signum() >= 0) {
+            return term;
+        }
+        if (term.isLong() && term.longValue() != Long.MIN_VALUE) {
+            return IntToken.of(-term.longValue());
+        }
         return IntToken.of(term.bigIntegerValue().abs());
     }
 
     public static BoolToken eq(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) == 0);
+        return BoolToken.of(term1.compareTo(term2) == 0);
     }
 
     public static BoolToken ne(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) != 0);
+        return BoolToken.of(term1.compareTo(term2) != 0);
     }
 
     public static BoolToken gt(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) > 0);
+        return BoolToken.of(term1.compareTo(term2) > 0);
     }
 
     public static BoolToken ge(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) >= 0);
+        return BoolToken.of(term1.compareTo(term2) >= 0);
     }
 
     public static BoolToken lt(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) < 0);
+        return BoolToken.of(term1.compareTo(term2) < 0);
     }
 
     public static BoolToken le(IntToken term1, IntToken term2, TermContext context) {
-        return BoolToken.of(term1.bigIntegerValue().compareTo(term2.bigIntegerValue()) <= 0);
+        return BoolToken.of(term1.compareTo(term2) <= 0);
     }
 
     private static final Random randomGenerator = new Random();
 
     public static IntToken rand(IntToken upperBound, TermContext context) {
-        if (upperBound.bigIntegerValue().compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
+        if (!upperBound.isLong() || upperBound.longValue() > Integer.MAX_VALUE) {
             return null;
         }
         return IntToken.of(randomGenerator.nextInt(upperBound.intValue()));
@@ -9,12 +9,15 @@ import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.kil.ASTNode;
 
 import java.math.BigInteger;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
 
 
 /**
  * An integer token. Integer tokens have arbitrary precision.
+ * <p>
+ * Values which fit in a {@code long} are stored unboxed; a {@link BigInteger} is only allocated for
+ * larger values. The representation is canonical: an {@code IntToken} holds a {@code BigInteger} if
+ * and only if its value does not fit in a {@code long}.
  *
  * @author AndreiS
  */
@@ -22,29 +25,57 @@ public final class IntToken extends Token {
 
     public static final Sort SORT = Sort.INT;
 
-    /* BigInteger value wrapped by this IntToken */
-    private final BigInteger value;
+    private static final long CACHE_LOW = -128;
+    private static final long CACHE_HIGH = 1024;
 
-    private IntToken(BigInteger value) {
-        this.value = value;
+    /* preallocated tokens for the values in [CACHE_LOW, CACHE_HIGH] */
+    private static final IntToken[] cache = new IntToken[(int) (CACHE_HIGH - CACHE_LOW + 1)];
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new IntToken(CACHE_LOW + i, null);
+        }
+    }
+
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /* value wrapped by this IntToken, if it fits in a long */
+    private final long smallValue;
+
+    /* BigInteger value wrapped by this IntToken, or null if the value fits in a long */
+    private final BigInteger bigValue;
+
+    private IntToken(long smallValue, BigInteger bigValue) {
+        this.smallValue = smallValue;
+        this.bigValue = bigValue;
     }
 
     /**
-     * Returns a {@code IntToken} representation of the given {@link BigInteger} value. The
-     * {@code IntToken} instances are cached to ensure uniqueness (subsequent invocations of this
-     * method with the same {@code BigInteger} value return the same {@code IntToken} object).
+     * Returns a {@code IntToken} representation of the given {@link BigInteger} value. Small values
+     * are cached (subsequent invocations of this method with the same small value return the same
+     * {@code IntToken} object).
      */
     public static IntToken of(BigInteger value) {
         assert value != null;
-        return new IntToken(value);
+        if (value.bitLength() < Long.SIZE) {
+            return of(value.longValue());
+        }
+        return new IntToken(0, value);
     }
 
     public static IntToken of(long value) {
-        return of(BigInteger.valueOf(value));
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return cache[(int) (value - CACHE_LOW)];
+        }
+        return new IntToken(value, null);
     }
 
     public static IntToken of(String value) {
         try {
+            if (value.length() < 19) {
+                return IntToken.of(Long.parseLong(value));
+            }
             return IntToken.of(new BigInteger(value));
         } catch (NumberFormatException e) {
             if (value.codePointCount(0, value.length()) == 1) {
@@ -57,11 +88,19 @@ public final class IntToken extends Token {
         }
     }
 
+    /**
+     * Returns true if the value of this IntToken fits in a {@code long}, in which case
+     * {@link #longValue()} does not throw.
+     */
+    public boolean isLong() {
+        return bigValue == null;
+    }
+
     /**
      * Returns a {@link BigInteger} representation of the (interpreted) value of this IntToken.
      */
     public BigInteger bigIntegerValue() {
-        return value;
+        return bigValue != null ? bigValue : BigInteger.valueOf(smallValue);
     }
 
     /**
@@ -70,13 +109,7 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer does not fit in an int.
      */
     public int intValue() {
-        if (value.compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
-            throw new ArithmeticException();
-        }
-        if (value.compareTo(BigInteger.valueOf(Integer.MIN_VALUE)) < 0) {
-            throw new ArithmeticException();
-        }
-        return (int)value.longValue();
+        return Math.toIntExact(longValue());
     }
 
     /**
@@ -85,13 +118,10 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer does not fit in a long.
      */
     public long longValue() {
-        if (value.compareTo(BigInteger.valueOf(Long.MAX_VALUE)) > 0) {
-            throw new ArithmeticException();
-        }
-        if (value.compareTo(BigInteger.valueOf(Long.MIN_VALUE)) < 0) {
+        if (bigValue != null) {
             throw new ArithmeticException();
         }
-        return value.longValue();
+        return smallValue;
     }
 
     /**
@@ -100,13 +130,27 @@ public final class IntToken extends Token {
      * @throws ArithmeticException Integer is not in the range of an unsigned byte.
      */
     public byte unsignedByteValue() {
-        if (value.compareTo(BigInteger.valueOf(255)) > 0) {
+        if (bigValue != null || smallValue < 0 || smallValue > 255) {
             throw new ArithmeticException();
         }
-        if (value.compareTo(BigInteger.valueOf(0)) < 0) {
-            throw new ArithmeticException();
+        return (byte) smallValue;
+    }
+
+    /**
+     * Returns the signum function of the (interpreted) value of this IntToken.
+     */
+    public int signum() {
+        return bigValue != null ? bigValue.signum() : Long.signum(smallValue);
+    }
+
+    /**
+     * Compares the (interpreted) values of this IntToken and the given one.
+     */
+    public int compareTo(IntToken other) {
+        if (bigValue == null && other.bigValue == null) {
+            return Long.compare(smallValue, other.smallValue);
         }
-        return (byte)value.longValue();
+        return bigIntegerValue().compareTo(other.bigIntegerValue());
     }
 
     @Override
@@ -119,12 +163,22 @@ public final class IntToken extends Token {
      */
     @Override
     public String value() {
-        return value.toString();
+        return bigValue != null ? bigValue.toString() : Long.toString(smallValue);
     }
 
+    /**
+     * Returns the same hash code as {@link BigInteger#hashCode()} on the value of this IntToken,
+     * without allocating a {@code BigInteger}.
+     */
     @Override
     protected int computeHash() {
-        return value.hashCode();
+        if (bigValue != null) {
+            return bigValue.hashCode();
+        }
+        /* the magnitude as an unsigned long; correct for Long.MIN_VALUE as well */
+        long magnitude = Math.abs(smallValue);
+        int h = 31 * (int) (magnitude >>> 32) + (int) magnitude;
+        return h * Long.signum(smallValue);
     }
 
     @Override
@@ -134,7 +188,7 @@ public final class IntToken extends Token {
 
         IntToken intToken = (IntToken) o;
 
-        return value.equals(intToken.value);
+        return smallValue == intToken.smallValue && Objects.equals(bigValue, intToken.bigValue);
 
     }
 
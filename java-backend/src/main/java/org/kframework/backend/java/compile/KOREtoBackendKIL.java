@@ -28,11 +28,17 @@ import org.kframework.utils.BitSet;
 
 import static org.kframework.Collections.*;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RecursiveTask;
 import java.util.stream.Collectors;
 
 import com.google.common.collect.Lists;
@@ -45,6 +51,15 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
 
     public static final String THE_VARIABLE = "THE_VARIABLE";
 
+    /**
+     * Ground inputs with at least this many nodes are converted in parallel by {@link #convertInput}.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    /**
+     * Subterms of a parallel conversion with fewer nodes are converted by the task which reaches them.
+     */
+    private static final int PARALLEL_GRAIN = 1 << 10;
+
     private final Module module;
     private final Definition definition;
     private final GlobalContext global;
@@ -58,19 +73,104 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
 
     private final HashMap<String, Variable> variableTable = new HashMap<>();
 
+    private final Tables tables;
+    /* the terms converted so far by convertInput, or null outside of it */
+    private Map<org.kframework.kore.K, Term> memo;
+
     public KOREtoBackendKIL(Module module, Definition definition, GlobalContext global, boolean freshRules) {
         this.module = module;
         this.definition = definition;
         this.global = global;
         this.freshRules = freshRules;
+        this.tables = definition.conversionTables(module);
+
+        kSeqLabel = tables.kLabel(KLabels.KSEQ);
+        kDotLabel = tables.kLabel(KLabels.DOTK);
+    }
+
+    /**
+     * The translation of the labels of a module, shared by all the converters for the module and kept by its
+     * {@link Definition}. The entries are computed on first use.
+     */
+    public static final class Tables {
+        private final Module module;
+        private final Definition definition;
+        /* for the unit of an associative label, that label */
+        private final Map<String, String> assocLabelForUnit = new HashMap<>();
+        private final ConcurrentMap<String, KLabelConstant> kLabels = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Label> labels = new ConcurrentHashMap<>();
+
+        public Tables(Module module, Definition definition) {
+            this.module = module;
+            this.definition = definition;
+            definition.kLabelAttributes().forEach((label, attributes) -> {
+                if (effectivelyAssocAttributes(attributes)) {
+                    assocLabelForUnit.putIfAbsent(attributes.getAttr(Attribute.keyOf(Att.unit())), label);
+                }
+            });
+        }
+
+        public Module module() {
+            return module;
+        }
+
+        private KLabelConstant kLabel(String name) {
+            KLabelConstant kLabel = kLabels.get(name);
+            if (kLabel == null) {
+                kLabel = kLabels.computeIfAbsent(name, n -> KLabelConstant.of(n, definition));
+            }
+            return kLabel;
+        }
 
-        kSeqLabel = KLabelConstant.of(KLabels.KSEQ, global.getDefinition());
-        kDotLabel = KLabelConstant.of(KLabels.DOTK, global.getDefinition());
+        private Label label(KLabel klabel) {
+            Label label = labels.get(klabel.name());
+            if (label == null) {
+                label = labels.computeIfAbsent(klabel.name(), n -> new Label(klabel));
+            }
+            return label;
+        }
+
+        /**
+         * How the applications of a label are converted.
+         */
+        private final class Label {
+            /* for an associative label, the sort and the unit of its lists */
+            private final Sort assocSort;
+            private final KLabelConstant assocUnit;
+            /* for the unit of an associative label, the sort of its lists and that label */
+            private final Sort unitOfSort;
+            private final KLabelConstant unitOf;
+
+            private Label(KLabel klabel) {
+                if (effectivelyAssocAttributes(definition.kLabelAttributesOf(klabel.name()))) {
+                    assocSort = Sort.of(module.productionsFor().get(klabel).get().head().sort().name());
+                    assocUnit = kLabel(module.attributesFor().get(klabel).get().<String>get(Att.unit()).get());
+                } else {
+                    assocSort = null;
+                    assocUnit = null;
+                }
+                String assocLabel = assocLabelForUnit.get(klabel.name());
+                if (assocLabel != null) {
+                    unitOfSort = Sort.of(stream(module.productionsFor().toStream()).filter(t -> t._1.name().equals(assocLabel)).findAny().get()._2.head().sort().name());
+                    unitOf = kLabel(assocLabel);
+                } else {
+                    unitOfSort = null;
+                    unitOf = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the variables converted so far, so that this converter can be reused for unrelated terms.
+     */
+    public void clearVariables() {
+        variableTable.clear();
     }
 
     @Override
     public KLabelConstant KLabel(String name) {
-        return KLabelConstant.of(name, global.getDefinition());
+        return tables.kLabel(name);
     }
 
     @Override
@@ -109,27 +209,32 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
                     global);
         }
 
+        return convertKApply(klabel, KList(klist.items()), att);
+    }
+
+    /**
+     * Converts an application of a label other than a rewrite or a disjunction to already converted children.
+     */
+    private Term convertKApply(org.kframework.kore.KLabel klabel, KList convertedKList, Att att) {
         Term convertedKLabel = convert1(klabel);
-        KList convertedKList = KList(klist.items());
+        Tables.Label label = tables.label(klabel);
 
         // associative operator
-        if (effectivelyAssocAttributes(definition.kLabelAttributesOf(klabel.name()))) {
+        if (label.assocSort != null) {
             // this assumes there are no KLabel variables
             BuiltinList.Builder builder = BuiltinList.builder(
-                    Sort.of(module.productionsFor().get(klabel).get().head().sort().name()),
+                    label.assocSort,
                     (KLabelConstant) convertedKLabel,
-                    KLabelConstant.of(module.attributesFor().get(klabel).get().<String>get(Att.unit()).get(), global.getDefinition()),
+                    label.assocUnit,
                     global);
             // this assumes there are no KList variables in the KList
             return builder.addAll(convertedKList.getContents()).build();
         }
 
-        Optional<String> assocKLabelForUnit = getAssocKLabelForUnit(klabel);
-        if (assocKLabelForUnit.isPresent()) {
+        if (label.unitOf != null) {
             BuiltinList.Builder builder = BuiltinList.builder(
-                    //Sort.of(module.productionsFor().get(klabel).get().head().sort().name()),
-                    Sort.of(stream(module.productionsFor().toStream()).filter(t -> t._1.name().equals(assocKLabelForUnit.get())).findAny().get()._2.head().sort().name()),
-                    KLabelConstant.of(assocKLabelForUnit.get(), global.getDefinition()),
+                    label.unitOfSort,
+                    label.unitOf,
                     (KLabelConstant) convertedKLabel,
                     global);
             return builder.build();
@@ -149,13 +254,6 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
         return kItem;
     }
 
-    private Optional<String> getAssocKLabelForUnit(KLabel klabel) {
-        return definition.kLabelAttributes().entrySet().stream()
-                .filter(e -> effectivelyAssocAttributes(e.getValue()) && e.getValue().getAttr(Attribute.keyOf(Att.unit())).equals(klabel.name()))
-                .map(e -> e.getKey())
-                .findAny();
-    }
-
     private static boolean effectivelyAssocAttributes(Attributes attributes) {
         return attributes.containsKey(Attribute.keyOf(Att.assoc())) && !attributes.containsKey(Attribute.keyOf(Att.comm()))
                 || attributes.containsKey(Attribute.keyOf(Att.bag()));
@@ -292,6 +390,19 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
     }
 
     public Term convert(org.kframework.kore.K k) {
+        /* the terms of the backend are returned as they are, although its applications are KApply instances */
+        if (memo == null || k instanceof Term || !(k instanceof KApply || k instanceof org.kframework.kore.KSequence)) {
+            return convertTerm(k);
+        }
+        Term term = memo.get(k);
+        if (term == null) {
+            term = convertTerm(k);
+            memo.put(k, term);
+        }
+        return term;
+    }
+
+    private Term convertTerm(org.kframework.kore.K k) {
         if (k instanceof Term)
             return (Term) k;
         else if (k instanceof org.kframework.kore.KToken)
@@ -310,6 +421,106 @@ public class KOREtoBackendKIL extends org.kframework.kore.AbstractConstructors<o
             throw new AssertionError("BUM!");
     }
 
+    /**
+     * Converts a term given as input to the rewriter, such as an initial configuration.
+     * <p>
+     * Unlike {@link #convert(org.kframework.kore.K)}, the subterms shared by reference in the input are converted
+     * once and shared in the result, and the large subterms of a ground input are converted in parallel, each task
+     * with its own converter.
+     */
+    public Term convertInput(org.kframework.kore.K k) {
+        Map<org.kframework.kore.K, Integer> sizes = new IdentityHashMap<>();
+        boolean[] ground = {true};
+        int size = measure(k, sizes, ground);
+        if (ground[0] && size >= PARALLEL_THRESHOLD) {
+            return new ConversionTask(k, sizes).invoke();
+        }
+        memo = new IdentityHashMap<>();
+        try {
+            return convert(k);
+        } finally {
+            memo = null;
+        }
+    }
+
+    /**
+     * Records the number of nodes of each application and sequence in the given term, not counting the subterms
+     * already measured, and clears {@code ground} if the term contains a variable or a rewrite.
+     */
+    private static int measure(org.kframework.kore.K k, Map<org.kframework.kore.K, Integer> sizes, boolean[] ground) {
+        List<org.kframework.kore.K> items;
+        if (k instanceof Term) {
+            return 1;
+        } else if (k instanceof KApply) {
+            if (((KApply) k).klabel() instanceof KVariable) {
+                ground[0] = false;
+            }
+            items = ((KApply) k).klist().items();
+        } else if (k instanceof org.kframework.kore.KSequence) {
+            items = ((org.kframework.kore.KSequence) k).items();
+        } else {
+            if (k instanceof KVariable || k instanceof KRewrite
+                    || k instanceof org.kframework.kore.InjectedKLabel && ((org.kframework.kore.InjectedKLabel) k).klabel() instanceof KVariable) {
+                ground[0] = false;
+            }
+            return 1;
+        }
+        if (sizes.containsKey(k)) {
+            return 0;
+        }
+        int size = 1;
+        for (org.kframework.kore.K item : items) {
+            size += measure(item, sizes, ground);
+        }
+        sizes.put(k, size);
+        return size;
+    }
+
+    private final class ConversionTask extends RecursiveTask<Term> {
+        private final org.kframework.kore.K k;
+        private final Map<org.kframework.kore.K, Integer> sizes;
+
+        private ConversionTask(org.kframework.kore.K k, Map<org.kframework.kore.K, Integer> sizes) {
+            this.k = k;
+            this.sizes = sizes;
+        }
+
+        @Override
+        protected Term compute() {
+            KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, global, freshRules);
+            converter.memo = new IdentityHashMap<>();
+            return converter.convertInParallel(k, sizes);
+        }
+    }
+
+    /**
+     * Converts a large application by forking a task for each of its large children and converting the others.
+     */
+    private Term convertInParallel(org.kframework.kore.K k, Map<org.kframework.kore.K, Integer> sizes) {
+        Integer size = sizes.get(k);
+        if (!(k instanceof KApply) || size == null || size < PARALLEL_GRAIN
+                || ((KApply) k).klabel().name().equals(KLabels.KREWRITE)
+                || ((KApply) k).klabel().name().equals(KLabels.ML_OR)) {
+            return convert(k);
+        }
+        List<org.kframework.kore.K> items = ((KApply) k).klist().items();
+        List<ConversionTask> tasks = new ArrayList<>(items.size());
+        for (org.kframework.kore.K item : items) {
+            Integer itemSize = sizes.get(item);
+            tasks.add(itemSize != null && itemSize >= PARALLEL_GRAIN ? (ConversionTask) new ConversionTask(item, sizes).fork() : null);
+        }
+        List<Term> convertedItems = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            convertedItems.add(tasks.get(i) == null ? convert(items.get(i)) : null);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (tasks.get(i) != null) {
+                convertedItems.set(i, tasks.get(i).join());
+            }
+        }
+        return convertKApply(((KApply) k).klabel(), KList(convertedItems), k.att());
+    }
+
     public Rule convert(Optional<Module> module, org.kframework.definition.Rule rule) {
         K leftHandSide = RewriteToTop.toLeft(rule.body());
         org.kframework.kil.Rule oldRule = new org.kframework.kil.Rule();
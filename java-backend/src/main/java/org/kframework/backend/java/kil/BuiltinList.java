@@ -5,11 +5,14 @@ import com.google.common.collect.ImmutableList;
 import org.kframework.backend.java.symbolic.Transformer;
 import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.backend.java.util.Constants;
+import org.kframework.backend.java.util.PersistentVector;
 import org.kframework.builtin.KLabels;
 import org.kframework.kil.ASTNode;
 import org.kframework.utils.BitSet;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
 
@@ -19,21 +22,26 @@ import java.util.stream.Collectors;
 public class BuiltinList extends Collection implements CollectionInternalRepresentation, HasGlobalContext {
 
     /**
-     * Flattened list of children.
+     * Flattened list of children. The persistent representation allows appending, slicing, and
+     * concatenating lists in logarithmic time.
      */
-    public final ImmutableList<Term> children;
+    public final PersistentVector<Term> children;
     public final Sort sort;
     public final KLabelConstant operatorKLabel;
     public final KLabelConstant unitKLabel;
     private final GlobalContext global;
 
-    private final ElementTailSplit elementTailSplits[];
+    /**
+     * Lazily allocated, as most lists are never matched against as patterns. Volatile, and with atomic
+     * elements, because patterns are shared by the threads of parallel search and prove.
+     */
+    private volatile AtomicReferenceArray<ElementTailSplit> elementTailSplits;
 
     /**
      * Private constructor used by {@link BuiltinList.Builder}.
      */
     private BuiltinList(
-            ImmutableList<Term> children,
+            PersistentVector<Term> children,
             Sort sort,
             KLabelConstant operatorKLabel,
             KLabelConstant unitKLabel,
@@ -44,8 +52,6 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
         this.operatorKLabel = operatorKLabel;
         this.unitKLabel = unitKLabel;
         this.global = global;
-
-        elementTailSplits = new ElementTailSplit[children.size()];
     }
 
     /**
@@ -77,7 +83,13 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
      * Returns the element component and the tail component of the list child on position index.
      */
     public ElementTailSplit splitElementTail(int index, int bitSetLength) {
-        if (elementTailSplits[index] == null) {
+        AtomicReferenceArray<ElementTailSplit> splits = elementTailSplits;
+        if (splits == null) {
+            /* if several threads race to allocate the array, the splits computed in the discarded ones are lost */
+            splits = new AtomicReferenceArray<>(children.size());
+            elementTailSplits = splits;
+        }
+        if (splits.get(index) == null) {
             BitSet emptyListMask = BitSet.apply(bitSetLength);
             emptyListMask.makeOnes(bitSetLength);
             for (int i = index + 1; i < children.size(); i++) {
@@ -99,17 +111,17 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
             if (isElement(index)) {
                 BitSet elementMask = BitSet.apply(bitSetLength);
                 elementMask.makeOnes(bitSetLength);
-                elementTailSplits[index] = new ElementTailSplit(
+                splits.compareAndSet(index, null, new ElementTailSplit(
                         children.get(index),
                         elementMask,
                         Bottom.BOTTOM,
-                        BitSet.apply(bitSetLength));
+                        BitSet.apply(bitSetLength)));
             } else if (isListVariable(children.get(index))) {
-                elementTailSplits[index] = new ElementTailSplit(
+                splits.compareAndSet(index, null, new ElementTailSplit(
                         Bottom.BOTTOM,
                         BitSet.apply(bitSetLength),
                         children.get(index),
-                        emptyListMask);
+                        emptyListMask));
             } else if (children.get(index) instanceof RuleAutomatonDisjunction) {
                 RuleAutomatonDisjunction elementAutomatonDisjunction = new RuleAutomatonDisjunction(
                         ((RuleAutomatonDisjunction) children.get(index)).disjunctions().stream()
@@ -132,17 +144,17 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
                         .forEach(s -> tailMask.or(s));
                 tailMask.and(emptyListMask);
 
-                elementTailSplits[index] = new ElementTailSplit(
+                splits.compareAndSet(index, null, new ElementTailSplit(
                         elementAutomatonDisjunction,
                         elementMask,
                         tailAutomatonDisjunction,
-                        tailMask);
+                        tailMask));
             } else {
                 assert false : "unexpected class type for builtin list " + children.get(index).getClass();
             }
         }
 
-        return elementTailSplits[index];
+        return splits.get(index);
     }
 
     public boolean isElement(int index) {
@@ -165,7 +177,7 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
 
     public Term range(int beginIndex, int endIndex) {
         return BuiltinList.builder(sort, operatorKLabel, unitKLabel, global)
-                .addAll(children.subList(beginIndex, endIndex))
+                .concatenate(children.subList(beginIndex, endIndex))
                 .build();
     }
 
@@ -294,7 +306,8 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
 
     public static class Builder {
 
-        private final ImmutableList.Builder<Term> childrenBuilder = new ImmutableList.Builder<>();
+        private PersistentVector<Term> children = PersistentVector.empty();
+        private final List<Term> pendingChildren = new ArrayList<>();
         private final Sort sort;
         private final KLabelConstant operatorKLabel;
         private final KLabelConstant unitKLabel;
@@ -311,15 +324,31 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
             if (term instanceof BuiltinList && sort.equals(term.sort())
                     && operatorKLabel.equals(((BuiltinList) term).operatorKLabel)
                     && unitKLabel.equals(((BuiltinList) term).unitKLabel)) {
-                return addAll(((BuiltinList) term).children);
+                return concatenate(((BuiltinList) term).children);
             } else {
                 //assert global.getDefinition().subsorts().isSubsortedEq(sort, term.sort()) :
                 //        "unexpected term: " + term + " of sort " + term.sort() + " added to list of sort " + sort;
-                childrenBuilder.add(term);
+                pendingChildren.add(term);
                 return this;
             }
         }
 
+        /**
+         * Appends already flattened children in logarithmic time.
+         */
+        private Builder concatenate(PersistentVector<Term> terms) {
+            flushPendingChildren();
+            children = children.concat(terms);
+            return this;
+        }
+
+        private void flushPendingChildren() {
+            if (!pendingChildren.isEmpty()) {
+                children = children.concat(PersistentVector.copyOf(pendingChildren));
+                pendingChildren.clear();
+            }
+        }
+
         public Builder addAll(List<Term> terms) {
             terms.forEach(this::add);
             return this;
@@ -333,8 +362,9 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
         }
 
         public Term build() {
+            flushPendingChildren();
             BuiltinList builtinList = new BuiltinList(
-                    childrenBuilder.build(),
+                    children,
                     sort,
                     operatorKLabel,
                     unitKLabel,
@@ -358,7 +388,7 @@ public class BuiltinList extends Collection implements CollectionInternalReprese
      */
     public static class SingletonBuiltinList extends BuiltinList {
         private SingletonBuiltinList(Term child, GlobalContext global, Sort sort, KLabelConstant operatorKLabel, KLabelConstant unitKLabel) {
-            super(ImmutableList.of(child), sort, operatorKLabel, unitKLabel, global);
+            super(PersistentVector.of(child), sort, operatorKLabel, unitKLabel, global);
         }
     }
 
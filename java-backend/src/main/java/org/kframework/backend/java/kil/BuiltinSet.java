@@ -4,19 +4,18 @@ package org.kframework.backend.java.kil;
 import org.kframework.backend.java.symbolic.Transformer;
 import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.backend.java.util.Constants;
+import org.kframework.backend.java.util.PersistentHashSet;
 import org.kframework.kil.ASTNode;
 import org.kframework.kil.DataStructureSort;
 import org.kframework.utils.errorsystem.KEMException;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMultiset;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -28,10 +27,18 @@ import com.google.common.collect.Lists;
  */
 public class BuiltinSet extends AssociativeCommutativeCollection {
 
-    private final ImmutableSet<Term> elements;
+    /**
+     * The concrete elements, stored in a persistent set so that updates share structure with the original set.
+     * <p>
+     * They are iterated, and thus printed, in the order of their hashes (see {@link PersistentHashSet}). This order
+     * used to be that of the {@link java.util.HashSet} from which the elements were copied, which also depended on
+     * its capacity; it now only depends on the elements, so equal sets are printed the same way however they were
+     * built.
+     */
+    private final PersistentHashSet<Term> elements;
 
     private BuiltinSet(
-            ImmutableSet<Term> elements,
+            PersistentHashSet<Term> elements,
             ImmutableMultiset<KItem> collectionPatterns,
             ImmutableMultiset<Term> collectionFunctions,
             ImmutableMultiset<Variable> collectionVariables,
@@ -172,7 +179,7 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
 
     public static class Builder {
 
-        private final Set<Term> elements = new HashSet<>();
+        private PersistentHashSet<Term> elements = PersistentHashSet.empty();
         private final ImmutableMultiset.Builder<KItem> patternsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Term> functionsBuilder = new ImmutableMultiset.Builder<>();
         private final ImmutableMultiset.Builder<Variable> variablesBuilder = new ImmutableMultiset.Builder<>();
@@ -183,16 +190,22 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
         }
 
         public boolean add(Term element) {
-            return elements.add(element);
+            PersistentHashSet<Term> oldElements = elements;
+            elements = elements.plus(element);
+            return elements != oldElements;
         }
 
         public <T extends Term> boolean addAll(Collection<T> elements) {
             // elements refers to the one in the outer class
-            return this.elements.addAll(elements);
+            PersistentHashSet<Term> oldElements = this.elements;
+            this.elements = this.elements.plusAll(elements);
+            return this.elements != oldElements;
         }
 
         public boolean remove(Term element) {
-            return elements.remove(element);
+            PersistentHashSet<Term> oldElements = elements;
+            elements = elements.minus(element);
+            return elements != oldElements;
         }
 
         /**
@@ -208,7 +221,9 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
 
                 if (term instanceof BuiltinSet) {
                     BuiltinSet set = (BuiltinSet) term;
-                    elements.addAll(set.elements);
+                    elements = elements.size() < set.elements.size() ?
+                            set.elements.plusAll(elements) :
+                            elements.plusAll(set.elements);
                     patternsBuilder.addAll(set.collectionPatterns);
                     functionsBuilder.addAll(set.collectionFunctions);
                     variablesBuilder.addAll(set.collectionVariables);
@@ -226,7 +241,7 @@ public class BuiltinSet extends AssociativeCommutativeCollection {
 
         public Term build() {
             BuiltinSet builtinSet = new BuiltinSet(
-                    ImmutableSet.copyOf(elements),
+                    elements,
                     patternsBuilder.build(),
                     functionsBuilder.build(),
                     variablesBuilder.build(),
@@ -9,6 +9,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.reflect.TypeToken;
 import com.google.inject.Inject;
@@ -17,6 +18,7 @@ import org.kframework.attributes.Att;
 import org.kframework.backend.java.compile.KOREtoBackendKIL;
 import org.kframework.backend.java.indexing.IndexingTable;
 import org.kframework.backend.java.indexing.RuleIndex;
+import org.kframework.backend.java.symbolic.BuiltinFunction;
 import org.kframework.backend.java.symbolic.Transformer;
 import org.kframework.backend.java.symbolic.Visitor;
 import org.kframework.backend.java.util.Subsorts;
@@ -47,6 +49,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.kframework.kore.KORE.Sort;
@@ -139,7 +143,17 @@ public class Definition extends JavaSymbolicObject {
 
     public final Map<Integer, Integer> reverseRuleTable = new HashMap<>();
 
-    private final Map<KItem.CacheTableColKey, KItem.CacheTableValue> sortCacheTable = new HashMap<>();
+    /* created lazily, since it is not serialized */
+    private transient volatile SortCache sortCache;
+
+    /* created lazily by KOREtoBackendKIL, since it is not serialized */
+    private transient volatile ConcurrentMap<Module, KOREtoBackendKIL.Tables> conversionTables;
+
+    /**
+     * Dense lookup tables indexed by {@link KLabelConstant#ordinal()}, built lazily from the rule
+     * multimaps above and discarded whenever those are modified.
+     */
+    private transient volatile RuleTables ruleTables;
 
     public Definition(Context context, KExceptionManager kem, IndexingTable.Data indexingData) {
         kLabels = new HashSet<>();
@@ -362,6 +376,7 @@ public class Definition extends JavaSymbolicObject {
     }
 
     public void addRule(Rule rule) {
+        ruleTables = null;
         if (rule.isFunction()) {
             functionRules.put(rule.definedKLabel(), rule);
             if (rule.isSortPredicate()) {
@@ -421,12 +436,134 @@ public class Definition extends JavaSymbolicObject {
         this.kem = kem;
     }
 
+    /**
+     * Returns an unmodifiable view of the function rules of this definition.
+     */
     public Multimap<KLabelConstant, Rule> functionRules() {
-        return functionRules;
+        return Multimaps.unmodifiableMultimap(functionRules);
     }
 
+    /**
+     * Returns an unmodifiable view of the anywhere rules of this definition.
+     */
     public Multimap<KLabelConstant, Rule> anywhereRules() {
-        return anywhereRules;
+        return Multimaps.unmodifiableMultimap(anywhereRules);
+    }
+
+    /**
+     * Removes the function and anywhere rules of this definition, e.g. before adding their partially evaluated
+     * counterparts with {@link #addRuleCollection(Collection)}.
+     */
+    public void clearFunctionAndAnywhereRules() {
+        functionRules.clear();
+        anywhereRules.clear();
+        ruleTables = null;
+    }
+
+    /**
+     * Returns the function rules defining the given KLabel, in the order in which they were added.
+     */
+    public List<Rule> functionRulesOn(KLabelConstant kLabel) {
+        return ruleTables().functionRules(kLabel);
+    }
+
+    /**
+     * Returns the index of the function rules defining the given KLabel, built on first use.
+     */
+    FunctionRuleIndex functionRuleIndex(KLabelConstant kLabel) {
+        RuleTables tables = ruleTables();
+        int ordinal = kLabel.ordinal();
+        if (ordinal >= tables.functionRuleIndexes.length) {
+            return new FunctionRuleIndex(Collections.emptyList());
+        }
+        FunctionRuleIndex index = tables.functionRuleIndexes[ordinal];
+        if (index == null) {
+            /* benign race: concurrent writers store equivalent indexes */
+            index = new FunctionRuleIndex(tables.functionRules(kLabel));
+            tables.functionRuleIndexes[ordinal] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the anywhere rules rewriting applications of the given KLabel.
+     */
+    public List<Rule> anywhereRulesOn(KLabelConstant kLabel) {
+        return ruleTables().anywhereRules(kLabel);
+    }
+
+    /**
+     * Returns true if applications of the given KLabel may be evaluated as functions: the KLabel is
+     * a sort predicate, is defined by function rules, or is hooked to a builtin operation.
+     */
+    public boolean isEvaluable(KLabelConstant kLabel, BuiltinFunction builtins) {
+        RuleTables tables = ruleTables();
+        int ordinal = kLabel.ordinal();
+        if (ordinal >= tables.evaluable.length) {
+            return kLabel.isSortPredicate() || builtins.isBuiltinKLabel(kLabel);
+        }
+        byte evaluable = tables.evaluable[ordinal];
+        if (evaluable == RuleTables.UNKNOWN) {
+            /* benign race: concurrent writers store the same value */
+            evaluable = kLabel.isSortPredicate()
+                    || !tables.functionRules(kLabel).isEmpty()
+                    || builtins.isBuiltinKLabel(kLabel) ? RuleTables.EVALUABLE : RuleTables.NOT_EVALUABLE;
+            tables.evaluable[ordinal] = evaluable;
+        }
+        return evaluable == RuleTables.EVALUABLE;
+    }
+
+    private RuleTables ruleTables() {
+        RuleTables tables = ruleTables;
+        if (tables == null) {
+            tables = new RuleTables(functionRules, anywhereRules);
+            ruleTables = tables;
+        }
+        return tables;
+    }
+
+    private static final class RuleTables {
+        static final byte UNKNOWN = 0;
+        static final byte NOT_EVALUABLE = 1;
+        static final byte EVALUABLE = 2;
+
+        /* null entries stand for KLabels without rules */
+        private final List<Rule>[] functionRules;
+        private final List<Rule>[] anywhereRules;
+        private final byte[] evaluable;
+        /* null entries stand for indexes not built yet */
+        private final FunctionRuleIndex[] functionRuleIndexes;
+
+        RuleTables(Multimap<KLabelConstant, Rule> functionRules, Multimap<KLabelConstant, Rule> anywhereRules) {
+            int size = KLabelConstant.maxOrdinal.get();
+            this.functionRules = toArray(functionRules, size);
+            this.anywhereRules = toArray(anywhereRules, size);
+            this.evaluable = new byte[size];
+            this.functionRuleIndexes = new FunctionRuleIndex[size];
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Rule>[] toArray(Multimap<KLabelConstant, Rule> rules, int size) {
+            List<Rule>[] table = new List[size];
+            for (KLabelConstant kLabel : rules.keySet()) {
+                table[kLabel.ordinal()] = ImmutableList.copyOf(rules.get(kLabel));
+            }
+            return table;
+        }
+
+        List<Rule> functionRules(KLabelConstant kLabel) {
+            return get(functionRules, kLabel);
+        }
+
+        List<Rule> anywhereRules(KLabelConstant kLabel) {
+            return get(anywhereRules, kLabel);
+        }
+
+        private static List<Rule> get(List<Rule>[] table, KLabelConstant kLabel) {
+            int ordinal = kLabel.ordinal();
+            List<Rule> rules = ordinal < table.length ? table[ordinal] : null;
+            return rules != null ? rules : Collections.emptyList();
+        }
     }
 
     public Collection<Rule> sortPredicateRulesOn(KLabelConstant kLabel) {
@@ -479,15 +616,50 @@ public class Definition extends JavaSymbolicObject {
     }
 
     public KItem.CacheTableValue getSortCacheValue(KItem.CacheTableColKey key) {
-        synchronized (sortCacheTable) {
-            return sortCacheTable.get(key);
-        }
+        return sortCache().get(key);
     }
 
     public void putSortCacheValue(KItem.CacheTableColKey key, KItem.CacheTableValue value) {
-        synchronized (sortCacheTable) {
-            sortCacheTable.put(key, value);
+        sortCache().put(key, value);
+    }
+
+    private SortCache sortCache() {
+        SortCache cache = sortCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = sortCache;
+                if (cache == null) {
+                    cache = new SortCache();
+                    sortCache = cache;
+                }
+            }
         }
+        return cache;
+    }
+
+    /**
+     * Returns the tables used by {@link KOREtoBackendKIL} to convert the terms of the given module of this
+     * definition, built on first use.
+     */
+    public KOREtoBackendKIL.Tables conversionTables(Module module) {
+        ConcurrentMap<Module, KOREtoBackendKIL.Tables> tables = conversionTables;
+        if (tables == null) {
+            synchronized (this) {
+                tables = conversionTables;
+                if (tables == null) {
+                    tables = new ConcurrentHashMap<>();
+                    conversionTables = tables;
+                }
+            }
+        }
+        return tables.computeIfAbsent(module, m -> new KOREtoBackendKIL.Tables(m, this));
+    }
+
+    /**
+     * Prints the statistics of the sort cache of this definition; called under {@code --statistics}.
+     */
+    public void printStatistics() {
+        System.err.println(sortCache());
     }
 
     // added from context
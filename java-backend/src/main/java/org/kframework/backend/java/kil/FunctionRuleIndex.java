@@ -0,0 +1,132 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the function rules of a KLabel by the top symbols of the arguments of their left-hand sides, used to
+ * select the rules which may apply to a function application without trying to match the others.
+ * <p>
+ * The rules are numbered in the order of {@link Definition#functionRulesOn(KLabelConstant)}. For each argument
+ * position, the index maps each key (the constructor {@link KLabelConstant} of a {@link KItem}, or a {@link Token})
+ * to the set of rules whose pattern at that position either has this key or has no key (e.g. a variable or a
+ * function application). The candidate rules for an application are the intersection of the sets selected by its
+ * arguments, computed by looking at each argument once.
+ * <p>
+ * A subject argument with a key can neither match nor unify with a pattern argument with a different key, so the
+ * candidates include every rule which may apply, {@code owise} rules included.
+ */
+final class FunctionRuleIndex {
+
+    private final int ruleCount;
+    /* the arity of the left-hand sides, or -1 if they differ or are not concrete */
+    private final int arity;
+    /* for each argument position, the rules which may apply to an argument with a given key */
+    private final Map<Object, BitSet>[] rulesByKey;
+    /* for each argument position, the rules which may apply to an argument with a key not in rulesByKey */
+    private final BitSet[] unkeyedRules;
+
+    @SuppressWarnings("unchecked")
+    FunctionRuleIndex(List<Rule> rules) {
+        this.ruleCount = rules.size();
+        this.arity = arity(rules);
+        this.rulesByKey = new Map[Math.max(arity, 0)];
+        this.unkeyedRules = new BitSet[Math.max(arity, 0)];
+        for (int position = 0; position < arity; position++) {
+            Map<Object, BitSet> byKey = new HashMap<>();
+            BitSet unkeyed = new BitSet(ruleCount);
+            for (int i = 0; i < ruleCount; i++) {
+                Object key = key(arguments(rules.get(i)).get(position));
+                if (key == null) {
+                    unkeyed.set(i);
+                } else {
+                    byKey.computeIfAbsent(key, k -> new BitSet(ruleCount)).set(i);
+                }
+            }
+            for (BitSet keyed : byKey.values()) {
+                keyed.or(unkeyed);
+            }
+            rulesByKey[position] = byKey;
+            unkeyedRules[position] = unkeyed;
+        }
+    }
+
+    private static int arity(List<Rule> rules) {
+        int arity = -1;
+        for (Rule rule : rules) {
+            KList arguments = arguments(rule);
+            if (arguments == null || !arguments.isConcreteCollection()
+                    || (arity != -1 && arity != arguments.concreteSize())) {
+                return -1;
+            }
+            arity = arguments.concreteSize();
+        }
+        return arity;
+    }
+
+    private static KList arguments(Rule rule) {
+        Term leftHandSide = rule.leftHandSide();
+        if (leftHandSide instanceof KItem && ((KItem) leftHandSide).kList() instanceof KList) {
+            return (KList) ((KItem) leftHandSide).kList();
+        }
+        return null;
+    }
+
+    private static Object key(Term term) {
+        if (term instanceof Token) {
+            return term;
+        }
+        if (term instanceof KItem && ((KItem) term).kLabel() instanceof KLabelConstant) {
+            KLabelConstant kLabel = (KLabelConstant) ((KItem) term).kLabel();
+            if (kLabel.isConstructor() && !kLabel.isPattern()) {
+                return kLabel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the set of all the rules.
+     */
+    BitSet all() {
+        BitSet all = new BitSet(ruleCount);
+        all.set(0, ruleCount);
+        return all;
+    }
+
+    /**
+     * Returns the indices of the rules which may apply to the given application of the function.
+     */
+    BitSet candidates(KItem kItem) {
+        if (arity <= 0 || !(kItem.kList() instanceof KList)) {
+            return all();
+        }
+        KList arguments = (KList) kItem.kList();
+        if (!arguments.isConcreteCollection() || arguments.concreteSize() != arity) {
+            return all();
+        }
+        BitSet candidates = null;
+        for (int position = 0; position < arity; position++) {
+            Object key = key(arguments.get(position));
+            if (key == null) {
+                continue;
+            }
+            BitSet rules = rulesByKey[position].get(key);
+            if (rules == null) {
+                rules = unkeyedRules[position];
+            }
+            if (candidates == null) {
+                candidates = (BitSet) rules.clone();
+            } else {
+                candidates.and(rules);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates != null ? candidates : all();
+    }
+}
@@ -10,6 +10,7 @@ import org.kframework.backend.java.symbolic.Equality.EqualityOperations;
 import org.kframework.backend.java.symbolic.JavaExecutionOptions;
 import org.kframework.backend.java.symbolic.SMTOperations;
 import org.kframework.backend.java.symbolic.Stage;
+import org.kframework.backend.java.util.RuleProfiler;
 import org.kframework.backend.java.util.Z3Wrapper;
 import org.kframework.krun.KRunOptions;
 import org.kframework.krun.api.io.FileSystem;
@@ -32,6 +33,11 @@ public class GlobalContext implements Serializable {
     public final transient EqualityOperations equalityOps;
     public final transient SMTOperations constraintOps;
     public final transient KItemOperations kItemOps;
+    public final transient TermInterner termInterner;
+    /**
+     * The profiler of the rules and functions applied during rewriting, or null if profiling is disabled.
+     */
+    public final transient RuleProfiler ruleProfiler;
     public final transient KRunOptions krunOptions;
     private final transient KExceptionManager kem;
     private final transient Map<String, Provider<MethodHandle>> hookProvider;
@@ -56,8 +62,12 @@ public class GlobalContext implements Serializable {
         this.hookProvider = hookProvider;
         this.files = files;
         this.equalityOps = new EqualityOperations(() -> def, javaOptions);
-        this.constraintOps = new SMTOperations(() -> def, smtOptions, new Z3Wrapper(smtOptions, kem, globalOptions, files));
+        this.ruleProfiler = javaOptions.profileRules != null && stage == Stage.REWRITING ?
+                new RuleProfiler(() -> def, javaOptions.profileRules) :
+                null;
+        this.constraintOps = new SMTOperations(() -> def, smtOptions, new Z3Wrapper(smtOptions, kem, globalOptions, files), files, ruleProfiler);
         this.kItemOps = new KItemOperations(stage, javaOptions, kem, this::builtins, globalOptions);
+        this.termInterner = javaOptions.hashCons ? new TermInterner() : null;
         this.stage = stage;
     }
 
@@ -78,4 +88,18 @@ public class GlobalContext implements Serializable {
     public Definition getDefinition() {
         return def;
     }
+
+    /**
+     * Prints the statistics of the caches used during rewriting; called under {@code --statistics}.
+     */
+    public void printStatistics() {
+        constraintOps.printStatistics();
+        kItemOps.printStatistics();
+        if (def != null) {
+            def.printStatistics();
+        }
+        if (termInterner != null) {
+            System.err.println(termInterner);
+        }
+    }
 }
@@ -14,6 +14,7 @@ import org.kframework.backend.java.rewritemachine.KAbstractRewriteMachine;
 import org.kframework.backend.java.symbolic.*;
 import org.kframework.backend.java.util.ImpureFunctionException;
 import org.kframework.backend.java.util.Profiler;
+import org.kframework.backend.java.util.RuleProfiler;
 import org.kframework.backend.java.util.Subsorts;
 import org.kframework.backend.java.util.Constants;
 import org.kframework.builtin.KLabels;
@@ -27,10 +28,13 @@ import org.kframework.utils.errorsystem.KEMException;
 
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 
@@ -67,6 +71,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
 
     private BitSet[] childrenDontCareRuleMask = null;
 
+    /* the table which interned this term, if any; see {@link TermInterner} */
+    transient TermInterner interner;
+
     public static KItem of(Term kLabel, Term kList, GlobalContext global) {
         return of(kLabel, kList, global, null, null, null);
     }
@@ -85,7 +92,12 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         kList = KCollection.upKind(kList, Kind.KLIST);
 
         // TODO(yilongli): break the dependency on the Tool object
-        return new KItem(kLabel, kList, global, global.stage, source, location, childrenDontCareRuleMask);
+        KItem kItem = new KItem(kLabel, kList, global, global.stage, source, location, childrenDontCareRuleMask);
+        if (global.termInterner != null && global.stage == Stage.REWRITING
+                && source == null && location == null && childrenDontCareRuleMask == null) {
+            return global.termInterner.intern(kItem);
+        }
+        return kItem;
     }
 
     public KItem(Term kLabel, Term kList, Sort sort, boolean isExactSort) {
@@ -299,6 +311,8 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         private final KExceptionManager kem;
         private final Provider<BuiltinFunction> builtins;
         private final GlobalOptions options;
+        /* created on the first memoizable function application, as most definitions have none */
+        private volatile FunctionCache functionCache;
 
         @Inject
         public KItemOperations(
@@ -314,6 +328,8 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             this.options = options;
         }
 
+        private static final String MEMO_KEY = "memo";
+
         private static final String TRACE_MSG = "Function evaluation triggered infinite recursion. Trace:";
 
         /**
@@ -341,9 +357,10 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                         sb.append("Unable to resolve function symbol:\n\t\t");
                         sb.append(result);
                         sb.append('\n');
-                        if (!context.definition().functionRules().isEmpty()) {
+                        List<Rule> functionRules = context.definition().functionRulesOn((KLabelConstant) ((KItem) result).kLabel());
+                        if (!functionRules.isEmpty()) {
                             sb.append("\tDefined function rules:\n");
-                            for (Rule rule : context.definition().functionRules().get((KLabelConstant) ((KItem) result).kLabel())) {
+                            for (Rule rule : functionRules) {
                                 sb.append("\t\t");
                                 sb.append(rule);
                                 sb.append('\n');
@@ -379,11 +396,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 return false;
             }
 
-            if (kLabelConstant.isSortPredicate()
-                    || !definition.functionRules().get(kLabelConstant).isEmpty()
-                    || builtins.get().isBuiltinKLabel(kLabelConstant)) {
-                kItem.evaluable = true;
-            }
+            kItem.evaluable = definition.isEvaluable(kLabelConstant, builtins.get());
             return kItem.evaluable;
         }
 
@@ -405,10 +418,82 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 return kItem;
             }
 
+            if (!isMemoizable(kItem)) {
+                return evaluateFunctionRules(kItem, copyOnShareSubstAndEval, context);
+            }
+
+            FunctionCache functionCache = functionCache();
+            Term result = functionCache.get(kItem);
+            if (result != null) {
+                return result;
+            }
+
+            long impureEvaluations = functionCache.impureEvaluations();
+            BigInteger counterValue = context.getCounterValue();
+            result = evaluateFunctionRules(kItem, copyOnShareSubstAndEval, context);
+            if (result != kItem && result.isGround() && !result.isMutable()
+                    && impureEvaluations == functionCache.impureEvaluations()
+                    && Objects.equals(counterValue, context.getCounterValue())) {
+                functionCache.put(kItem, result);
+            }
+            return result;
+        }
+
+        /**
+         * Returns true if the result of evaluating the given function application may be memoized:
+         * the function is not impure, it has the "memo" attribute or all functions are memoized,
+         * and its arguments are ground.
+         */
+        private boolean isMemoizable(KItem kItem) {
+            if (javaOptions.functionCacheSize <= 0) {
+                return false;
+            }
+            KLabelConstant kLabelConstant = (KLabelConstant) kItem.kLabel;
+            return (javaOptions.memoizeFunctions || kLabelConstant.getAttr(MEMO_KEY) != null)
+                    && kLabelConstant.getAttr(Attribute.IMPURE_KEY) == null
+                    && kItem.isGround()
+                    && !kItem.isMutable();
+        }
+
+        /**
+         * Returns the memo table of function results, or null if no function application was memoizable so far.
+         */
+        public FunctionCache getFunctionCache() {
+            return functionCache;
+        }
+
+        private FunctionCache functionCache() {
+            FunctionCache cache = functionCache;
+            if (cache == null) {
+                synchronized (this) {
+                    cache = functionCache;
+                    if (cache == null) {
+                        cache = new FunctionCache(javaOptions.functionCacheSize);
+                        functionCache = cache;
+                    }
+                }
+            }
+            return cache;
+        }
+
+        public void printStatistics() {
+            FunctionCache functionCache = this.functionCache;
+            if (functionCache != null) {
+                System.err.println(functionCache);
+            }
+        }
+
+        private Term evaluateFunctionRules(KItem kItem, boolean copyOnShareSubstAndEval, TermContext context) {
             Definition definition = context.definition();
             KLabelConstant kLabelConstant = (KLabelConstant) kItem.kLabel;
 
             Profiler.startTimer(Profiler.getTimerForFunction(kLabelConstant));
+            RuleProfiler profiler = context.global().ruleProfiler;
+            RuleProfiler.Frame functionFrame = null;
+            if (profiler != null) {
+                functionFrame = profiler.enterFunction(kLabelConstant);
+                functionFrame.apply();
+            }
 
             try {
                 KList kList = (KList) kItem.kList;
@@ -424,6 +509,10 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                     // DISABLE EXCEPTION CHECKSTYLE
                     } catch (ImpureFunctionException e) {
                         // do not do anything further: immediately assume this function is not ready to be evaluated yet.
+                        FunctionCache functionCache = this.functionCache;
+                        if (functionCache != null) {
+                            functionCache.recordImpureEvaluation();
+                        }
                         return kItem;
                     } catch (Throwable t) {
                     // ENABLE EXCEPTION CHECKSTYLE
@@ -453,11 +542,21 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 }
 
                 /* apply rules for user defined functions */
-                if (!definition.functionRules().get(kLabelConstant).isEmpty()) {
+                List<Rule> functionRules = definition.functionRulesOn(kLabelConstant);
+                if (!functionRules.isEmpty()) {
                     Term result = null;
                     Term owiseResult = null;
 
-                    for (Rule rule : definition.functionRules().get(kLabelConstant)) {
+                    /* only try the rules whose arguments may match those of the kItem, unless auditing */
+                    FunctionRuleIndex index = definition.functionRuleIndex(kLabelConstant);
+                    BitSet candidates = RuleAuditing.getAuditingRule() == null ? index.candidates(kItem) : index.all();
+                    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                        Rule rule = functionRules.get(i);
+                        RuleProfiler.Frame ruleFrame = null;
+                        if (profiler != null) {
+                            ruleFrame = profiler.enterFunctionRule(kLabelConstant, i, rule);
+                            ruleFrame.attempt();
+                        }
                         try {
                             if (rule == RuleAuditing.getAuditingRule()) {
                                 RuleAuditing.beginAudit();
@@ -481,6 +580,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                                 }
                                 solution = matches.get(0);
                             }
+                            if (ruleFrame != null) {
+                                ruleFrame.apply();
+                            }
 
                             /* rename fresh variables of the rule */
                             for (Variable freshVar : rule.variableSet()) {
@@ -519,6 +621,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                                 return result;
                             }
                         } finally {
+                            if (ruleFrame != null) {
+                                profiler.exit(ruleFrame);
+                            }
                             if (RuleAuditing.isAuditBegun()) {
                                 if (RuleAuditing.getAuditingRule() == rule) {
                                     RuleAuditing.endAudit();
@@ -543,7 +648,8 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                              * apply the "[owise]" rule only if this kItem does not unify with any
                              * of the left-hand-sides of the other rules (no other rule may apply)
                              */
-                            for (Rule rule : definition.functionRules().get(kLabelConstant)) {
+                            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                                Rule rule = functionRules.get(i);
                                 if (rule.containsAttribute("owise")) {
                                     continue;
                                 }
@@ -567,6 +673,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 }
                 return kItem;
             } finally {
+                if (functionFrame != null) {
+                    profiler.exit(functionFrame);
+                }
                 Profiler.stopTimer(Profiler.getTimerForFunction(kLabelConstant));
             }
         }
@@ -578,8 +687,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         }
 
         anywhereApplicable = (kLabel instanceof KLabelConstant)
-                && !context.definition().anywhereRules()
-                        .get((KLabelConstant) kLabel).isEmpty();
+                && !context.definition().anywhereRulesOn((KLabelConstant) kLabel).isEmpty();
         return anywhereApplicable;
     }
 
@@ -614,7 +722,7 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         /* apply [anywhere] rules */
         /* TODO(YilongL): make KLabelConstant dependent on Definition and store
          * anywhere rules in KLabelConstant */
-        for (Rule rule : definition.anywhereRules().get(kLabelConstant)) {
+        for (Rule rule : definition.anywhereRulesOn(kLabelConstant)) {
             try {
                 if (rule == RuleAuditing.getAuditingRule()) {
                     RuleAuditing.beginAudit();
@@ -712,6 +820,10 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
         }
 
         KItem kItem = (KItem) object;
+        if (interner != null && interner == kItem.interner) {
+            /* distinct terms interned by the same table are never equal */
+            return false;
+        }
         return kLabel.equals(kItem.kLabel) && kList.equals(kItem.kList);
     }
 
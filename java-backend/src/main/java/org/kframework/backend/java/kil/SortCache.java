@@ -0,0 +1,43 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded concurrent cache of the sorts computed for {@link KItem}s, keyed by their {@link KLabelConstant}
+ * and the sorts of their arguments. The cache is segmented, so concurrent lookups do not contend on a
+ * single lock, and its least recently used entries are evicted once it reaches its maximum size.
+ */
+class SortCache {
+
+    static final long MAXIMUM_SIZE = 100000;
+
+    private final Cache<KItem.CacheTableColKey, KItem.CacheTableValue> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .recordStats()
+            .build();
+
+    /**
+     * Returns the cached sort information for the given key, or {@code null} if there is none.
+     */
+    KItem.CacheTableValue get(KItem.CacheTableColKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(KItem.CacheTableColKey key, KItem.CacheTableValue value) {
+        cache.put(key, value);
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return String.format("Sort cache: %d hits, %d misses (%.1f%% hit rate), %d entries, %d evictions",
+                stats.hitCount(), stats.missCount(), 100.0 * stats.hitRate(), size(), stats.evictionCount());
+    }
+}
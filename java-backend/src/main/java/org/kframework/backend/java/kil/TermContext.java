@@ -53,6 +53,14 @@ public class TermContext extends JavaSymbolicObject {
         return counter != null ? new TermContext(global, new FreshCounter(counter.value)) : this;
     }
 
+    /**
+     * Forks a {@link TermContext} for use by another thread. Unlike {@link #fork()}, the result never shares
+     * the top term and constraint of this context, even if this context has no fresh counter.
+     */
+    public TermContext forkForThread() {
+        return new TermContext(global, counter != null ? new FreshCounter(counter.value) : null);
+    }
+
     public BigInteger freshConstant() {
         if (counter == null) {
             throw KEMException.criticalError("No fresh counter available in this TermContext.");
@@ -60,8 +68,11 @@ public class TermContext extends JavaSymbolicObject {
         return counter.incrementAndGet();
     }
 
+    /**
+     * Returns the current value of the fresh counter, or {@code null} if this context has no fresh counter.
+     */
     public BigInteger getCounterValue() {
-        return counter.value;
+        return counter != null ? counter.value : null;
     }
 
     public Definition definition() {
@@ -0,0 +1,145 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent hash-consing table for ground {@link KItem}s built during rewriting. The table only
+ * holds weak references, so interned terms are reclaimed once the configuration no longer
+ * refers to them.
+ * <p>
+ * Two distinct {@code KItem}s interned by the same table are never equal, which allows
+ * {@link KItem#equals(Object)} to return without traversing them. Since {@code KItem}s are built
+ * bottom-up, their children are usually interned already, so interning only costs a hash lookup
+ * whose equality checks are identity checks on the children.
+ */
+public class TermInterner {
+
+    private final ConcurrentHashMap<Object, WeakEntry> table = new ConcurrentHashMap<>();
+    private final ReferenceQueue<KItem> queue = new ReferenceQueue<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the interned {@code KItem} equal to the given one, interning it first if there is none.
+     * Non-ground and mutable terms are returned unchanged.
+     */
+    public KItem intern(KItem kItem) {
+        if (kItem.interner == this) {
+            return kItem;
+        }
+        if (!kItem.isGround() || kItem.isMutable()) {
+            return kItem;
+        }
+
+        expungeStaleEntries();
+        WeakEntry entry = table.get(new LookupKey(kItem));
+        KItem interned = entry != null ? entry.get() : null;
+        if (interned != null) {
+            hits.incrementAndGet();
+            return interned;
+        }
+
+        WeakEntry newEntry = new WeakEntry(kItem, queue);
+        while (true) {
+            WeakEntry existing = table.putIfAbsent(newEntry, newEntry);
+            if (existing == null) {
+                kItem.interner = this;
+                misses.incrementAndGet();
+                return kItem;
+            }
+            interned = existing.get();
+            if (interned != null) {
+                hits.incrementAndGet();
+                return interned;
+            }
+            table.remove(existing, existing);
+        }
+    }
+
+    private void expungeStaleEntries() {
+        Reference<? extends KItem> reference;
+        while ((reference = queue.poll()) != null) {
+            table.remove(reference, reference);
+        }
+    }
+
+    public int size() {
+        expungeStaleEntries();
+        return table.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        long total = hits() + misses();
+        return String.format("Term intern table: %d hits, %d misses (%.1f%% hit rate), %d entries",
+                hits(), misses(), total == 0 ? 0.0 : 100.0 * hits() / total, size());
+    }
+
+    /**
+     * Weak reference to an interned term. A cleared entry is only equal to itself, so that it can
+     * still be removed from the table.
+     */
+    private static final class WeakEntry extends WeakReference<KItem> {
+        private final int hash;
+
+        WeakEntry(KItem kItem, ReferenceQueue<KItem> queue) {
+            super(kItem, queue);
+            this.hash = kItem.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof WeakEntry) || hash != object.hashCode()) {
+                return false;
+            }
+            KItem kItem = get();
+            return kItem != null && kItem.equals(((WeakEntry) object).get());
+        }
+    }
+
+    /**
+     * Strong key used to look up a term without allocating a weak reference.
+     */
+    private static final class LookupKey {
+        private final KItem kItem;
+        private final int hash;
+
+        LookupKey(KItem kItem) {
+            this.kItem = kItem;
+            this.hash = kItem.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof WeakEntry && hash == object.hashCode()
+                    && kItem.equals(((WeakEntry) object).get());
+        }
+    }
+}
@@ -17,9 +17,7 @@ import org.kframework.utils.inject.RequestScoped;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
-import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 
 import com.google.inject.Inject;
@@ -35,10 +33,10 @@ import com.google.inject.Provider;
 public class BuiltinFunction {
 
     /**
-     * Map of {@link KLabelConstant} representation of builtin (hooked) operations to
-     * {@link Method} representation of Java implementation of said operations.
+     * Table indexed by the {@link KLabelConstant#ordinal()} of builtin (hooked) operations, containing
+     * the invokers of the Java implementation of said operations.
      */
-    private final Map<KLabelConstant, MethodHandle> table = new HashMap<>();
+    private HookInvoker[] table = new HookInvoker[0];
 
 
     /**
@@ -84,7 +82,11 @@ public class BuiltinFunction {
                     continue;
                 }
 
-                table.put(KLabelConstant.of(entry.getKey(), definition), hookProvider.get(hookAttribute).get());
+                KLabelConstant label = KLabelConstant.of(entry.getKey(), definition);
+                if (label.ordinal() >= table.length) {
+                    table = Arrays.copyOf(table, Math.max(label.ordinal() + 1, 2 * table.length));
+                }
+                table[label.ordinal()] = HookInvoker.of(hookProvider.get(hookAttribute).get());
             }
         }
     }
@@ -110,12 +112,7 @@ public class BuiltinFunction {
     public Term invoke(TermContext context, KLabelConstant label, Term... arguments)
             throws Throwable {
     // ENABLE EXCEPTION CHECKSTYLE
-        Object[] args = Arrays.copyOf(arguments, arguments.length + 1, Object[].class);
-        args[arguments.length] = context;
-        // TODO(YilongL): is reflection/exception really the best way to
-        // deal with builtin functions? builtin functions are supposed to be
-        // super-fast...
-        return (Term) table.get(label).invokeWithArguments(args);
+        return table[label.ordinal()].invoke(context, arguments);
     }
 
     /**
@@ -127,7 +124,7 @@ public class BuiltinFunction {
      *         otherwise, false
      */
     public boolean isBuiltinKLabel(KLabelConstant label) {
-        return table.containsKey(label);
+        return label.ordinal() < table.length && table[label.ordinal()] != null;
     }
 
 }
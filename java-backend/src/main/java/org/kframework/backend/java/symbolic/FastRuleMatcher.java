@@ -20,6 +20,7 @@ import org.kframework.backend.java.kil.Term;
 import org.kframework.backend.java.kil.TermContext;
 import org.kframework.backend.java.kil.Token;
 import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.util.RuleProfiler;
 import org.kframework.builtin.KLabels;
 import org.kframework.kore.KApply;
 import org.kframework.utils.BitSet;
@@ -124,14 +125,30 @@ public class FastRuleMatcher {
             } else {
                 patternConstraint = patternConstraint.addAll(rule.requires());
             }
-            List<Triple<ConjunctiveFormula, Boolean, Map<scala.collection.immutable.List<Pair<Integer, Integer>>, Term>>> ruleResults = ConstrainedTerm.evaluateConstraints(
-                    constraints[i],
-                    subject.constraint(),
-                    patternConstraint,
-                    Sets.union(getLeftHandSide(pattern, i).variableSet(), patternConstraint.variableSet()).stream()
-                            .filter(v -> !v.name().equals(KOREtoBackendKIL.THE_VARIABLE))
-                            .collect(Collectors.toSet()),
-                    context);
+            RuleProfiler profiler = global.ruleProfiler;
+            RuleProfiler.Frame frame = null;
+            if (profiler != null) {
+                frame = profiler.enterRule(i);
+                frame.attempt();
+            }
+            List<Triple<ConjunctiveFormula, Boolean, Map<scala.collection.immutable.List<Pair<Integer, Integer>>, Term>>> ruleResults;
+            try {
+                ruleResults = ConstrainedTerm.evaluateConstraints(
+                        constraints[i],
+                        subject.constraint(),
+                        patternConstraint,
+                        Sets.union(getLeftHandSide(pattern, i).variableSet(), patternConstraint.variableSet()).stream()
+                                .filter(v -> !v.name().equals(KOREtoBackendKIL.THE_VARIABLE))
+                                .collect(Collectors.toSet()),
+                        context);
+            } finally {
+                if (frame != null) {
+                    profiler.exit(frame);
+                }
+            }
+            if (frame != null && ruleResults.isEmpty()) {
+                frame.failCondition();
+            }
             for (Triple<ConjunctiveFormula, Boolean, Map<scala.collection.immutable.List<Pair<Integer, Integer>>, Term>> triple : ruleResults) {
                 RuleMatchResult result = new RuleMatchResult(triple.getLeft(), triple.getMiddle(), triple.getRight(), i);
                 if (transitions.stream().anyMatch(rule::containsAttribute)) {
@@ -0,0 +1,87 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.Term;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU memo table mapping ground applications of pure functions to their results.
+ * The function applications are used as keys directly, since their hash codes are cached.
+ * <p>
+ * A result may only be stored if no impure hook refused to evaluate while computing it; hooks
+ * signal this with {@link org.kframework.backend.java.util.ImpureFunctionException}, which is
+ * recorded per thread by {@link #recordImpureEvaluation()}.
+ */
+public class FunctionCache {
+
+    private final Map<KItem, Term> cache;
+
+    private final ThreadLocal<long[]> impureEvaluations = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public FunctionCache(int maxSize) {
+        this.cache = new LinkedHashMap<KItem, Term>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<KItem, Term> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the memoized result of the given function application, or {@code null} if there is none.
+     */
+    public synchronized Term get(KItem kItem) {
+        Term result = cache.get(kItem);
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    public synchronized void put(KItem kItem, Term result) {
+        cache.put(kItem, result);
+    }
+
+    /**
+     * Records that an impure hook was not evaluated on the current thread, so that the results
+     * depending on it are not memoized.
+     */
+    public void recordImpureEvaluation() {
+        impureEvaluations.get()[0]++;
+    }
+
+    /**
+     * Returns the number of impure hooks not evaluated so far on the current thread.
+     */
+    public long impureEvaluations() {
+        return impureEvaluations.get()[0];
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        long total = hits() + misses();
+        return String.format("Function cache: %d hits, %d misses (%.1f%% hit rate), %d entries",
+                hits(), misses(), total == 0 ? 0.0 : 100.0 * hits() / total, size());
+    }
+}
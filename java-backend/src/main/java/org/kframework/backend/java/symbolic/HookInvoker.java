@@ -0,0 +1,156 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Invoker of the Java implementation of a builtin (hooked) operation, specialized to the arity of the hook.
+ * <p>
+ * The method handle of the hook is adapted once to the exact type {@code (Term, ..., Term, TermContext)Term}, so that
+ * it can be called with {@link MethodHandle#invokeExact} without boxing the arguments into an array. As with
+ * {@link MethodHandle#invokeWithArguments}, an argument of the wrong type (e.g. a symbolic argument of a hook on
+ * integers) raises a {@link ClassCastException}, and a wrong number of arguments a
+ * {@link WrongMethodTypeException}.
+ */
+abstract class HookInvoker {
+
+    /* the number of arguments of the hook, or -1 if it is called through invokeWithArguments */
+    private final int arity;
+    protected final MethodHandle handle;
+
+    private HookInvoker(int arity, MethodHandle handle) {
+        this.arity = arity;
+        this.handle = handle;
+    }
+
+    /**
+     * Returns an invoker for the given method handle, whose last parameter is the {@link TermContext}.
+     */
+    static HookInvoker of(MethodHandle handle) {
+        MethodType type = handle.type();
+        int arity = type.parameterCount() - 1;
+        if (handle.isVarargsCollector() || arity < 0 || type.parameterType(arity) != TermContext.class
+                || !Term.class.isAssignableFrom(type.returnType())) {
+            return new Generic(handle);
+        }
+
+        MethodType exactType = MethodType.methodType(Term.class, Collections.nCopies(arity, Term.class))
+                .appendParameterTypes(TermContext.class);
+        MethodHandle exactHandle;
+        try {
+            exactHandle = handle.asType(exactType);
+        } catch (WrongMethodTypeException e) {
+            return new Generic(handle);
+        }
+
+        switch (arity) {
+        case 0:
+            return new Arity0(exactHandle);
+        case 1:
+            return new Arity1(exactHandle);
+        case 2:
+            return new Arity2(exactHandle);
+        case 3:
+            return new Arity3(exactHandle);
+        default:
+            return new Generic(handle);
+        }
+    }
+
+    /**
+     * Invokes the hook.
+     *
+     * @throws ClassCastException if an argument does not have the type expected by the hook
+     * @throws WrongMethodTypeException if the number of arguments differs from the arity of the hook
+     */
+    // DISABLE EXCEPTION CHECKSTYLE
+    final Term invoke(TermContext context, Term... arguments) throws Throwable {
+    // ENABLE EXCEPTION CHECKSTYLE
+        if (arity >= 0 && arguments.length != arity) {
+            throw new WrongMethodTypeException("expected " + arity + " arguments, got " + arguments.length);
+        }
+        return call(context, arguments);
+    }
+
+    // DISABLE EXCEPTION CHECKSTYLE
+    protected abstract Term call(TermContext context, Term[] arguments) throws Throwable;
+    // ENABLE EXCEPTION CHECKSTYLE
+
+    private static final class Arity0 extends HookInvoker {
+        Arity0(MethodHandle handle) {
+            super(0, handle);
+        }
+
+        @Override
+        // DISABLE EXCEPTION CHECKSTYLE
+        protected Term call(TermContext context, Term[] arguments) throws Throwable {
+        // ENABLE EXCEPTION CHECKSTYLE
+            return (Term) handle.invokeExact(context);
+        }
+    }
+
+    private static final class Arity1 extends HookInvoker {
+        Arity1(MethodHandle handle) {
+            super(1, handle);
+        }
+
+        @Override
+        // DISABLE EXCEPTION CHECKSTYLE
+        protected Term call(TermContext context, Term[] arguments) throws Throwable {
+        // ENABLE EXCEPTION CHECKSTYLE
+            return (Term) handle.invokeExact(arguments[0], context);
+        }
+    }
+
+    private static final class Arity2 extends HookInvoker {
+        Arity2(MethodHandle handle) {
+            super(2, handle);
+        }
+
+        @Override
+        // DISABLE EXCEPTION CHECKSTYLE
+        protected Term call(TermContext context, Term[] arguments) throws Throwable {
+        // ENABLE EXCEPTION CHECKSTYLE
+            return (Term) handle.invokeExact(arguments[0], arguments[1], context);
+        }
+    }
+
+    private static final class Arity3 extends HookInvoker {
+        Arity3(MethodHandle handle) {
+            super(3, handle);
+        }
+
+        @Override
+        // DISABLE EXCEPTION CHECKSTYLE
+        protected Term call(TermContext context, Term[] arguments) throws Throwable {
+        // ENABLE EXCEPTION CHECKSTYLE
+            return (Term) handle.invokeExact(arguments[0], arguments[1], arguments[2], context);
+        }
+    }
+
+    /**
+     * Fallback for hooks of higher arity or unusual types, which are called through
+     * {@link MethodHandle#invokeWithArguments}; type mismatches surface as {@link ClassCastException}s.
+     */
+    private static final class Generic extends HookInvoker {
+        Generic(MethodHandle handle) {
+            super(-1, handle);
+        }
+
+        @Override
+        // DISABLE EXCEPTION CHECKSTYLE
+        protected Term call(TermContext context, Term[] arguments) throws Throwable {
+        // ENABLE EXCEPTION CHECKSTYLE
+            Object[] args = Arrays.copyOf(arguments, arguments.length + 1, Object[].class);
+            args[arguments.length] = context;
+            return (Term) handle.invokeWithArguments(args);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.backend.java.symbolic;
 
+import com.google.common.base.Stopwatch;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import org.kframework.RewriterResult;
@@ -42,8 +43,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Created by dwightguth on 5/6/15.
@@ -62,6 +65,10 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
     private final FileUtil files;
     private final InitializeDefinition initializeDefinition;
     private static final int NEGATIVE_VALUE = -1;
+    /**
+     * Each claim proven by {@code prove} draws its fresh constants from a range of 2^32 values of its own.
+     */
+    private static final int CLAIM_FRESH_COUNTER_BITS = 32;
 
     @Inject
     public InitializeRewriter(
@@ -92,6 +99,7 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
         TermContext initializingContext = TermContext.builder(new GlobalContext(fs, javaOptions, globalOptions, krunOptions, kem, smtOptions, hookProvider, files, Stage.INITIALIZING))
                 .freshCounter(0).build();
         Definition evaluatedDef = initializeDefinition.invoke(module, kem, initializingContext.global());
+        initializingContext.global().constraintOps.close();
 
         GlobalContext rewritingContext = new GlobalContext(fs, javaOptions, globalOptions, krunOptions, kem, smtOptions, hookProvider, files, Stage.REWRITING);
         rewritingContext.setDefinition(evaluatedDef);
@@ -101,7 +109,6 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
 
     public static class SymbolicRewriterGlue implements Rewriter {
 
-        private SymbolicRewriter rewriter;
         public final Definition definition;
         public final Module module;
         private final BigInteger initCounterValue;
@@ -109,6 +116,22 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
         private final KExceptionManager kem;
         private final KompileOptions kompileOptions;
         private final JavaExecutionOptions javaOptions;
+        private final ThreadLocal<Session> sessions;
+        private ForkJoinPool executePool;
+
+        /**
+         * The converter and the rewriter used by the requests of one thread. They are built on the first request of
+         * the thread, and only reset by the following ones.
+         */
+        private static final class Session {
+            private final KOREtoBackendKIL converter;
+            private final SymbolicRewriter rewriter;
+
+            private Session(KOREtoBackendKIL converter, SymbolicRewriter rewriter) {
+                this.converter = converter;
+                this.rewriter = rewriter;
+            }
+        }
 
         public SymbolicRewriterGlue(
                 Module module,
@@ -120,24 +143,84 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
                 KExceptionManager kem) {
             this.kompileOptions = kompileOptions;
             this.javaOptions = javaOptions;
-            this.rewriter = null;
             this.definition = definition;
             this.module = module;
             this.initCounterValue = initCounterValue;
             this.rewritingContext = rewritingContext;
             this.kem = kem;
+            this.sessions = ThreadLocal.withInitial(() -> {
+                KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, rewritingContext, false);
+                return new Session(converter, new SymbolicRewriter(rewritingContext, kompileOptions, javaOptions, new KRunState.Counter(), converter));
+            });
+        }
+
+        private Session session() {
+            Session session = sessions.get();
+            session.converter.clearVariables();
+            session.rewriter.reset();
+            return session;
         }
 
         @Override
         public RewriterResult execute(K k, Optional<Integer> depth) {
+            return executeInSession(k, depth);
+        }
+
+        private RewriterResult executeInSession(K k, Optional<Integer> depth) {
+            Session session = session();
             TermContext termContext = TermContext.builder(rewritingContext).freshCounter(initCounterValue).build();
-            KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
-            Term backendKil = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, converter.convert(k));
-            this.rewriter = new SymbolicRewriter(rewritingContext,  kompileOptions, javaOptions, new KRunState.Counter(), converter);
-            JavaKRunState result = (JavaKRunState) rewriter.rewrite(new ConstrainedTerm(backendKil, termContext), depth.orElse(-1));
+            Term backendKil = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, session.converter.convertInput(k));
+            JavaKRunState result = (JavaKRunState) session.rewriter.rewrite(new ConstrainedTerm(backendKil, termContext), depth.orElse(-1));
             return new RewriterResult(result.getStepsTaken(), result.getJavaKilTerm());
         }
 
+        /**
+         * Executes each of the given independent configurations as {@link #execute} does, on
+         * {@link JavaExecutionOptions#executeThreads} threads sharing the definition.
+         *
+         * @return the results of the executions, in the order of the configurations
+         */
+        @Override
+        public List<RewriterResult> executeAll(List<? extends K> ks, Optional<Integer> depth) {
+            if (javaOptions.executeThreads <= 1 || ks.size() <= 1) {
+                return ks.stream()
+                        .map(k -> executeInSession(k, depth))
+                        .collect(Collectors.toList());
+            }
+            return executePool().submit(() -> ks.parallelStream()
+                    .map(k -> executeInSession(k, depth))
+                    .collect(Collectors.<RewriterResult>toList()))
+                    .join();
+        }
+
+        /**
+         * Writes the report of the rules and functions applied so far by this rewriter, if {@code --profile-rules}
+         * is enabled. The report is also written when the rewriter is closed.
+         */
+        public void writeProfile() {
+            if (rewritingContext.ruleProfiler != null) {
+                rewritingContext.ruleProfiler.write();
+            }
+        }
+
+        /* kept until the rewriter is closed, so that its threads keep their sessions from one batch to the next */
+        private synchronized ForkJoinPool executePool() {
+            if (executePool == null) {
+                executePool = new ForkJoinPool(javaOptions.executeThreads);
+            }
+            return executePool;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (executePool != null) {
+                executePool.shutdown();
+                executePool = null;
+            }
+            rewritingContext.constraintOps.close();
+            writeProfile();
+        }
+
         @Override
         public List<? extends Map<? extends KVariable,? extends K>> match(K k, org.kframework.definition.Rule rule) {
             return search(k, Optional.of(0), Optional.empty(), rule, SearchType.STAR);
@@ -146,13 +229,12 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
 
         @Override
         public List<? extends Map<? extends KVariable, ? extends K>> search(K initialConfiguration, Optional<Integer> depth, Optional<Integer> bound, Rule pattern, SearchType searchType) {
+            Session session = session();
             TermContext termContext = TermContext.builder(rewritingContext).freshCounter(initCounterValue).build();
-            KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
-            Term javaTerm = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, converter.convert(initialConfiguration));
-            org.kframework.backend.java.kil.Rule javaPattern = converter.convert(Optional.empty(), pattern);
+            Term javaTerm = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, session.converter.convertInput(initialConfiguration));
+            org.kframework.backend.java.kil.Rule javaPattern = session.converter.convert(Optional.empty(), pattern);
             List<Substitution<Variable, Term>> searchResults;
-            this.rewriter = new SymbolicRewriter(rewritingContext,  kompileOptions, javaOptions, new KRunState.Counter(), converter);
-            searchResults = rewriter
+            searchResults = session.rewriter
                     .search(javaTerm, javaPattern, bound.orElse(NEGATIVE_VALUE), depth.orElse(NEGATIVE_VALUE), searchType, termContext)
                     .stream().collect(Collectors.toList());
             return searchResults;
@@ -166,10 +248,10 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
 
         @Override
         public List<K> prove(List<Rule> rules) {
+            Session session = session();
             TermContext termContext = TermContext.builder(rewritingContext).freshCounter(initCounterValue).build();
-            KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
             List<org.kframework.backend.java.kil.Rule> javaRules = rules.stream()
-                    .map(r -> converter.convert(Optional.<Module>empty(), r))
+                    .map(r -> session.converter.convert(Optional.<Module>empty(), r))
                     .map(r -> new org.kframework.backend.java.kil.Rule(
                             r.label(),
                             r.leftHandSide().evaluate(termContext),
@@ -196,13 +278,43 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
                     .map(org.kframework.backend.java.kil.Rule::renameVariables)
                     .collect(Collectors.toList());
 
-            this.rewriter = new SymbolicRewriter(rewritingContext,  kompileOptions, javaOptions, new KRunState.Counter(), converter);
-
-            List<ConstrainedTerm> proofResults = javaRules.stream()
+            List<org.kframework.backend.java.kil.Rule> claims = javaRules.stream()
                     .filter(r -> !r.containsAttribute(Attribute.TRUSTED_KEY))
-                    .map(r -> rewriter.proveRule(r.createLhsPattern(termContext), r.createRhsPattern(), allRules))
-                    .flatMap(List::stream)
                     .collect(Collectors.toList());
+            List<ConstrainedTerm> proofResults;
+            if (javaOptions.proveThreads > 1) {
+                /*
+                 * claims are independent, so each is proven under its own term context, whose fresh counter starts at
+                 * the beginning of a range of its own; the fresh constants of a claim thus do not depend on the order
+                 * in which the claims are proven, nor on the number of threads they are proven with
+                 */
+                BigInteger counterValue = termContext.getCounterValue();
+                List<TermContext> claimContexts = IntStream.range(0, claims.size())
+                        .mapToObj(i -> TermContext.builder(rewritingContext)
+                                .freshCounter(counterValue.add(BigInteger.valueOf(i).shiftLeft(CLAIM_FRESH_COUNTER_BITS)))
+                                .build())
+                        .collect(Collectors.toList());
+                ForkJoinPool pool = new ForkJoinPool(javaOptions.proveThreads);
+                try {
+                    proofResults = pool.submit(() -> IntStream.range(0, claims.size()).parallel()
+                            .mapToObj(i -> proveClaim(session.rewriter, claims.get(i), claimContexts.get(i), allRules, pool))
+                            .flatMap(List::stream)
+                            .collect(Collectors.toList()))
+                            .join();
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                /* the claims are proven one after the other, sharing the term context and its fresh counter */
+                proofResults = claims.stream()
+                        .map(claim -> proveClaim(session.rewriter, claim, termContext, allRules, null))
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList());
+            }
+
+            if (rewritingContext.krunOptions.experimental.statistics) {
+                rewritingContext.printStatistics();
+            }
 
             return proofResults.stream()
                     .map(ConstrainedTerm::term)
@@ -210,6 +322,26 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
                     .collect(Collectors.toList());
         }
 
+        private List<ConstrainedTerm> proveClaim(
+                SymbolicRewriter rewriter,
+                org.kframework.backend.java.kil.Rule claim,
+                TermContext termContext,
+                List<org.kframework.backend.java.kil.Rule> allRules,
+                ForkJoinPool pool) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            List<ConstrainedTerm> result = rewriter.proveRule(
+                    claim.createLhsPattern(termContext),
+                    claim.createRhsPattern(),
+                    allRules,
+                    pool);
+            stopwatch.stop();
+            if (rewritingContext.krunOptions.experimental.statistics) {
+                System.err.println("[" + claim.getSource() + " " + claim.getLocation() + ": "
+                        + result.size() + " unproven, " + stopwatch + "]");
+            }
+            return result;
+        }
+
     }
 
 
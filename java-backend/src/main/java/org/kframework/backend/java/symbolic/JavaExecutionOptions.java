@@ -7,6 +7,8 @@ import org.kframework.utils.options.BaseEnumConverter;
 
 import com.beust.jcommander.Parameter;
 
+import java.io.File;
+
 @RequestScoped
 public final class JavaExecutionOptions {
 
@@ -35,6 +37,36 @@ public final class JavaExecutionOptions {
             + "tagged with the value of --apply-tag, or fail with an error explaining why the rule did not apply.")
     public Integer auditingStep;
 
+    @Parameter(names="--search-threads", description="Number of threads used to expand each level of the "
+            + "search frontier in the Java backend. Results are merged in the same order as a sequential search.")
+    public int searchThreads = 1;
+
+    @Parameter(names="--prove-threads", description="Number of threads used by --prove in the Java backend to "
+            + "prove independent claims and the branches of each claim concurrently.")
+    public int proveThreads = 1;
+
+    @Parameter(names="--execute-threads", description="Number of threads used by the Java backend to execute "
+            + "independent configurations passed together to the rewriter API.")
+    public int executeThreads = 1;
+
+    @Parameter(names="--profile-rules", description="Profile the rules and functions applied by the Java backend. "
+            + "A report of their applications, attempts, failed side conditions, SMT calls and time is written to "
+            + "the given file, and the time spent in each stack of rules and functions to the same file with the "
+            + "extension .folded, in the collapsed-stack format of flame graph tools.")
+    public File profileRules = null;
+
+    @Parameter(names="--memoize-functions", description="Memoize the results of all pure functions applied to "
+            + "ground arguments, rather than only those of functions with the memo attribute.")
+    public boolean memoizeFunctions = false;
+
+    @Parameter(names="--function-cache-size", description="Maximum number of memoized function results kept by "
+            + "the Java backend. Least recently used results are evicted first.")
+    public int functionCacheSize = 10000;
+
+    @Parameter(names="--hash-cons", description="Share structurally equal ground terms built during rewriting "
+            + "in the Java backend through a weak interning table.")
+    public boolean hashCons = false;
+
     public static class RuleIndexConveter extends BaseEnumConverter<IndexingAlgorithm> {
 
         public RuleIndexConveter(String optionName) {
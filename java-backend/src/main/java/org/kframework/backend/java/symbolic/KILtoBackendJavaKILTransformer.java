@@ -605,8 +605,7 @@ public class KILtoBackendJavaKILTransformer extends CopyOnWriteTransformer {
                 break;
             }
 
-            definition.functionRules().clear();
-            definition.anywhereRules().clear();
+            definition.clearFunctionAndAnywhereRules();
             definition.addRuleCollection(partiallyEvaluatedRules);
         }
 
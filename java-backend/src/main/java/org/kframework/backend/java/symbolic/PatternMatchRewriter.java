@@ -22,7 +22,6 @@ import org.kframework.krun.KRunOptions;
 import org.kframework.rewriter.SearchType;
 import org.kframework.utils.errorsystem.KEMException;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -193,8 +192,10 @@ public class PatternMatchRewriter {
 
         RuleAuditing.setAuditingRule(javaOptions, step, termContext.definition());
 
-        File coverage = options.experimental.coverage;
-        Coverage.print(coverage, subject);
+        Coverage coverage = Coverage.of(options.experimental.coverage);
+        if (coverage != null) {
+            coverage.record(subject);
+        }
 
         // Applying a strategy to a list of rules divides the rules up into
         // equivalence classes of rules. We iterate through these equivalence
@@ -237,7 +238,9 @@ public class PatternMatchRewriter {
                                 if (options.experimental.trace) {
                                     System.out.println(rule);
                                 }
-                                Coverage.print(coverage, rule);
+                                if (coverage != null) {
+                                    coverage.record(rule);
+                                }
                                 results.add(subject);
 
                                 /* the result of rewrite machine must be in the reference results */
@@ -257,7 +260,9 @@ public class PatternMatchRewriter {
                                     System.out.println(rule);
                                 }
                                 RuleAuditing.succeed(rule);
-                                Coverage.print(coverage, rule);
+                                if (coverage != null) {
+                                    coverage.record(rule);
+                                }
                                 subject = constructNewSubjectTerm(rule, subst, termContext);
                                 results.add(subject);
                                 succeed = true;
@@ -118,7 +118,11 @@ public class PatternMatcher extends AbstractUnifier {
             return Collections.emptyList();
         }
 
-        return RewriteEngineUtils.evaluateConditions(rule, matcher.substitutions(), context);
+        List<Substitution<Variable, Term>> results = RewriteEngineUtils.evaluateConditions(rule, matcher.substitutions(), context);
+        if (results.isEmpty() && context.global().ruleProfiler != null) {
+            context.global().ruleProfiler.failCondition(rule);
+        }
+        return results;
     }
 
     public PatternMatcher(boolean matchOnFunctionSymbol, boolean disjointVariables, TermContext context) {
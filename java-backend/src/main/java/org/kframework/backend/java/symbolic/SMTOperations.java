@@ -3,7 +3,9 @@ package org.kframework.backend.java.symbolic;
 
 import org.kframework.backend.java.kil.Definition;
 import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.util.RuleProfiler;
 import org.kframework.backend.java.util.Z3Wrapper;
+import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.options.SMTOptions;
 import org.kframework.utils.options.SMTSolver;
 
@@ -16,14 +18,32 @@ public class SMTOperations {
 
     private final SMTOptions smtOptions;
     private final Z3Wrapper z3;
+    private final SMTQueryCache queryCache;
+    private final RuleProfiler profiler;
 
     @Inject
     public SMTOperations(
             Provider<Definition> definitionProvider,
             SMTOptions smtOptions,
-            Z3Wrapper z3) {
+            Z3Wrapper z3,
+            FileUtil files) {
+        this(definitionProvider, smtOptions, z3, files, null);
+    }
+
+    public SMTOperations(
+            Provider<Definition> definitionProvider,
+            SMTOptions smtOptions,
+            Z3Wrapper z3,
+            FileUtil files,
+            RuleProfiler profiler) {
         this.smtOptions = smtOptions;
+        this.profiler = profiler;
         this.z3 = z3;
+        this.queryCache = smtOptions.smtCacheSize > 0 ?
+                new SMTQueryCache(
+                        smtOptions.smtCacheSize,
+                        smtOptions.smtPersistentCache ? files.resolveKompiled("smt-cache.txt") : null) :
+                null;
     }
 
     public boolean checkUnsat(ConjunctiveFormula constraint) {
@@ -38,7 +58,7 @@ public class SMTOperations {
         boolean result = false;
         try {
             String query = KILtoSMTLib.translateConstraint(constraint);
-            result = z3.isUnsat(query, smtOptions.z3CnstrTimeout);
+            result = isUnsat(query, smtOptions.z3CnstrTimeout);
             if (result && RuleAuditing.isAuditBegun()) {
                 System.err.println("SMT query returned unsat: " + query);
             }
@@ -57,7 +77,7 @@ public class SMTOperations {
             Set<Variable> rightOnlyVariables) {
         if (smtOptions.smt == SMTSolver.Z3) {
             try {
-                return z3.isUnsat(
+                return isUnsat(
                         KILtoSMTLib.translateImplication(left, right, rightOnlyVariables),
                         smtOptions.z3ImplTimeout);
             } catch (UnsupportedOperationException e) {
@@ -68,4 +88,40 @@ public class SMTOperations {
         }
         return false;
     }
+
+    private boolean isUnsat(String query, int timeout) {
+        if (queryCache == null) {
+            return Boolean.TRUE.equals(callSolver(query, timeout));
+        }
+        String key = SMTQueryCache.key(z3.SMT_PRELUDE, query, timeout);
+        Boolean result = queryCache.get(key);
+        if (result == null) {
+            result = callSolver(query, timeout);
+            /* an undecided query may be decided by a later call */
+            if (result != null) {
+                queryCache.put(key, result);
+            }
+        }
+        return Boolean.TRUE.equals(result);
+    }
+
+    private Boolean callSolver(String query, int timeout) {
+        if (profiler != null) {
+            profiler.smtCall();
+        }
+        return z3.checkUnsat(query, timeout);
+    }
+
+    /**
+     * Releases the solver sessions kept by the underlying {@link Z3Wrapper}.
+     */
+    public void close() {
+        z3.close();
+    }
+
+    public void printStatistics() {
+        if (queryCache != null) {
+            System.err.println(queryCache);
+        }
+    }
 }
@@ -0,0 +1,306 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.kframework.backend.java.util.SExpression;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of SMT query results, keyed by a canonical form of the SMTLib query
+ * (see {@link #canonicalize(String)}), so that alpha-equivalent queries whose conjuncts are
+ * generated in a different order share the same entry.
+ * <p>
+ * If a persistent file is given, every answered query is also appended to it and the
+ * entries already in it are consulted on a miss, so that later runs can reuse them.
+ * Each entry is appended with a single write under an exclusive lock on the file, so that
+ * several processes can share the same file.
+ * <p>
+ * Only definite answers of the solver may be cached: a query which timed out or made the
+ * solver fail may be answered by a later call.
+ */
+public class SMTQueryCache {
+
+    private static final Set<String> BINDERS = ImmutableSet.of("forall", "exists");
+    private static final Pattern SIMPLE_SYMBOL = Pattern.compile("[a-zA-Z~!@$%^&*_+=<>.?/-][0-9a-zA-Z~!@$%^&*_+=<>.?/-]*");
+
+    private final Map<String, Boolean> cache;
+    private final File persistentFile;
+    private Map<String, Boolean> persistentCache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SMTQueryCache(int maxSize, File persistentFile) {
+        this.cache = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return this.size() > maxSize;
+            }
+        };
+        this.persistentFile = persistentFile;
+    }
+
+    /**
+     * Returns the cache key of the given query. The prelude and timeout are part of the key
+     * because they may change the answer of the solver.
+     */
+    public static String key(String prelude, String query, int timeout) {
+        return Hashing.sha256().newHasher()
+                .putString(prelude, StandardCharsets.UTF_8)
+                .putInt(timeout)
+                .putString(canonicalize(query), StandardCharsets.UTF_8)
+                .hash().toString();
+    }
+
+    /**
+     * Returns the cached result for the given key, or {@code null} if the query has not been answered yet.
+     */
+    public synchronized Boolean get(String key) {
+        Boolean result = cache.get(key);
+        if (result == null && persistentFile != null) {
+            result = persistentCache().get(key);
+            if (result != null) {
+                cache.put(key, result);
+            }
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Records the definite answer of the solver to a query: {@code true} if it is unsat, {@code false} if it is sat.
+     */
+    public synchronized void put(String key, boolean result) {
+        cache.put(key, result);
+        if (persistentFile != null && persistentCache().put(key, result) == null) {
+            byte[] entry = (key + " " + (result ? 1 : 0) + "\n").getBytes(StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(persistentFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 FileLock ignored = channel.lock()) {
+                ByteBuffer buffer = ByteBuffer.wrap(entry);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write to " + persistentFile, e);
+            }
+        }
+    }
+
+    private Map<String, Boolean> persistentCache() {
+        if (persistentCache == null) {
+            persistentCache = new HashMap<>();
+            if (persistentFile.exists()) {
+                try (FileChannel channel = FileChannel.open(persistentFile.toPath(), StandardOpenOption.READ);
+                     FileLock ignored = channel.lock(0, Long.MAX_VALUE, true)) {
+                    BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.name()));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] entry = line.split(" ");
+                        if (entry.length == 2 && (entry[1].equals("0") || entry[1].equals("1"))) {
+                            persistentCache.put(entry[0], entry[1].equals("1"));
+                        }
+                    }
+                } catch (IOException e) {
+                    throw KEMException.criticalError("Could not read from " + persistentFile, e);
+                }
+            }
+        }
+        return persistentCache;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        long total = hits() + misses();
+        return String.format("SMT query cache: %d hits, %d misses (%.1f%% hit rate), %d entries",
+                hits(), misses(), total == 0 ? 0.0 : 100.0 * hits() / total, size());
+    }
+
+    /**
+     * Returns an equisatisfiable form of the given SMTLib query in which the arguments of every
+     * {@code and}, as well as the top-level assertions, are sorted, and the declared constants and
+     * quantified variables are renamed in order of their first occurrence.
+     * <p>
+     * The renaming applies to every command, and the new names cannot be written in SMTLib, so they
+     * never clash with a name of the query: two queries only have the same canonical form if they
+     * are equal up to the renaming of their constants and variables and the order of their conjuncts.
+     */
+    public static String canonicalize(String query) {
+        List<Object> commands = new ArrayList<>();
+        for (Object command : SExpression.read(query)) {
+            commands.add(normalizeSymbols(command));
+        }
+        Set<String> variables = new HashSet<>();
+        List<Object> declarations = new ArrayList<>();
+        List<List<Object>> variableDeclarations = new ArrayList<>();
+        List<Object> assertions = new ArrayList<>();
+        for (Object command : commands) {
+            if (isConstantDeclaration(command)) {
+                List<Object> declaration = SExpression.asList(command);
+                variables.add((String) declaration.get(1));
+                variableDeclarations.add(declaration);
+            } else if (SExpression.isApplication(command, "assert")) {
+                assertions.add(command);
+            } else {
+                declarations.add(command);
+            }
+            collectBoundVariables(command, variables);
+        }
+        assertions.replaceAll(assertion -> sortConjunctions(assertion, variables));
+        assertions.sort(shapeComparator(variables));
+
+        Map<String, String> renaming = new HashMap<>();
+        for (Object assertion : assertions) {
+            collectRenaming(assertion, variables, renaming);
+        }
+        for (Object declaration : declarations) {
+            collectRenaming(declaration, variables, renaming);
+        }
+        for (List<Object> declaration : variableDeclarations) {
+            collectRenaming(declaration, variables, renaming);
+        }
+        Comparator<String> byIndex = Comparator.<String, Integer>comparing(String::length)
+                .thenComparing(Comparator.<String>naturalOrder());
+        variableDeclarations.sort(Comparator.comparing(d -> renaming.get((String) d.get(1)), byIndex));
+
+        Function<String, String> rename = v -> renaming.getOrDefault(v, v);
+        StringBuilder sb = new StringBuilder();
+        for (Object declaration : declarations) {
+            SExpression.print(declaration, rename, sb);
+            sb.append("\n");
+        }
+        for (Object declaration : variableDeclarations) {
+            SExpression.print(declaration, rename, sb);
+            sb.append("\n");
+        }
+        for (Object assertion : assertions) {
+            SExpression.print(assertion, rename, sb);
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Replaces the quoted symbols which could be written without bars by their simple form, since
+     * both denote the same symbol.
+     */
+    private static Object normalizeSymbols(Object node) {
+        if (node instanceof List) {
+            List<Object> children = new ArrayList<>();
+            for (Object child : SExpression.asList(node)) {
+                children.add(normalizeSymbols(child));
+            }
+            return children;
+        }
+        String atom = (String) node;
+        if (atom.startsWith("|")) {
+            String name = SExpression.symbolName(atom);
+            if (SIMPLE_SYMBOL.matcher(name).matches()) {
+                return name;
+            }
+        }
+        return atom;
+    }
+
+    private static boolean isConstantDeclaration(Object command) {
+        if (!SExpression.isApplication(command, "declare-fun")) {
+            return false;
+        }
+        List<Object> list = SExpression.asList(command);
+        return list.size() == 4 && list.get(1) instanceof String
+                && list.get(2) instanceof List && SExpression.asList(list.get(2)).isEmpty();
+    }
+
+    private static void collectBoundVariables(Object node, Set<String> variables) {
+        if (node instanceof List) {
+            List<Object> list = SExpression.asList(node);
+            if (list.size() == 3 && BINDERS.contains(list.get(0)) && list.get(1) instanceof List) {
+                for (Object binder : SExpression.asList(list.get(1))) {
+                    if (binder instanceof List && !SExpression.asList(binder).isEmpty()
+                            && SExpression.asList(binder).get(0) instanceof String) {
+                        variables.add((String) SExpression.asList(binder).get(0));
+                    }
+                }
+            }
+            list.forEach(child -> collectBoundVariables(child, variables));
+        }
+    }
+
+    private static Object sortConjunctions(Object node, Set<String> variables) {
+        if (!(node instanceof List)) {
+            return node;
+        }
+        List<Object> children = new ArrayList<>();
+        for (Object child : SExpression.asList(node)) {
+            children.add(sortConjunctions(child, variables));
+        }
+        if (!children.isEmpty() && "and".equals(children.get(0))) {
+            children.subList(1, children.size()).sort(shapeComparator(variables));
+        }
+        return children;
+    }
+
+    /**
+     * Orders terms by their structure with all variables erased. Terms of the same structure are
+     * not ordered by the names of their variables, which would make the order depend on the naming;
+     * since the sort is stable, they are left in the order in which they were generated.
+     */
+    private static Comparator<Object> shapeComparator(Set<String> variables) {
+        Function<String, String> erasure = v -> variables.contains(v) ? "#" : v;
+        Map<Object, String> shapes = new IdentityHashMap<>();
+        return Comparator.comparing((Object node) -> shapes.computeIfAbsent(node, n -> {
+            StringBuilder sb = new StringBuilder();
+            SExpression.print(n, erasure, sb);
+            return sb.toString();
+        }));
+    }
+
+    /* a variable is renamed to # followed by its index, which is neither a symbol nor a literal */
+    private static void collectRenaming(Object node, Set<String> variables, Map<String, String> renaming) {
+        if (node instanceof List) {
+            SExpression.asList(node).forEach(child -> collectRenaming(child, variables, renaming));
+        } else if (variables.contains(node)) {
+            renaming.computeIfAbsent((String) node, v -> "#" + renaming.size());
+        }
+    }
+
+}
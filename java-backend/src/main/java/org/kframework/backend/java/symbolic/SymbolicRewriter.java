@@ -16,7 +16,9 @@ import org.kframework.backend.java.compile.KOREtoBackendKIL;
 import org.kframework.backend.java.indexing.RuleIndex;
 import org.kframework.backend.java.kil.*;
 import org.kframework.backend.java.strategies.TransitionCompositeStrategy;
+import org.kframework.backend.java.util.Coverage;
 import org.kframework.backend.java.util.JavaKRunState;
+import org.kframework.backend.java.util.RuleProfiler;
 import org.kframework.builtin.KLabels;
 import org.kframework.kil.ASTNode;
 import org.kframework.kompile.KompileOptions;
@@ -28,14 +30,19 @@ import org.kframework.utils.BitSet;
 import org.kframework.rewriter.SearchType;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -49,14 +56,18 @@ public class SymbolicRewriter {
     private final Stopwatch stopwatch = Stopwatch.createUnstarted();
     private final KOREtoBackendKIL constructor;
     private boolean transition;
-    private final Set<ConstrainedTerm> superheated = Sets.newHashSet();
-    private final Set<ConstrainedTerm> newSuperheated = Sets.newHashSet();
+    private final Set<ConstrainedTerm> superheated = Sets.newConcurrentHashSet();
+    private final Set<ConstrainedTerm> newSuperheated = Sets.newConcurrentHashSet();
     private final RuleIndex ruleIndex;
     private final KRunState.Counter counter;
     private final Map<ConstrainedTerm, Set<Rule>> subject2DisabledRules = new HashMap<>();
-    private final FastRuleMatcher theFastMatcher;
+    /**
+     * {@link FastRuleMatcher} keeps per-match state, so each thread expanding the search frontier gets its own.
+     */
+    private final ThreadLocal<FastRuleMatcher> theFastMatcher;
     private final Definition definition;
     private final BitSet allRuleBits;
+    private final Coverage coverage;
 
     @Inject
     public SymbolicRewriter(GlobalContext global, KompileOptions kompileOptions, JavaExecutionOptions javaOptions,
@@ -70,8 +81,21 @@ public class SymbolicRewriter {
         this.counter = counter;
         this.strategy = new TransitionCompositeStrategy(kompileOptions.transition);
         this.transitions = kompileOptions.transition;
-        this.theFastMatcher = new FastRuleMatcher(global, definition.ruleTable.size());
+        this.theFastMatcher = ThreadLocal.withInitial(() -> new FastRuleMatcher(global, definition.ruleTable.size()));
         this.transition = true;
+        this.coverage = Coverage.of(global.krunOptions.experimental.coverage);
+    }
+
+    /**
+     * Forgets the state left by the previous {@link #rewrite} or {@link #search}, so that this rewriter can be
+     * reused for an unrelated term.
+     */
+    public void reset() {
+        stopwatch.reset();
+        superheated.clear();
+        newSuperheated.clear();
+        subject2DisabledRules.clear();
+        transition = true;
     }
 
     public KRunState rewrite(ConstrainedTerm constrainedTerm, int bound) {
@@ -91,13 +115,14 @@ public class SymbolicRewriter {
         stopwatch.stop();
         if (afterVariableRename.termContext().global().krunOptions.experimental.statistics) {
             System.err.println("[" + step + ", " + stopwatch + " ]");
+            afterVariableRename.termContext().global().printStatistics();
         }
 
         return finalState;
     }
 
     private List<ConstrainedTerm> computeRewriteStep(ConstrainedTerm constrainedTerm, int step, boolean computeOne) {
-        return fastComputeRewriteStep(constrainedTerm, computeOne, false, false);
+        return fastComputeRewriteStep(constrainedTerm, computeOne, false, false, null);
     }
 
     /**
@@ -151,12 +176,16 @@ public class SymbolicRewriter {
         throw new UnsupportedOperationException();
     }
 
-    private List<ConstrainedTerm> fastComputeRewriteStep(ConstrainedTerm subject, boolean computeOne, boolean narrowing, boolean proofFlag) {
+    /**
+     * @param speculation the buffer of the side effects of the step if it may be discarded, or null to apply them
+     */
+    private List<ConstrainedTerm> fastComputeRewriteStep(ConstrainedTerm subject, boolean computeOne, boolean narrowing, boolean proofFlag, Speculation speculation) {
         List<ConstrainedTerm> results = new ArrayList<>();
+        RuleProfiler profiler = subject.termContext().global().ruleProfiler;
         if (definition.automaton == null) {
             return results;
         }
-        List<FastRuleMatcher.RuleMatchResult> matches = theFastMatcher.matchRulePattern(
+        List<FastRuleMatcher.RuleMatchResult> matches = theFastMatcher.get().matchRulePattern(
                 subject,
                 definition.automaton.leftHandSide(),
                 allRuleBits,
@@ -167,60 +196,79 @@ public class SymbolicRewriter {
                 subject.termContext());
         for (FastRuleMatcher.RuleMatchResult matchResult : matches) {
             Rule rule = definition.ruleTable.get(matchResult.ruleIndex);
-            Substitution<Variable, Term> substitution =
-                    rule.containsAttribute(Att.refers_THIS_CONFIGURATION()) ?
-                            matchResult.constraint.substitution().plus(new Variable(KLabels.THIS_CONFIGURATION, Sort.KSEQUENCE), filterOurStrategyCell(subject.term())) :
-                            matchResult.constraint.substitution();
-            // start the optimized substitution
-
-            // get a map from AST paths to (fine-grained, inner) rewrite RHSs
-            assert (matchResult.rewrites.size() > 0);
-            Term theNew;
-            if (matchResult.rewrites.size() == 1)
-            // use the more efficient implementation if we only have one rewrite
-            {
-                theNew = buildRHS(subject.term(), substitution, matchResult.rewrites.keySet().iterator().next(),
-                        matchResult.rewrites.values().iterator().next(), subject.termContext());
-            } else {
-                theNew = buildRHS(subject.term(), substitution,
-                        matchResult.rewrites.entrySet().stream().map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()),
-                        subject.termContext());
-            }
+            RuleProfiler.Frame frame = profiler != null ? profiler.enterRule(matchResult.ruleIndex) : null;
+            try {
+                Substitution<Variable, Term> substitution =
+                        rule.containsAttribute(Att.refers_THIS_CONFIGURATION()) ?
+                                matchResult.constraint.substitution().plus(new Variable(KLabels.THIS_CONFIGURATION, Sort.KSEQUENCE), filterOurStrategyCell(subject.term())) :
+                                matchResult.constraint.substitution();
+                // start the optimized substitution
+
+                // get a map from AST paths to (fine-grained, inner) rewrite RHSs
+                assert (matchResult.rewrites.size() > 0);
+                Term theNew;
+                if (matchResult.rewrites.size() == 1)
+                // use the more efficient implementation if we only have one rewrite
+                {
+                    theNew = buildRHS(subject.term(), substitution, matchResult.rewrites.keySet().iterator().next(),
+                            matchResult.rewrites.values().iterator().next(), subject.termContext());
+                } else {
+                    theNew = buildRHS(subject.term(), substitution,
+                            matchResult.rewrites.entrySet().stream().map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()),
+                            subject.termContext());
+                }
 
-            if (!matchResult.isMatching) {
-                theNew = theNew.substituteAndEvaluate(substitution, subject.termContext());
-            }
+                if (!matchResult.isMatching) {
+                    theNew = theNew.substituteAndEvaluate(substitution, subject.termContext());
+                }
+
+                theNew = restoreConfigurationIfNecessary(subject, rule, theNew);
 
-            theNew = restoreConfigurationIfNecessary(subject, rule, theNew);
+                /* eliminate bindings of the substituted variables */
+                ConjunctiveFormula constraint = matchResult.constraint;
+                constraint = constraint.removeBindings(rule.variableSet());
 
-            /* eliminate bindings of the substituted variables */
-            ConjunctiveFormula constraint = matchResult.constraint;
-            constraint = constraint.removeBindings(rule.variableSet());
+                /* get fresh substitutions of rule variables */
+                Map<Variable, Variable> renameSubst = Variable.rename(rule.variableSet());
 
-            /* get fresh substitutions of rule variables */
-            Map<Variable, Variable> renameSubst = Variable.rename(rule.variableSet());
+                /* rename rule variables in both the term and the constraint */
+                theNew = theNew.substituteWithBinders(renameSubst);
+                constraint = ((ConjunctiveFormula) constraint.substituteWithBinders(renameSubst)).simplify(subject.termContext());
 
-            /* rename rule variables in both the term and the constraint */
-            theNew = theNew.substituteWithBinders(renameSubst);
-            constraint = ((ConjunctiveFormula) constraint.substituteWithBinders(renameSubst)).simplify(subject.termContext());
+                ConstrainedTerm result = new ConstrainedTerm(theNew, constraint, subject.termContext());
+                if (!matchResult.isMatching) {
+                    // TODO(AndreiS): move these some other place
+                    result = result.expandPatterns(true);
+                    if (result.constraint().isFalse() || result.constraint().checkUnsat()) {
+                        continue;
+                    }
+                }
 
-            ConstrainedTerm result = new ConstrainedTerm(theNew, constraint, subject.termContext());
-            if (!matchResult.isMatching) {
-                // TODO(AndreiS): move these some other place
-                result = result.expandPatterns(true);
-                if (result.constraint().isFalse() || result.constraint().checkUnsat()) {
+                /* TODO(AndreiS): remove this hack for super strictness after strategies work */
+                if (rule.containsAttribute(Att.heat()) && transitions.stream().anyMatch(rule::containsAttribute)) {
+                    if (speculation != null) {
+                        speculation.superheated.add(result);
+                    } else {
+                        newSuperheated.add(result);
+                    }
+                } else if (rule.containsAttribute(Att.cool()) && transitions.stream().anyMatch(rule::containsAttribute) && superheated.contains(subject)) {
                     continue;
                 }
-            }
 
-            /* TODO(AndreiS): remove this hack for super strictness after strategies work */
-            if (rule.containsAttribute(Att.heat()) && transitions.stream().anyMatch(rule::containsAttribute)) {
-                newSuperheated.add(result);
-            } else if (rule.containsAttribute(Att.cool()) && transitions.stream().anyMatch(rule::containsAttribute) && superheated.contains(subject)) {
-                continue;
+                if (speculation != null) {
+                    speculation.appliedRules.add(rule);
+                } else if (coverage != null) {
+                    coverage.record(rule);
+                }
+                if (frame != null) {
+                    frame.apply();
+                }
+                results.add(result);
+            } finally {
+                if (frame != null) {
+                    profiler.exit(frame);
+                }
             }
-
-            results.add(result);
         }
 
         if (results.isEmpty()) {
@@ -482,56 +530,89 @@ public class SymbolicRewriter {
             }
         }
 
-        int step;
-    label:
-        for (step = 0; !queue.isEmpty(); ++step) {
-            superheated.clear();
-            superheated.addAll(newSuperheated);
-            newSuperheated.clear();
-            for (Map.Entry<ConstrainedTerm, Integer> entry : queue.entrySet()) {
-                ConstrainedTerm term = entry.getKey();
-                Integer currentDepth = entry.getValue();
+        ForkJoinPool pool = javaOptions.searchThreads > 1 ? new ForkJoinPool(javaOptions.searchThreads) : null;
 
-                List<ConstrainedTerm> results = computeRewriteStep(term, step, false);
-
-                if (results.isEmpty() && searchType == SearchType.FINAL) {
-                    if (addSearchResult(searchResults, term, pattern, bound)) {
-                        break label;
-                    }
-                }
-
-                for (ConstrainedTerm result : results) {
-                    if (!transition) {
-                        nextQueue.put(result, currentDepth);
-                        break;
-                    } else {
-                        // Continue searching if we haven't reached our target
-                        // depth and we haven't already visited this state.
-                        if (currentDepth + 1 != depth && visited.add(result)) {
-                            nextQueue.put(result, currentDepth + 1);
+        int step = 0;
+        try {
+        label:
+            for (step = 0; !queue.isEmpty(); ++step) {
+                superheated.clear();
+                superheated.addAll(newSuperheated);
+                newSuperheated.clear();
+                /*
+                 * in parallel mode, the steps of the level are computed concurrently while their results are merged
+                 * in queue order; the steps not started yet are cancelled once the bound is reached
+                 */
+                List<ForkJoinTask<Pair<List<ConstrainedTerm>, Speculation>>> levelResults = pool != null ?
+                        computeRewriteStepsInParallel(queue.keySet(), step, pool) :
+                        null;
+                try {
+                    int index = 0;
+                    for (Map.Entry<ConstrainedTerm, Integer> entry : queue.entrySet()) {
+                        ConstrainedTerm term = entry.getKey();
+                        Integer currentDepth = entry.getValue();
+
+                        List<ConstrainedTerm> results = null;
+                        if (levelResults != null) {
+                            Pair<List<ConstrainedTerm>, Speculation> kept = levelResults.get(index++).join();
+                            if (kept != null) {
+                                kept.getRight().commit();
+                                results = kept.getLeft();
+                            }
                         }
-                        // If we aren't searching for only final results, then
-                        // also add this as a result if it matches the pattern.
-                        if (searchType != SearchType.FINAL || currentDepth + 1 == depth) {
-                            if (addSearchResult(searchResults, result, pattern, bound)) {
+                        if (results == null) {
+                            results = computeRewriteStep(term, step, false);
+                        }
+
+                        if (results.isEmpty() && searchType == SearchType.FINAL) {
+                            if (addSearchResult(searchResults, term, pattern, bound)) {
                                 break label;
                             }
                         }
+
+                        for (ConstrainedTerm result : results) {
+                            if (!transition) {
+                                nextQueue.put(result, currentDepth);
+                                break;
+                            } else {
+                                // Continue searching if we haven't reached our target
+                                // depth and we haven't already visited this state.
+                                if (currentDepth + 1 != depth && visited.add(result)) {
+                                    nextQueue.put(result, currentDepth + 1);
+                                }
+                                // If we aren't searching for only final results, then
+                                // also add this as a result if it matches the pattern.
+                                if (searchType != SearchType.FINAL || currentDepth + 1 == depth) {
+                                    if (addSearchResult(searchResults, result, pattern, bound)) {
+                                        break label;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    if (levelResults != null) {
+                        levelResults.forEach(task -> task.cancel(false));
                     }
                 }
-            }
 
-            /* swap the queues */
-            Map<ConstrainedTerm, Integer> temp;
-            temp = queue;
-            queue = nextQueue;
-            nextQueue = temp;
-            nextQueue.clear();
+                /* swap the queues */
+                Map<ConstrainedTerm, Integer> temp;
+                temp = queue;
+                queue = nextQueue;
+                nextQueue = temp;
+                nextQueue.clear();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
 
         stopwatch.stop();
         if (context.global().krunOptions.experimental.statistics) {
             System.err.println("[" + visited.size() + "states, " + step + "steps, " + stopwatch + "]");
+            context.global().printStatistics();
         }
 
         Set<Substitution<Variable, Term>> adaptedResults = searchResults.stream().map(r -> {
@@ -544,89 +625,177 @@ public class SymbolicRewriter {
         return adaptedResults;
     }
 
+    /**
+     * Submits to {@code pool} the computation of the successors of each of the given terms, and returns the tasks
+     * in the iteration order of {@code terms}. Each term is rewritten under a fork of its context, since term
+     * contexts are not thread-safe, and its successors are rebound to the {@link TermContext} of the term.
+     * <p>
+     * The successors of a term are only kept if their computation drew no fresh constant. Otherwise, the task
+     * returns null, and the caller must compute the successors again, in queue order, so that the fresh constants
+     * are the ones a sequential search would have drawn from the shared counter. The side effects of a kept step
+     * are returned along with its successors, and the caller commits them, so that no step is counted twice.
+     */
+    private List<ForkJoinTask<Pair<List<ConstrainedTerm>, Speculation>>> computeRewriteStepsInParallel(
+            Collection<ConstrainedTerm> terms,
+            int step,
+            ForkJoinPool pool) {
+        List<ForkJoinTask<Pair<List<ConstrainedTerm>, Speculation>>> tasks = new ArrayList<>(terms.size());
+        for (ConstrainedTerm term : terms) {
+            tasks.add(pool.submit(() -> {
+                TermContext fork = term.termContext().forkForThread();
+                Speculation speculation = new Speculation(fork);
+                List<ConstrainedTerm> results;
+                try {
+                    results = fastComputeRewriteStep(
+                            new ConstrainedTerm(term.term(), term.constraint(), fork),
+                            false,
+                            false,
+                            false,
+                            speculation);
+                } finally {
+                    speculation.stop();
+                }
+                return drewFreshConstant(fork, term.termContext()) ? null : Pair.of(
+                        results.stream().map(result -> rebind(result, term.termContext())).collect(Collectors.toList()),
+                        speculation);
+            }));
+        }
+        return tasks;
+    }
+
+    /**
+     * The side effects of a step computed on a fork of the term context of its subject, which may be discarded:
+     * the rules it applied, the terms it superheated and the records of the rule profiler.
+     */
+    private final class Speculation {
+        private final List<Rule> appliedRules = new ArrayList<>();
+        private final List<ConstrainedTerm> superheated = new ArrayList<>();
+        private final RuleProfiler profiler;
+        private final RuleProfiler.Deferred profile;
+
+        private Speculation(TermContext context) {
+            profiler = context.global().ruleProfiler;
+            profile = profiler != null ? profiler.startDeferring() : null;
+        }
+
+        /**
+         * Stops buffering the records of the rule profiler; must be called by the thread which created this.
+         */
+        private void stop() {
+            if (profiler != null) {
+                profiler.stopDeferring(profile);
+            }
+        }
+
+        /**
+         * Applies the side effects of the step, once it is kept.
+         */
+        private void commit() {
+            if (coverage != null) {
+                appliedRules.forEach(coverage::record);
+            }
+            newSuperheated.addAll(superheated);
+            if (profile != null) {
+                profile.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns true if a fresh constant was drawn from the counter of {@code fork} since it was forked from
+     * {@code context}.
+     */
+    private static boolean drewFreshConstant(TermContext fork, TermContext context) {
+        return !Objects.equals(fork.getCounterValue(), context.getCounterValue());
+    }
+
+    private static ConstrainedTerm rebind(ConstrainedTerm term, TermContext context) {
+        return new ConstrainedTerm(term.term(), term.constraint(), context);
+    }
+
+    /**
+     * Runs the given task on {@code pool}, directly if the current thread is already one of its workers, e.g. when
+     * the branches of a claim are explored by a worker proving that claim.
+     */
+    private static <T> T inPool(ForkJoinPool pool, Supplier<T> task) {
+        return ForkJoinTask.getPool() == pool ? task.get() : pool.submit(task::get).join();
+    }
+
     public List<ConstrainedTerm> proveRule(
             ConstrainedTerm initialTerm,
             ConstrainedTerm targetTerm,
             List<Rule> specRules) {
+        return proveRule(initialTerm, targetTerm, specRules, null);
+    }
+
+    /**
+     * Proves the reachability claim from {@code initialTerm} to {@code targetTerm}, exploring the branches of each
+     * level on {@code pool} if it is not null.
+     *
+     * @return the terms which could not be proven to reach the target
+     */
+    public List<ConstrainedTerm> proveRule(
+            ConstrainedTerm initialTerm,
+            ConstrainedTerm targetTerm,
+            List<Rule> specRules,
+            ForkJoinPool pool) {
         List<ConstrainedTerm> proofResults = new ArrayList<>();
         Set<ConstrainedTerm> visited = new HashSet<>();
         List<ConstrainedTerm> queue = new ArrayList<>();
         List<ConstrainedTerm> nextQueue = new ArrayList<>();
 
-        initialTerm = initialTerm.expandPatterns(true);
+        ConstrainedTerm expandedInitialTerm = initialTerm.expandPatterns(true);
 
-        visited.add(initialTerm);
-        queue.add(initialTerm);
+        visited.add(expandedInitialTerm);
+        queue.add(expandedInitialTerm);
         boolean guarded = false;
         int step = 0;
         while (!queue.isEmpty()) {
             step++;
-            for (ConstrainedTerm term : queue) {
-                if (term.implies(targetTerm)) {
-                    continue;
+            List<ConstrainedTerm> level = queue;
+            boolean levelGuarded = guarded;
+            /*
+             * in parallel mode, the steps which drew fresh constants are computed again in queue order, so that
+             * they draw the same constants as in sequential mode; the side effects of the others are committed
+             * in queue order too
+             */
+            List<Pair<ProofStep, Speculation>> proofSteps = pool != null ?
+                    inPool(pool, () -> level.parallelStream()
+                            .map(term -> {
+                                TermContext fork = term.termContext().forkForThread();
+                                Speculation speculation = new Speculation(fork);
+                                ProofStep proofStep;
+                                try {
+                                    proofStep = proofStep(
+                                            new ConstrainedTerm(term.term(), term.constraint(), fork),
+                                            expandedInitialTerm,
+                                            targetTerm,
+                                            specRules,
+                                            levelGuarded,
+                                            speculation);
+                                } finally {
+                                    speculation.stop();
+                                }
+                                return drewFreshConstant(fork, term.termContext()) ?
+                                        null :
+                                        Pair.of(proofStep.rebind(term.termContext()), speculation);
+                            })
+                            .collect(Collectors.toList())) :
+                    null;
+
+            for (int i = 0; i < level.size(); i++) {
+                ProofStep proofStep = null;
+                if (proofSteps != null && proofSteps.get(i) != null) {
+                    proofStep = proofSteps.get(i).getLeft();
+                    proofSteps.get(i).getRight().commit();
                 }
-
-                List<Term> leftKContents = term.term().getCellContentsByName(CellLabel.K);
-                List<Term> rightKContents = targetTerm.term().getCellContentsByName(CellLabel.K);
-                // TODO(YilongL): the `get(0)` seems hacky
-                if (leftKContents.size() == 1 && rightKContents.size() == 1) {
-                    Pair<Term, Variable> leftKPattern = KSequence.splitContentAndFrame(leftKContents.get(0));
-                    Pair<Term, Variable> rightKPattern = KSequence.splitContentAndFrame(rightKContents.get(0));
-                    if (leftKPattern.getRight() != null && rightKPattern.getRight() != null
-                            && leftKPattern.getRight().equals(rightKPattern.getRight())) {
-                        BoolToken matchable = MetaK.matchable(
-                                leftKPattern.getLeft(),
-                                rightKPattern.getLeft(),
-                                term.termContext());
-                        if (matchable != null && matchable.booleanValue()) {
-                            proofResults.add(term);
-                            continue;
-                        }
-                    }
-                }
-
-                if (guarded) {
-                    ConstrainedTerm result = applySpecRules(term, specRules);
-                    if (result != null) {
-                        if (visited.add(result))
-                            nextQueue.add(result);
-                        continue;
-                    }
+                if (proofStep == null) {
+                    proofStep = proofStep(level.get(i), expandedInitialTerm, targetTerm, specRules, levelGuarded, null);
                 }
-
-                List<ConstrainedTerm> results = fastComputeRewriteStep(term, false, true, true);
-                if (results.isEmpty()) {
-                    /* final term */
-                    proofResults.add(term);
-                } else {
-//                    for (Rule rule : appliedRules) {
-//                        System.err.println(rule.getLocation() + " " + rule.getSource());
-//                    }
-
-                    /* add helper rule */
-                    HashSet<Variable> ruleVariables = new HashSet<>(initialTerm.variableSet());
-                    ruleVariables.addAll(targetTerm.variableSet());
-
-                    /*
-                    rules.add(new Rule(
-                            term.term().substitute(freshSubstitution, definition),
-                            targetTerm.term().substitute(freshSubstitution, definition),
-                            term.constraint().substitute(freshSubstitution, definition),
-                            Collections.<Variable>emptyList(),
-                            new SymbolicConstraint(definition).substitute(freshSubstitution, definition),
-                            IndexingPair.getIndexingPair(term.term()),
-                            new Attributes()));
-                     */
+                if (proofStep.unproven != null) {
+                    proofResults.add(proofStep.unproven);
                 }
-
-                for (ConstrainedTerm cterm : results) {
-                    ConstrainedTerm result = new ConstrainedTerm(
-                            cterm.term(),
-                            cterm.constraint().removeBindings(
-                                    Sets.difference(
-                                            cterm.constraint().substitution().keySet(),
-                                            initialTerm.variableSet())),
-                            cterm.termContext());
+                for (ConstrainedTerm result : proofStep.successors) {
                     if (visited.add(result)) {
                         nextQueue.add(result);
                     }
@@ -645,6 +814,84 @@ public class SymbolicRewriter {
         return proofResults;
     }
 
+    /**
+     * The outcome of a proof step on a single term: either the term is returned as unproven,
+     * or it is replaced by its successors (none if the term already implies the target).
+     */
+    private static class ProofStep {
+        private final ConstrainedTerm unproven;
+        private final List<ConstrainedTerm> successors;
+
+        private ProofStep(ConstrainedTerm unproven, List<ConstrainedTerm> successors) {
+            this.unproven = unproven;
+            this.successors = successors;
+        }
+
+        /**
+         * Returns this step with its terms moved to the given context.
+         */
+        private ProofStep rebind(TermContext context) {
+            return new ProofStep(
+                    unproven != null ? SymbolicRewriter.rebind(unproven, context) : null,
+                    successors.stream().map(t -> SymbolicRewriter.rebind(t, context)).collect(Collectors.toList()));
+        }
+    }
+
+    private ProofStep proofStep(
+            ConstrainedTerm term,
+            ConstrainedTerm initialTerm,
+            ConstrainedTerm targetTerm,
+            List<Rule> specRules,
+            boolean guarded,
+            Speculation speculation) {
+        if (term.implies(targetTerm)) {
+            return new ProofStep(null, Collections.emptyList());
+        }
+
+        List<Term> leftKContents = term.term().getCellContentsByName(CellLabel.K);
+        List<Term> rightKContents = targetTerm.term().getCellContentsByName(CellLabel.K);
+        // TODO(YilongL): the `get(0)` seems hacky
+        if (leftKContents.size() == 1 && rightKContents.size() == 1) {
+            Pair<Term, Variable> leftKPattern = KSequence.splitContentAndFrame(leftKContents.get(0));
+            Pair<Term, Variable> rightKPattern = KSequence.splitContentAndFrame(rightKContents.get(0));
+            if (leftKPattern.getRight() != null && rightKPattern.getRight() != null
+                    && leftKPattern.getRight().equals(rightKPattern.getRight())) {
+                BoolToken matchable = MetaK.matchable(
+                        leftKPattern.getLeft(),
+                        rightKPattern.getLeft(),
+                        term.termContext());
+                if (matchable != null && matchable.booleanValue()) {
+                    return new ProofStep(term, Collections.emptyList());
+                }
+            }
+        }
+
+        if (guarded) {
+            ConstrainedTerm result = applySpecRules(term, specRules);
+            if (result != null) {
+                return new ProofStep(null, Collections.singletonList(result));
+            }
+        }
+
+        List<ConstrainedTerm> results = fastComputeRewriteStep(term, false, true, true, speculation);
+        if (results.isEmpty()) {
+            /* final term */
+            return new ProofStep(term, Collections.emptyList());
+        }
+
+        List<ConstrainedTerm> successors = new ArrayList<>();
+        for (ConstrainedTerm cterm : results) {
+            successors.add(new ConstrainedTerm(
+                    cterm.term(),
+                    cterm.constraint().removeBindings(
+                            Sets.difference(
+                                    cterm.constraint().substitution().keySet(),
+                                    initialTerm.variableSet())),
+                    cterm.termContext()));
+        }
+        return new ProofStep(null, successors);
+    }
+
     /**
      * Applies the first applicable specification rule and returns the result.
      */
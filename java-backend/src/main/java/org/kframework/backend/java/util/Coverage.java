@@ -5,72 +5,223 @@ import org.kframework.backend.java.kil.*;
 import org.kframework.attributes.Source;
 import org.kframework.utils.errorsystem.KEMException;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-
-import static org.apache.commons.io.FileUtils.writeStringToFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * For measuring semantic coverage
+ * <p>
+ * Counts how many times each rule is applied and each term location is rewritten, in memory, and adds the counts
+ * to those of the coverage file, written as lines {@code count,location} sorted by location. The counts of a file
+ * are thus merged across runs, including concurrent ones: each flush re-reads the file and adds the counts recorded
+ * since the previous flush while holding a lock on {@code <file>.lock}. The file is written periodically while
+ * rewriting and when the JVM exits.
+ * <p>
+ * Counts are kept in {@link LongAdder}s, so threads applying the same rule do not contend on a single counter.
+ * Rules are counted by location rather than by {@link Rule#equals}, which is structural: equal rules written at
+ * different places of the definition are counted separately.
  *
  * @author daejunpark
  */
 public class Coverage {
 
+    private static final long FLUSH_PERIOD_SECONDS = 30;
+
+    private static final ConcurrentMap<File, Coverage> collectors = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService flusher;
+
+    private final File file;
+    /* the counts of the current run already added to the file */
+    private final Map<String, Long> flushedCounts = new TreeMap<>();
+    private final ConcurrentMap<String, LongAdder> ruleCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> termCounts = new ConcurrentHashMap<>();
+    /* the counter of each rule seen by a thread, by identity, so that its location is only computed once */
+    private final ThreadLocal<Map<Rule, LongAdder>> ruleCounters = ThreadLocal.withInitial(IdentityHashMap::new);
+    /* the counter of the rules without location, which is not written */
+    private final LongAdder unlocatedRules = new LongAdder();
+
+    Coverage(File file) {
+        this.file = file;
+    }
+
     /**
-     * Print location information of {@code constrainedTerm} into {@code file}.
-     * - If {@code file} is null, then it does nothing.
+     * Returns the collector of the coverage recorded into {@code file}, or {@code null} if {@code file} is null.
+     */
+    public static Coverage of(File file) {
+        if (file == null) {
+            return null;
+        }
+        Coverage coverage = collectors.get(file);
+        if (coverage == null) {
+            coverage = collectors.computeIfAbsent(file, Coverage::new);
+            startFlusher();
+        }
+        return coverage;
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "coverage-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(Coverage::flushAll, FLUSH_PERIOD_SECONDS, FLUSH_PERIOD_SECONDS, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(Coverage::flushAll, "coverage-shutdown"));
+    }
+
+    /**
+     * Writes the coverage recorded so far into all the coverage files.
+     */
+    public static void flushAll() {
+        collectors.values().forEach(Coverage::flush);
+    }
+
+    /**
+     * Record the location information of {@code constrainedTerm}.
      * - If the location information is not available, then it does nothing.
      *
-     * @param file could be null.
      * @param constrainedTerm should not be null.
      */
-    public static void print(File file, ConstrainedTerm constrainedTerm) {
-        if (file != null) {
-            print(file, getSourceLocation(constrainedTerm));
-        }
+    public void record(ConstrainedTerm constrainedTerm) {
+        record(constrainedTerm.term());
     }
 
     /**
-     * Print location information of {@code term} into {@code file}.
-     * - If {@code file} is {@code null}, then it does nothing.
+     * Record the location information of {@code term}.
      * - If the location information is not available, then it does nothing.
      *
-     * @param file could be null.
      * @param term should not be null.
      */
-    public static void print(File file, Term term) {
-        if (file != null) {
-            print(file, getSourceLocation(term));
+    public void record(Term term) {
+        String location = getSourceLocation(term);
+        if (location != null) {
+            termCounts.computeIfAbsent(location, l -> new LongAdder()).increment();
         }
     }
 
     /**
-     * Print location information of {@code rule} into {@code file}.
-     * - If {@code file} is {@code null}, then it does nothing.
-     * - If the location information is not available, then it does nothing.
+     * Record an application of {@code rule}.
      *
-     * @param file could be null.
      * @param rule should not be null.
      */
-    public static void print(File file, Rule rule) {
-        if (file != null) {
-            print(file, getSourceLocation(rule));
+    public void record(Rule rule) {
+        Map<Rule, LongAdder> counters = ruleCounters.get();
+        LongAdder count = counters.get(rule);
+        if (count == null) {
+            String location = getSourceLocation(rule);
+            count = location == null ? unlocatedRules : ruleCounts.computeIfAbsent(location, l -> new LongAdder());
+            counters.put(rule, count);
         }
+        count.increment();
     }
 
-    private synchronized static void print(File file, String string) {
-        if (file != null && string != null) {
-            try {
-                writeStringToFile(file, string + "\n", true);
-            } catch (IOException e) {
-                throw KEMException.internalError("Could not write to " + file, e);
+    /**
+     * Returns the counts of the current run, by location.
+     */
+    public Map<String, Long> counts() {
+        Map<String, Long> counts = new TreeMap<>();
+        ruleCounts.forEach((location, count) -> counts.merge(location, count.sum(), Long::sum));
+        termCounts.forEach((location, count) -> counts.merge(location, count.sum(), Long::sum));
+        return counts;
+    }
+
+    /**
+     * Adds the counts recorded since the previous flush to those of the coverage file, which is replaced atomically
+     * while holding the lock of the file, so that runs sharing the file do not lose each other's counts.
+     */
+    public synchronized void flush() {
+        Map<String, Long> delta = new TreeMap<>();
+        counts().forEach((location, count) -> {
+            long added = count - flushedCounts.getOrDefault(location, 0L);
+            if (added != 0) {
+                delta.put(location, added);
+            }
+        });
+        if (delta.isEmpty()) {
+            return;
+        }
+        File lock = new File(file.getAbsolutePath() + ".lock");
+        try (FileChannel channel = FileChannel.open(lock.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            Map<String, Long> counts = read(file);
+            delta.forEach((location, count) -> counts.merge(location, count, Long::sum));
+            write(file, counts);
+        } catch (IOException e) {
+            throw KEMException.internalError("Could not lock " + lock, e);
+        }
+        delta.forEach((location, count) -> flushedCounts.merge(location, count, Long::sum));
+    }
+
+    /**
+     * Reads the counts of a coverage file. A line without a count, as written by older versions, counts once.
+     */
+    public static Map<String, Long> read(File file) {
+        Map<String, Long> counts = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                long count = 1;
+                String location = line;
+                int comma = line.indexOf(',');
+                if (comma > 0) {
+                    try {
+                        count = Long.parseLong(line.substring(0, comma));
+                        location = line.substring(comma + 1);
+                    } catch (NumberFormatException e) {
+                    }
+                }
+                counts.merge(location, count, Long::sum);
             }
+        } catch (NoSuchFileException e) {
+        } catch (IOException e) {
+            throw KEMException.internalError("Could not read " + file, e);
         }
+        return counts;
     }
 
-    private static String getSourceLocation(ConstrainedTerm constrainedTerm) {
-        return getSourceLocation(constrainedTerm.term());
+    private static void write(File file, Map<String, Long> counts) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        try {
+            File tmp = File.createTempFile(file.getName() + ".", ".tmp", parent);
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                    writer.write(entry.getValue() + "," + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw KEMException.internalError("Could not write to " + file, e);
+        }
     }
 
     private static String getSourceLocation(Term term) {
@@ -87,9 +238,11 @@ public class Coverage {
     }
 
     private static String getSourceLocation(Rule rule) {
-        String s; // Return null, if location information is not available.
+        String s = null; // Return null, if location information is not available.
         Source source = rule.getSource();
-        s = source.toString() + ":" + rule.getLocation().toString();
+        if (source != null && rule.getLocation() != null) {
+            s = source.toString() + ":" + rule.getLocation().toString();
+        }
         return s;
     }
 }
@@ -0,0 +1,442 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash map implemented as a hash array mapped trie. Updates return a new map which shares
+ * all but the O(log32 n) nodes on the path to the updated entry with the original map.
+ * <p>
+ * The map also maintains its {@link #hashCode()} incrementally, so that hashing a map obtained by a
+ * small update of a large map does not require traversing all its entries.
+ * <p>
+ * The entries are iterated in the order of the hashes of their keys, taken five bits at a time from the least
+ * significant ones. The order thus does not depend on the order in which the keys were inserted, except among keys
+ * with the same hash, which are iterated in insertion order.
+ * <p>
+ * Null keys and values are not supported.
+ *
+ * @see PersistentHashSet
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * Maximum depth of the trie: seven levels of bitmap nodes consume the 32 bits of the hash,
+     * followed by at most one level of collision nodes.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private final Node root;
+    private final int size;
+    private final int hash;
+
+    private PersistentHashMap(Node root, int size, int hash) {
+        this.root = root;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns a map containing the entries of the given map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentHashMap) {
+            return (PersistentHashMap<K, V>) map;
+        }
+        return PersistentHashMap.<K, V>empty().plusAll(map);
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int entryHash(Object key, Object value) {
+        return key.hashCode() ^ value.hashCode();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(0, spread(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map which associates {@code key} with {@code value} and is otherwise identical to this map.
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        V oldValue = get(key);
+        if (oldValue == value) {
+            return this;
+        }
+        int h = spread(key);
+        Node newRoot = root == null ?
+                BitmapNode.EMPTY.assoc(0, h, key, value) :
+                root.assoc(0, h, key, value);
+        return oldValue == null ?
+                new PersistentHashMap<>(newRoot, size + 1, hash + entryHash(key, value)) :
+                new PersistentHashMap<>(newRoot, size, hash - entryHash(key, oldValue) + entryHash(key, value));
+    }
+
+    /**
+     * Returns a map which contains all entries of this map and of the given map; the entries of the given map
+     * take precedence.
+     */
+    public PersistentHashMap<K, V> plusAll(Map<? extends K, ? extends V> map) {
+        if (isEmpty() && map instanceof PersistentHashMap) {
+            return copyOf(map);
+        }
+        PersistentHashMap<K, V> result = this;
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns a map which does not contain {@code key} and is otherwise identical to this map.
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        V oldValue = get(key);
+        if (oldValue == null) {
+            return this;
+        }
+        Node newRoot = root.without(0, spread(key), key);
+        return newRoot == null ?
+                empty() :
+                new PersistentHashMap<>(newRoot, size - 1, hash - entryHash(key, oldValue));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PersistentHashMap) {
+            PersistentHashMap<?, ?> map = (PersistentHashMap<?, ?>) object;
+            if (size != map.size || hash != map.hash) {
+                return false;
+            }
+            if (root == map.root) {
+                return true;
+            }
+        }
+        return super.equals(object);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    private Object readResolve() {
+        return root == null ? EMPTY : this;
+    }
+
+    /**
+     * A trie node. Both kinds of nodes store their entries as consecutive key-value pairs in {@link #array}.
+     */
+    private static abstract class Node implements Serializable {
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node assoc(int shift, int hash, Object key, Object value);
+
+        /**
+         * Returns the node without the given key, or {@code null} if the resulting node is empty.
+         */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    /**
+     * An inner node indexed by a 5-bit slice of the hash. A {@code null} key marks a slot pointing to a child node.
+     */
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bitpos(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                return ((Node) v).find(shift + BITS, hash, key);
+            }
+            return key.equals(k) ? v : null;
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value) {
+            int bit = bitpos(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[2 * idx];
+                Object v = array[2 * idx + 1];
+                if (k == null) {
+                    Node n = ((Node) v).assoc(shift + BITS, hash, key, value);
+                    return n == v ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, n));
+                }
+                if (key.equals(k)) {
+                    return value == v ? this : new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, value));
+                }
+                Object[] newArray = array.clone();
+                newArray[2 * idx] = null;
+                newArray[2 * idx + 1] = createNode(shift + BITS, k, v, hash, key, value);
+                return new BitmapNode(bitmap, newArray);
+            } else {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * idx);
+                newArray[2 * idx] = key;
+                newArray[2 * idx + 1] = value;
+                System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1), array.length - 2 * idx);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                Node n = ((Node) v).without(shift + BITS, hash, key);
+                if (n == v) {
+                    return this;
+                }
+                if (n != null) {
+                    return new BitmapNode(bitmap, cloneAndSet(array, 2 * idx + 1, n));
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, removePair(array, idx));
+        }
+
+        private static Node createNode(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = spread(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            return EMPTY.assoc(shift, hash1, key1, value1).assoc(shift, hash2, key2, value2);
+        }
+    }
+
+    /**
+     * A leaf node holding keys whose hashes are all equal.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int findIndex(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int idx = findIndex(key);
+            return idx < 0 ? null : array[idx + 1];
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value) {
+            if (hash == this.hash) {
+                int idx = findIndex(key);
+                if (idx >= 0) {
+                    return array[idx + 1] == value ? this : new CollisionNode(hash, cloneAndSet(array, idx + 1, value));
+                }
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, array.length);
+                newArray[array.length] = key;
+                newArray[array.length + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            /* nest this node in a bitmap node to separate it from the new key */
+            return new BitmapNode(BitmapNode.bitpos(this.hash, shift), new Object[] {null, this})
+                    .assoc(shift, hash, key, value);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int idx = findIndex(key);
+            if (idx < 0) {
+                return this;
+            }
+            return array.length == 2 ? null : new CollisionNode(hash, removePair(array, idx / 2));
+        }
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int i, Object a) {
+        Object[] clone = array.clone();
+        clone[i] = a;
+        return clone;
+    }
+
+    private static Object[] removePair(Object[] array, int i) {
+        Object[] newArray = new Object[array.length - 2];
+        System.arraycopy(array, 0, newArray, 0, 2 * i);
+        System.arraycopy(array, 2 * (i + 1), newArray, 2 * i, newArray.length - 2 * i);
+        return newArray;
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH + 1][];
+        private final int[] indices = new int[MAX_DEPTH + 1];
+        private int depth = -1;
+        private Map.Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root.array);
+            }
+            advance();
+        }
+
+        private void push(Object[] array) {
+            depth++;
+            arrays[depth] = array;
+            indices[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int i = indices[depth];
+                if (i >= array.length) {
+                    arrays[depth] = null;
+                    depth--;
+                    continue;
+                }
+                indices[depth] = i + 2;
+                if (array[i] == null) {
+                    push(((Node) array[i + 1]).array);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[i], (V) array[i + 1]);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
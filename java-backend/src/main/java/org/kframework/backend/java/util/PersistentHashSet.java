@@ -0,0 +1,132 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An immutable hash set backed by a {@link PersistentHashMap}. Updates return a new set which shares
+ * most of its structure with the original set, and the {@link #hashCode()} is maintained incrementally.
+ * The elements are iterated in the order of the keys of a {@link PersistentHashMap}.
+ * <p>
+ * Null elements are not supported.
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> implements Serializable {
+
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(PersistentHashMap.empty(), 0);
+
+    private final PersistentHashMap<E, Boolean> map;
+    private final int hash;
+
+    private PersistentHashSet(PersistentHashMap<E, Boolean> map, int hash) {
+        this.map = map;
+        this.hash = hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    /**
+     * Returns a set containing the elements of the given collection.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentHashSet) {
+            return (PersistentHashSet<E>) elements;
+        }
+        return PersistentHashSet.<E>empty().plusAll(elements);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return map.containsKey(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+    /**
+     * Returns a set which contains {@code element} and is otherwise identical to this set.
+     */
+    public PersistentHashSet<E> plus(E element) {
+        PersistentHashMap<E, Boolean> newMap = map.plus(element, Boolean.TRUE);
+        return newMap == map ? this : new PersistentHashSet<>(newMap, hash + element.hashCode());
+    }
+
+    /**
+     * Returns a set which contains the elements of both this set and the given collection.
+     */
+    public PersistentHashSet<E> plusAll(Collection<? extends E> elements) {
+        if (isEmpty() && elements instanceof PersistentHashSet) {
+            return copyOf(elements);
+        }
+        PersistentHashSet<E> result = this;
+        for (E element : elements) {
+            result = result.plus(element);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a set which does not contain {@code element} and is otherwise identical to this set.
+     */
+    public PersistentHashSet<E> minus(Object element) {
+        PersistentHashMap<E, Boolean> newMap = map.minus(element);
+        if (newMap == map) {
+            return this;
+        }
+        return newMap.isEmpty() ? empty() : new PersistentHashSet<>(newMap, hash - element.hashCode());
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PersistentHashSet) {
+            PersistentHashSet<?> set = (PersistentHashSet<?>) object;
+            return hash == set.hash && map.equals(set.map);
+        }
+        return super.equals(object);
+    }
+
+    @Override
+    public boolean add(E element) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    private Object readResolve() {
+        return map.isEmpty() ? EMPTY : this;
+    }
+}
@@ -0,0 +1,484 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list implemented as a relaxed radix balanced tree. Appending or prepending an element,
+ * taking a sub-list, and concatenating two lists all take O(log32 n) time and return a new list which
+ * shares all but the nodes on the affected paths with the original lists.
+ * <p>
+ * All leaves are at the same depth, and every internal node keeps a table of the cumulative sizes of its
+ * children, so that nodes on the boundaries of sub-lists and concatenations may be partially filled.
+ * Indexing first guesses the child by radix (which is exact for full nodes) and then scans the size table.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess, Serializable {
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Node(new Object[0], null), 0, 0);
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+
+    /**
+     * Node of the tree. The array of a leaf contains the elements; the array of an internal node contains
+     * its children, and {@code sizes[i]} is the number of elements in the first {@code i + 1} children.
+     */
+    private static final class Node implements Serializable {
+        final Object[] array;
+        final int[] sizes;
+
+        Node(Object[] array, int[] sizes) {
+            this.array = array;
+            this.sizes = sizes;
+        }
+
+        Node child(int i) {
+            return (Node) array[i];
+        }
+
+        int size() {
+            return sizes == null ? array.length : sizes[sizes.length - 1];
+        }
+
+        int offset(int i) {
+            return i == 0 ? 0 : sizes[i - 1];
+        }
+    }
+
+    private final Node root;
+    /**
+     * Number of internal levels above the leaves; 0 if the root is a leaf.
+     */
+    private final int height;
+    private final int size;
+    private transient int hash;
+
+    private PersistentVector(Node root, int height, int size) {
+        this.root = root;
+        this.height = height;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    public static <E> PersistentVector<E> of(E element) {
+        return new PersistentVector<>(new Node(new Object[]{element}, null), 0, 1);
+    }
+
+    /**
+     * Returns a list containing the elements of the given collection, in iteration order.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector) {
+            return (PersistentVector<E>) elements;
+        }
+        if (elements.isEmpty()) {
+            return empty();
+        }
+
+        Object[] items = elements.toArray();
+        Object[] level = new Object[(items.length + WIDTH - 1) / WIDTH];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = new Node(Arrays.copyOfRange(items, i * WIDTH, Math.min(items.length, (i + 1) * WIDTH)), null);
+        }
+        int height = 0;
+        while (level.length > 1) {
+            Object[] nextLevel = new Object[(level.length + WIDTH - 1) / WIDTH];
+            for (int i = 0; i < nextLevel.length; i++) {
+                nextLevel[i] = internal(Arrays.copyOfRange(level, i * WIDTH, Math.min(level.length, (i + 1) * WIDTH)));
+            }
+            level = nextLevel;
+            height++;
+        }
+        return new PersistentVector<>((Node) level[0], height, items.length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Node node = root;
+        for (int h = height; h > 0; h--) {
+            int i = childIndex(node, h, index);
+            index -= node.offset(i);
+            node = node.child(i);
+        }
+        return (E) node.array[index];
+    }
+
+    /**
+     * Returns the index of the child of {@code node} which contains the element on position {@code index}.
+     * A child of a node at height {@code h} holds at most {@code WIDTH^h} elements, so the radix guess
+     * is a lower bound of the actual index.
+     */
+    private static int childIndex(Node node, int h, int index) {
+        int i = BITS * h < Integer.SIZE ? index >>> (BITS * h) : 0;
+        while (node.sizes[i] <= index) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns a list which contains the elements of this list followed by {@code element}.
+     */
+    public PersistentVector<E> plus(E element) {
+        Node newRoot = pushLast(root, height, element);
+        if (newRoot != null) {
+            return new PersistentVector<>(newRoot, height, size + 1);
+        }
+        return new PersistentVector<>(
+                new Node(new Object[]{root, newPath(height, element)}, new int[]{size, size + 1}),
+                height + 1,
+                size + 1);
+    }
+
+    /**
+     * Returns a list which contains {@code element} followed by the elements of this list.
+     */
+    public PersistentVector<E> plusFirst(E element) {
+        Node newRoot = pushFirst(root, height, element);
+        if (newRoot != null) {
+            return new PersistentVector<>(newRoot, height, size + 1);
+        }
+        return new PersistentVector<>(
+                new Node(new Object[]{newPath(height, element), root}, new int[]{1, size + 1}),
+                height + 1,
+                size + 1);
+    }
+
+    /**
+     * Returns a list which contains the elements of this list followed by the elements of {@code other}.
+     */
+    public PersistentVector<E> concat(PersistentVector<? extends E> other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return copyOf(other);
+        }
+
+        Node[] nodes = height >= other.height ?
+                joinRight(root, height, other.root, other.height) :
+                joinLeft(root, height, other.root, other.height);
+        int newHeight = Math.max(height, other.height);
+        return nodes.length == 1 ?
+                new PersistentVector<>(nodes[0], newHeight, size + other.size) :
+                new PersistentVector<>(internal(nodes), newHeight + 1, size + other.size);
+    }
+
+    /**
+     * Returns the elements between {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+     * Unlike {@link AbstractList#subList(int, int)}, the result does not depend on this list being
+     * unmodified afterwards, since this list is immutable.
+     */
+    @Override
+    public PersistentVector<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+        }
+        if (fromIndex == 0 && toIndex == size) {
+            return this;
+        }
+        if (fromIndex == toIndex) {
+            return empty();
+        }
+
+        Node node = sliceLeft(sliceRight(root, height, toIndex), height, fromIndex);
+        int newHeight = height;
+        while (newHeight > 0 && node.array.length == 1) {
+            node = node.child(0);
+            newHeight--;
+        }
+        return new PersistentVector<>(node, newHeight, toIndex - fromIndex);
+    }
+
+    private static Node internal(Object[] children) {
+        int[] sizes = new int[children.length];
+        int total = 0;
+        for (int i = 0; i < children.length; i++) {
+            total += ((Node) children[i]).size();
+            sizes[i] = total;
+        }
+        return new Node(children, sizes);
+    }
+
+    private static Node node(Object[] array, int h) {
+        return h == 0 ? new Node(array, null) : internal(array);
+    }
+
+    private static Node newPath(int h, Object element) {
+        Node node = new Node(new Object[]{element}, null);
+        for (int i = 0; i < h; i++) {
+            node = new Node(new Object[]{node}, new int[]{1});
+        }
+        return node;
+    }
+
+    /**
+     * Returns a copy of {@code node} with {@code element} appended, or {@code null} if the subtree is full.
+     */
+    private static Node pushLast(Node node, int h, Object element) {
+        int length = node.array.length;
+        if (h == 0) {
+            if (length == WIDTH) {
+                return null;
+            }
+            Object[] array = Arrays.copyOf(node.array, length + 1);
+            array[length] = element;
+            return new Node(array, null);
+        }
+
+        Node child = pushLast(node.child(length - 1), h - 1, element);
+        if (child != null) {
+            Object[] array = node.array.clone();
+            int[] sizes = node.sizes.clone();
+            array[length - 1] = child;
+            sizes[length - 1]++;
+            return new Node(array, sizes);
+        } else if (length < WIDTH) {
+            Object[] array = Arrays.copyOf(node.array, length + 1);
+            int[] sizes = Arrays.copyOf(node.sizes, length + 1);
+            array[length] = newPath(h - 1, element);
+            sizes[length] = sizes[length - 1] + 1;
+            return new Node(array, sizes);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a copy of {@code node} with {@code element} prepended, or {@code null} if the subtree is full.
+     */
+    private static Node pushFirst(Node node, int h, Object element) {
+        int length = node.array.length;
+        if (h == 0) {
+            if (length == WIDTH) {
+                return null;
+            }
+            Object[] array = new Object[length + 1];
+            array[0] = element;
+            System.arraycopy(node.array, 0, array, 1, length);
+            return new Node(array, null);
+        }
+
+        Node child = pushFirst(node.child(0), h - 1, element);
+        if (child != null) {
+            Object[] array = node.array.clone();
+            int[] sizes = new int[length];
+            array[0] = child;
+            for (int i = 0; i < length; i++) {
+                sizes[i] = node.sizes[i] + 1;
+            }
+            return new Node(array, sizes);
+        } else if (length < WIDTH) {
+            Object[] array = new Object[length + 1];
+            int[] sizes = new int[length + 1];
+            array[0] = newPath(h - 1, element);
+            sizes[0] = 1;
+            System.arraycopy(node.array, 0, array, 1, length);
+            for (int i = 0; i < length; i++) {
+                sizes[i + 1] = node.sizes[i] + 1;
+            }
+            return new Node(array, sizes);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the first {@code toIndex} elements of {@code node}; {@code toIndex} is positive.
+     */
+    private static Node sliceRight(Node node, int h, int toIndex) {
+        if (toIndex == node.size()) {
+            return node;
+        }
+        if (h == 0) {
+            return new Node(Arrays.copyOf(node.array, toIndex), null);
+        }
+
+        int i = childIndex(node, h, toIndex - 1);
+        Object[] array = Arrays.copyOf(node.array, i + 1);
+        int[] sizes = Arrays.copyOf(node.sizes, i + 1);
+        array[i] = sliceRight(node.child(i), h - 1, toIndex - node.offset(i));
+        sizes[i] = toIndex;
+        return new Node(array, sizes);
+    }
+
+    /**
+     * Returns the elements of {@code node} starting from {@code fromIndex}; {@code fromIndex} is less than the size of {@code node}.
+     */
+    private static Node sliceLeft(Node node, int h, int fromIndex) {
+        if (fromIndex == 0) {
+            return node;
+        }
+        if (h == 0) {
+            return new Node(Arrays.copyOfRange(node.array, fromIndex, node.array.length), null);
+        }
+
+        int i = childIndex(node, h, fromIndex);
+        Object[] array = Arrays.copyOfRange(node.array, i, node.array.length);
+        int[] sizes = new int[array.length];
+        array[0] = sliceLeft(node.child(i), h - 1, fromIndex - node.offset(i));
+        for (int j = 0; j < sizes.length; j++) {
+            sizes[j] = node.sizes[i + j] - fromIndex;
+        }
+        return new Node(array, sizes);
+    }
+
+    /**
+     * Concatenates {@code left} of height {@code h} and {@code right} of height {@code rh <= h} by merging
+     * {@code right} into the right spine of {@code left}. Returns one or two nodes of height {@code h}.
+     */
+    private static Node[] joinRight(Node left, int h, Node right, int rh) {
+        if (h == rh) {
+            return merge(left, right, h);
+        }
+        int last = left.array.length - 1;
+        Node[] nodes = joinRight(left.child(last), h - 1, right, rh);
+        Object[] array = Arrays.copyOf(left.array, last + nodes.length);
+        System.arraycopy(nodes, 0, array, last, nodes.length);
+        return split(array, h);
+    }
+
+    /**
+     * Concatenates {@code left} of height {@code lh} and {@code right} of height {@code h > lh} by merging
+     * {@code left} into the left spine of {@code right}. Returns one or two nodes of height {@code h}.
+     */
+    private static Node[] joinLeft(Node left, int lh, Node right, int h) {
+        if (h == lh) {
+            return merge(left, right, h);
+        }
+        Node[] nodes = joinLeft(left, lh, right.child(0), h - 1);
+        Object[] array = new Object[right.array.length - 1 + nodes.length];
+        System.arraycopy(nodes, 0, array, 0, nodes.length);
+        System.arraycopy(right.array, 1, array, nodes.length, right.array.length - 1);
+        return split(array, h);
+    }
+
+    private static Node[] merge(Node left, Node right, int h) {
+        Object[] array = Arrays.copyOf(left.array, left.array.length + right.array.length);
+        System.arraycopy(right.array, 0, array, left.array.length, right.array.length);
+        return split(array, h);
+    }
+
+    /**
+     * Builds a node of height {@code h} out of the given items, or two nodes of balanced widths if there
+     * are too many items for a single node.
+     */
+    private static Node[] split(Object[] array, int h) {
+        if (array.length <= WIDTH) {
+            return new Node[]{node(array, h)};
+        }
+        int half = (array.length + 1) / 2;
+        return new Node[]{
+                node(Arrays.copyOfRange(array, 0, half), h),
+                node(Arrays.copyOfRange(array, half, array.length), h)};
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ElementIterator<>(root, height);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object instanceof PersistentVector) {
+            PersistentVector<?> vector = (PersistentVector<?>) object;
+            if (size != vector.size || hash != 0 && vector.hash != 0 && hash != vector.hash) {
+                return false;
+            }
+        }
+        return super.equals(object);
+    }
+
+    private Object readResolve() {
+        return size == 0 ? EMPTY : this;
+    }
+
+    private static final class ElementIterator<E> implements Iterator<E> {
+        private final Node[] nodes;
+        private final int[] indices;
+        private Object[] leaf;
+        private int leafIndex;
+
+        ElementIterator(Node root, int height) {
+            nodes = new Node[height + 1];
+            indices = new int[height + 1];
+            nodes[0] = root;
+            descend(0);
+        }
+
+        /**
+         * Follows the leftmost path from the node on the given depth down to a leaf.
+         */
+        private void descend(int depth) {
+            for (int d = depth; d < nodes.length - 1; d++) {
+                indices[d] = 0;
+                nodes[d + 1] = nodes[d].child(0);
+            }
+            leaf = nodes[nodes.length - 1].array;
+            leafIndex = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (leafIndex < leaf.length) {
+                return true;
+            }
+            for (int d = nodes.length - 2; d >= 0; d--) {
+                if (indices[d] + 1 < nodes[d].array.length) {
+                    indices[d]++;
+                    nodes[d + 1] = nodes[d].child(indices[d]);
+                    descend(d + 1);
+                    return leafIndex < leaf.length;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (E) leaf[leafIndex++];
+        }
+    }
+}
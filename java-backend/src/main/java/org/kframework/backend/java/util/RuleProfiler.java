@@ -0,0 +1,357 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Profiler of the rules and functions applied during rewriting, enabled by {@code --profile-rules}.
+ * <p>
+ * The counters of the rewrite rules are indexed by the rule indices of
+ * {@link org.kframework.backend.java.symbolic.FastRuleMatcher}, those of the functions by
+ * {@link KLabelConstant#ordinal()}, and those of the function rules by the ordinal of their function and their
+ * position in {@link Definition#functionRulesOn(KLabelConstant)}. When profiling is disabled, the
+ * {@link org.kframework.backend.java.kil.GlobalContext} holds no profiler and each instrumented site only tests a
+ * field for null.
+ * <p>
+ * Each thread keeps the stack of the rules and functions it is evaluating, and the time spent in each distinct stack
+ * is accumulated in a tree shared by all the threads. {@link #write()} emits a tab-separated report with one line
+ * per rule or function, sorted by decreasing self time, and the tree in the collapsed-stack format read by
+ * flamegraph tools.
+ * <p>
+ * A thread computing a result that may be discarded can defer its records (see {@link #startDeferring()}), which are
+ * then only added to the profile if the result is kept.
+ */
+public final class RuleProfiler {
+
+    /**
+     * The counters of one rule or function.
+     */
+    public static final class Counters {
+        private final String kind;
+        private final String name;
+        /* the profiled rule, or null for a function */
+        private final Rule rule;
+        private final LongAdder applications = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder failedConditions = new LongAdder();
+        private final LongAdder smtCalls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private Counters(String kind, String name, Rule rule) {
+            this.kind = kind;
+            this.name = name.replace(';', ',').replace('\n', ' ').replace('\t', ' ');
+            this.rule = rule;
+        }
+    }
+
+    /**
+     * The records deferred by a thread between {@link #startDeferring()} and {@link #stopDeferring(Deferred)}.
+     */
+    public static final class Deferred {
+        private final List<Runnable> records = new ArrayList<>();
+        /* the deferral this one interrupted on its thread, if any */
+        private final Deferred previous;
+
+        private Deferred(Deferred previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Adds the deferred records to the profile.
+         */
+        public void commit() {
+            records.forEach(Runnable::run);
+            records.clear();
+        }
+    }
+
+    /**
+     * A rule or function being evaluated by a thread, returned by the {@code enter} methods and passed back to
+     * {@link #exit(Frame)}.
+     */
+    public static final class Frame {
+        private final Counters counters;
+        private final Node node;
+        private final Frame parent;
+        /* the deferral of the thread when the frame was entered, or null */
+        private final Deferred deferred;
+        private final long start;
+        private long childNanos;
+
+        private Frame(Counters counters, Node node, Frame parent, Deferred deferred) {
+            this.counters = counters;
+            this.node = node;
+            this.parent = parent;
+            this.deferred = deferred;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Records an attempt to apply the rule, i.e. an evaluation of its side condition.
+         */
+        public void attempt() {
+            add(deferred, counters.attempts, 1);
+        }
+
+        /**
+         * Records a successful application of the rule or call of the function.
+         */
+        public void apply() {
+            add(deferred, counters.applications, 1);
+        }
+
+        /**
+         * Records a side condition of the rule which did not hold.
+         */
+        public void failCondition() {
+            add(deferred, counters.failedConditions, 1);
+        }
+    }
+
+    private static void add(Deferred deferred, LongAdder adder, long value) {
+        if (deferred != null) {
+            deferred.records.add(() -> adder.add(value));
+        } else {
+            adder.add(value);
+        }
+    }
+
+    /* a node of the tree of the stacks of rules and functions */
+    private static final class Node {
+        private final Counters counters;
+        private final ConcurrentMap<Counters, Node> children = new ConcurrentHashMap<>();
+        private final LongAdder selfNanos = new LongAdder();
+
+        private Node(Counters counters) {
+            this.counters = counters;
+        }
+
+        private Node child(Counters counters) {
+            Node child = children.get(counters);
+            if (child == null) {
+                child = children.computeIfAbsent(counters, Node::new);
+            }
+            return child;
+        }
+    }
+
+    /* a table indexed by an ordinal, grown on demand; entries are never replaced once set */
+    private static final class Table<T> {
+        private volatile Object[] entries = new Object[0];
+
+        @SuppressWarnings("unchecked")
+        private T get(int index, IntFunction<T> factory) {
+            Object[] entries = this.entries;
+            Object entry = index < entries.length ? entries[index] : null;
+            return entry != null ? (T) entry : create(index, factory);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized T create(int index, IntFunction<T> factory) {
+            Object[] entries = this.entries;
+            if (index >= entries.length) {
+                Object[] grown = new Object[Math.max(index + 1, 2 * entries.length)];
+                System.arraycopy(entries, 0, grown, 0, entries.length);
+                entries = grown;
+            }
+            if (entries[index] == null) {
+                entries[index] = factory.apply(index);
+            }
+            this.entries = entries;
+            return (T) entries[index];
+        }
+
+        private synchronized List<T> values() {
+            List<T> values = new ArrayList<>();
+            for (Object entry : entries) {
+                if (entry != null) {
+                    @SuppressWarnings("unchecked")
+                    T value = (T) entry;
+                    values.add(value);
+                }
+            }
+            return values;
+        }
+    }
+
+    private final Supplier<Definition> definitionProvider;
+    private final File file;
+    private final Table<Counters> rules = new Table<>();
+    private final Table<Counters> functions = new Table<>();
+    private final Table<Table<Counters>> functionRules = new Table<>();
+    private final Node root = new Node(null);
+    private final ThreadLocal<Frame> current = new ThreadLocal<>();
+    private final ThreadLocal<Deferred> deferred = new ThreadLocal<>();
+
+    /**
+     * @param file the file receiving the report; the collapsed stacks go to the same file with the extension
+     *             {@code .folded} added.
+     */
+    public RuleProfiler(Supplier<Definition> definitionProvider, File file) {
+        this.definitionProvider = definitionProvider;
+        this.file = file;
+    }
+
+    /**
+     * Starts the evaluation of the side condition or the right-hand side of the rewrite rule with the given index.
+     */
+    public Frame enterRule(int ruleIndex) {
+        return enter(rules.get(ruleIndex, i -> {
+            Rule rule = definitionProvider.get().ruleTable.get(i);
+            return new Counters("rule", name(rule), rule);
+        }));
+    }
+
+    /**
+     * Starts the evaluation of an application of the given function.
+     */
+    public Frame enterFunction(KLabelConstant kLabel) {
+        return enter(functions.get(kLabel.ordinal(), i -> new Counters("function", kLabel.label(), null)));
+    }
+
+    /**
+     * Starts the application of the rule at the given position of the function rules of the given function.
+     */
+    public Frame enterFunctionRule(KLabelConstant kLabel, int position, Rule rule) {
+        return enter(functionRules.get(kLabel.ordinal(), i -> new Table<>())
+                .get(position, i -> new Counters("function rule", name(rule), rule)));
+    }
+
+    private Frame enter(Counters counters) {
+        Frame parent = current.get();
+        Frame frame = new Frame(counters, (parent != null ? parent.node : root).child(counters), parent, deferred.get());
+        current.set(frame);
+        return frame;
+    }
+
+    /**
+     * Ends the evaluation started by the {@code enter} method which returned the given frame.
+     */
+    public void exit(Frame frame) {
+        long elapsed = System.nanoTime() - frame.start;
+        add(frame.deferred, frame.counters.nanos, elapsed);
+        add(frame.deferred, frame.node.selfNanos, elapsed - frame.childNanos);
+        if (frame.parent != null) {
+            frame.parent.childNanos += elapsed;
+        }
+        current.set(frame.parent);
+    }
+
+    /**
+     * Records a side condition of the given rule which did not hold, if the rule is the one the current thread is
+     * applying.
+     */
+    public void failCondition(Rule rule) {
+        Frame frame = current.get();
+        if (frame != null && frame.counters.rule == rule) {
+            frame.failCondition();
+        }
+    }
+
+    /**
+     * Records a call to the SMT solver made by the rule or function the current thread is evaluating.
+     */
+    public void smtCall() {
+        Frame frame = current.get();
+        if (frame != null) {
+            add(frame.deferred, frame.counters.smtCalls, 1);
+        }
+    }
+
+    /**
+     * Starts deferring the records of the current thread, until {@link #stopDeferring(Deferred)} is called with the
+     * result. The records are added to the profile when the result is committed, and dropped otherwise.
+     */
+    public Deferred startDeferring() {
+        Deferred result = new Deferred(deferred.get());
+        deferred.set(result);
+        return result;
+    }
+
+    /**
+     * Stops the deferral started by the {@link #startDeferring()} call which returned {@code deferral}.
+     */
+    public void stopDeferring(Deferred deferral) {
+        assert deferred.get() == deferral;
+        deferred.set(deferral.previous);
+    }
+
+    private static String name(Rule rule) {
+        if (rule == null) {
+            return "unknown rule";
+        }
+        if (rule.getSource() != null && rule.getLocation() != null) {
+            return rule.getSource() + ":" + rule.getLocation();
+        }
+        return rule.label() != null ? rule.label() : rule.toString();
+    }
+
+    /**
+     * Writes the report and the collapsed stacks of the profile so far.
+     */
+    public synchronized void write() {
+        Map<Counters, Long> selfNanos = new IdentityHashMap<>();
+        List<String> stacks = new ArrayList<>();
+        collect(root, new ArrayDeque<>(), selfNanos, stacks);
+
+        List<Counters> all = new ArrayList<>();
+        all.addAll(rules.values());
+        all.addAll(functions.values());
+        functionRules.values().forEach(table -> all.addAll(table.values()));
+        all.sort(Comparator.comparing((Counters c) -> selfNanos.getOrDefault(c, 0L)).reversed());
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.println("self ms\ttotal ms\tapplications\tattempts\tfailed conditions\tsmt calls\tkind\tname");
+            for (Counters c : all) {
+                out.printf("%.3f\t%.3f\t%d\t%d\t%d\t%d\t%s\t%s%n",
+                        selfNanos.getOrDefault(c, 0L) / 1e6, c.nanos.sum() / 1e6,
+                        c.applications.sum(), c.attempts.sum(), c.failedConditions.sum(), c.smtCalls.sum(),
+                        c.kind, c.name);
+            }
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write rule profile to " + file + ": " + e.getMessage(), e);
+        }
+        File folded = new File(file.getPath() + ".folded");
+        try {
+            Files.write(folded.toPath(), stacks, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write rule profile to " + folded + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void collect(Node node, Deque<String> path, Map<Counters, Long> selfNanos, List<String> stacks) {
+        for (Node child : node.children.values()) {
+            long nanos = child.selfNanos.sum();
+            selfNanos.merge(child.counters, nanos, Long::sum);
+            path.addLast(child.counters.kind + " " + child.counters.name);
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            if (micros > 0) {
+                stacks.add(String.join(";", path) + " " + micros);
+            }
+            collect(child, path, selfNanos, stacks);
+            path.removeLast();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reads and prints the s-expressions of SMT-LIB text, for the components which inspect the prelude and the queries
+ * sent to the solver. An s-expression is either a {@code String} atom, kept as written (a quoted symbol with its bars
+ * and a string literal with its quotes), or a {@code List} of s-expressions. Comments are dropped.
+ */
+public final class SExpression {
+
+    private SExpression() {}
+
+    /**
+     * Reads the sequence of s-expressions of the given text.
+     *
+     * @throws IllegalArgumentException if the parentheses of the text are unbalanced, or if it ends inside a string
+     * literal or a quoted symbol
+     */
+    public static List<Object> read(String text) {
+        List<List<Object>> stack = new ArrayList<>();
+        List<Object> current = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '(') {
+                stack.add(current);
+                current = new ArrayList<>();
+                i++;
+            } else if (c == ')') {
+                if (stack.isEmpty()) {
+                    throw new IllegalArgumentException("unbalanced parentheses in SMT-LIB text: " + text);
+                }
+                List<Object> parent = stack.remove(stack.size() - 1);
+                parent.add(current);
+                current = parent;
+                i++;
+            } else {
+                int start = i;
+                if (c == '|') {
+                    i = text.indexOf('|', i + 1) + 1;
+                    if (i == 0) {
+                        throw new IllegalArgumentException("unterminated quoted symbol in SMT-LIB text: " + text);
+                    }
+                } else if (c == '"') {
+                    /* a string literal, in which "" is an escaped quote */
+                    i++;
+                    while (true) {
+                        if (i >= text.length()) {
+                            throw new IllegalArgumentException("unterminated string literal in SMT-LIB text: " + text);
+                        }
+                        if (text.charAt(i) == '"') {
+                            if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                                i += 2;
+                                continue;
+                            }
+                            i++;
+                            break;
+                        }
+                        i++;
+                    }
+                } else {
+                    while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                            && "()\";|".indexOf(text.charAt(i)) < 0) {
+                        i++;
+                    }
+                }
+                current.add(text.substring(start, i));
+            }
+        }
+        if (!stack.isEmpty()) {
+            throw new IllegalArgumentException("unbalanced parentheses in SMT-LIB text: " + text);
+        }
+        return current;
+    }
+
+    /**
+     * Returns whether the given s-expression is a list whose first element is the given atom.
+     */
+    public static boolean isApplication(Object expression, String head) {
+        return expression instanceof List && !((List<?>) expression).isEmpty()
+                && head.equals(((List<?>) expression).get(0));
+    }
+
+    /**
+     * Returns the name denoted by the given symbol, i.e. the symbol without its bars if it is quoted.
+     */
+    public static String symbolName(String symbol) {
+        return symbol.length() >= 2 && symbol.charAt(0) == '|' && symbol.charAt(symbol.length() - 1) == '|' ?
+                symbol.substring(1, symbol.length() - 1) :
+                symbol;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<Object> asList(Object expression) {
+        return (List<Object>) expression;
+    }
+
+    public static String toString(Object expression) {
+        StringBuilder sb = new StringBuilder();
+        print(expression, Function.identity(), sb);
+        return sb.toString();
+    }
+
+    /**
+     * Prints the given s-expression with its atoms replaced as specified, separating the elements of a list by a
+     * single space.
+     */
+    public static void print(Object expression, Function<String, String> atoms, StringBuilder sb) {
+        if (expression instanceof List) {
+            sb.append('(');
+            boolean first = true;
+            for (Object element : asList(expression)) {
+                if (!first) {
+                    sb.append(' ');
+                }
+                print(element, atoms, sb);
+                first = false;
+            }
+            sb.append(')');
+        } else {
+            sb.append(atoms.apply((String) expression));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The commands of an SMT-LIB prelude, classified so that a Z3 library session can load the prelude once.
+ * <p>
+ * The library parser does not retain declarations between calls, but accepts the sorts and functions to resolve
+ * as objects. A session thus parses the whole prelude once, asserts its assertions in the base scope of its solver,
+ * and recovers the declared sorts and functions from probe assertions appended to it (see {@link #probes()}). Only
+ * the macros, which have no such object representation, are parsed again with each query.
+ */
+final class SMTLibPrelude {
+
+    /**
+     * A function declared by {@code declare-fun} or {@code declare-const}, with the sorts of its arguments as
+     * SMT-LIB text.
+     */
+    static final class Function {
+        final String name;
+        final List<String> domain;
+
+        private Function(String name, List<String> domain) {
+            this.name = name;
+            this.domain = domain;
+        }
+    }
+
+    /* the names of the sorts declared by declare-sort with no parameters */
+    private final List<String> sorts = new ArrayList<>();
+    private final List<Function> functions = new ArrayList<>();
+    /* the define-fun and define-sort commands */
+    private final StringBuilder macros = new StringBuilder();
+    private int assertionCount;
+    /* whether all the declarations can be recovered by probes */
+    private boolean complete = true;
+
+    SMTLibPrelude(String text) {
+        List<Object> commands;
+        try {
+            commands = SExpression.read(text);
+        } catch (IllegalArgumentException e) {
+            /* the solver reports the error when the prelude is parsed with a query */
+            complete = false;
+            return;
+        }
+        for (Object command : commands) {
+            if (!(command instanceof List) || ((List<?>) command).isEmpty()) {
+                complete = false;
+                continue;
+            }
+            List<?> items = (List<?>) command;
+            switch (String.valueOf(items.get(0))) {
+            case "assert":
+                assertionCount++;
+                break;
+            case "declare-sort":
+                if (items.size() == 2 || items.size() == 3 && "0".equals(items.get(2))) {
+                    sorts.add(toString(items.get(1)));
+                } else {
+                    complete = false;
+                }
+                break;
+            case "declare-const":
+                if (items.size() == 3) {
+                    functions.add(new Function(toString(items.get(1)), Collections.emptyList()));
+                } else {
+                    complete = false;
+                }
+                break;
+            case "declare-fun":
+                if (items.size() == 4 && items.get(2) instanceof List) {
+                    List<String> domain = new ArrayList<>();
+                    for (Object sort : (List<?>) items.get(2)) {
+                        domain.add(sort(sort));
+                    }
+                    functions.add(new Function(toString(items.get(1)), domain));
+                } else {
+                    complete = false;
+                }
+                break;
+            case "define-fun":
+            case "define-sort":
+                macros.append(toString(command)).append('\n');
+                break;
+            case "set-option":
+            case "set-info":
+            case "set-logic":
+                break;
+            default:
+                /* e.g. push, pop or a declaration of a datatype */
+                complete = false;
+            }
+        }
+    }
+
+    List<String> sorts() {
+        return sorts;
+    }
+
+    List<Function> functions() {
+        return functions;
+    }
+
+    String macros() {
+        return macros.toString();
+    }
+
+    int assertionCount() {
+        return assertionCount;
+    }
+
+    /**
+     * Returns whether the prelude has only commands whose effect on later queries consists of its assertions,
+     * its declared sorts and functions, and its macros.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the commands to append to the prelude to recover its declarations: one assertion for each declared
+     * sort, then one for each declared function, in order. The assertion for a sort is an equation between two
+     * occurrences of a constant of the sort, and the one for a function between two occurrences of an application
+     * of the function to constants, so that the sort or function is the sort or the symbol of the left-hand side.
+     */
+    String probes() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sorts.size(); i++) {
+            String constant = "|k!sort!" + i + "|";
+            sb.append("(declare-fun ").append(constant).append(" () ").append(sorts.get(i)).append(")\n");
+            sb.append("(assert (= ").append(constant).append(' ').append(constant).append("))\n");
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            Function function = functions.get(i);
+            String application;
+            if (function.domain.isEmpty()) {
+                application = function.name;
+            } else {
+                StringBuilder app = new StringBuilder("(").append(function.name);
+                for (int j = 0; j < function.domain.size(); j++) {
+                    String argument = "|k!arg!" + i + "!" + j + "|";
+                    sb.append("(declare-fun ").append(argument).append(" () ").append(function.domain.get(j)).append(")\n");
+                    app.append(' ').append(argument);
+                }
+                application = app.append(')').toString();
+            }
+            sb.append("(assert (= ").append(application).append(' ').append(application).append("))\n");
+        }
+        return sb.toString();
+    }
+
+    /* a sort, where a parenthesized sort such as (IntSet) stands for the sort itself */
+    private static String sort(Object expression) {
+        if (expression instanceof List && ((List<?>) expression).size() == 1) {
+            return sort(((List<?>) expression).get(0));
+        }
+        return toString(expression);
+    }
+
+    private static String toString(Object expression) {
+        return SExpression.toString(expression);
+    }
+}
@@ -3,9 +3,14 @@ package org.kframework.backend.java.util;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Expr;
+import com.microsoft.z3.FuncDecl;
 import com.microsoft.z3.Params;
 import com.microsoft.z3.Solver;
+import com.microsoft.z3.Sort;
 import com.microsoft.z3.Status;
+import com.microsoft.z3.Symbol;
 import com.microsoft.z3.Z3Exception;
 import org.kframework.main.GlobalOptions;
 import org.kframework.utils.OS;
@@ -19,6 +24,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Traian
@@ -29,12 +38,30 @@ public class Z3Wrapper {
 
     private static final Set<String> Z3_QUERY_RESULTS = ImmutableSet.of("unknown", "sat", "unsat");
 
+    /**
+     * Marker echoed by a persistent Z3 process after each query, used to resynchronize the output stream
+     * in case Z3 reports errors before (or instead of) the check-sat result.
+     */
+    private static final String Z3_SESSION_SENTINEL = "k-z3-session-done";
+
     public final String SMT_PRELUDE;
     private final SMTOptions options;
     private final GlobalOptions globalOptions;
     private final KExceptionManager kem;
     private final FileUtil files;
 
+    /**
+     * Idle solver sessions; only used when {@link SMTOptions#z3PoolSize} is positive.
+     */
+    private final BlockingQueue<Z3Session> sessionPool;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    /**
+     * The prelude as loaded by library sessions; only used when {@link SMTOptions#z3PoolSize} is positive.
+     */
+    private final SMTLibPrelude prelude;
+    /* whether a library session has already reported that it could not load the prelude once */
+    private final AtomicBoolean reportedPreludeFailure = new AtomicBoolean();
+
     @Inject
     public Z3Wrapper(
             SMTOptions options,
@@ -47,18 +74,90 @@ public class Z3Wrapper {
         this.files = files;
 
         SMT_PRELUDE = options.smtPrelude == null ? "" : files.loadFromWorkingDirectory(options.smtPrelude);
+        sessionPool = options.z3PoolSize > 0 ? new ArrayBlockingQueue<>(options.z3PoolSize) : null;
+        prelude = sessionPool != null && !options.z3Executable ? new SMTLibPrelude(SMT_PRELUDE) : null;
+    }
+
+    public boolean isUnsat(String query, int timeout) {
+        return Boolean.TRUE.equals(checkUnsat(query, timeout));
     }
 
-    public synchronized boolean isUnsat(String query, int timeout) {
-        if (options.z3Executable) {
-            return checkQueryWithExternalProcess(query, timeout);
-        } else {
-            return checkQueryWithLibrary(query, timeout);
+    /**
+     * Returns {@code true} if the query is unsat, {@code false} if it is sat, and {@code null} if the solver
+     * could not decide it (it answered unknown, timed out, failed to parse the query, or crashed).
+     */
+    public Boolean checkUnsat(String query, int timeout) {
+        if (sessionPool != null) {
+            return checkQueryWithSession(query, timeout);
+        }
+        synchronized (this) {
+            if (options.z3Executable) {
+                return checkQueryWithExternalProcess(query, timeout);
+            } else {
+                return checkQueryWithLibrary(query, timeout);
+            }
+        }
+    }
+
+    private Boolean checkQueryWithSession(String query, int timeout) {
+        Z3Session session = acquireSession();
+        Boolean result = null;
+        try {
+            result = session.checkUnsat(query, timeout);
+        } finally {
+            if (session.isAlive()) {
+                sessionPool.offer(session);
+            } else {
+                session.dispose();
+                sessionCount.decrementAndGet();
+            }
         }
+        return result;
     }
 
-    private boolean checkQueryWithLibrary(String query, int timeout) {
-        boolean result = false;
+    /**
+     * Returns an idle session from the pool, starting a new one if the pool has not reached
+     * {@link SMTOptions#z3PoolSize} yet, and otherwise blocks until another thread releases one.
+     */
+    private Z3Session acquireSession() {
+        Z3Session session = sessionPool.poll();
+        if (session != null) {
+            return session;
+        }
+        if (sessionCount.incrementAndGet() <= options.z3PoolSize) {
+            try {
+                return options.z3Executable ? new ExternalProcessSession() : new LibrarySession();
+            } catch (RuntimeException | Error e) {
+                sessionCount.decrementAndGet();
+                throw e;
+            }
+        }
+        sessionCount.decrementAndGet();
+        try {
+            return sessionPool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Disposes the idle solver sessions, terminating their Z3 processes; called when the rewriter using this
+     * wrapper is closed. Later queries start new sessions.
+     */
+    public void close() {
+        if (sessionPool == null) {
+            return;
+        }
+        Z3Session session;
+        while ((session = sessionPool.poll()) != null) {
+            session.dispose();
+            sessionCount.decrementAndGet();
+        }
+    }
+
+    private Boolean checkQueryWithLibrary(String query, int timeout) {
+        Boolean result = null;
         try {
             com.microsoft.z3.Context context = new com.microsoft.z3.Context();
             Solver solver = context.mkSolver();
@@ -66,7 +165,7 @@ public class Z3Wrapper {
             params.add("timeout", timeout);
             solver.setParameters(params);
             solver.add(context.parseSMTLIB2String(SMT_PRELUDE + query, null, null, null, null));
-            result = solver.check() == Status.UNSATISFIABLE;
+            result = result(solver.check());
             context.dispose();
         } catch (Z3Exception e) {
             kem.registerCriticalWarning(
@@ -78,7 +177,7 @@ public class Z3Wrapper {
         return result;
     }
 
-    private boolean checkQueryWithExternalProcess(String query, int timeout) {
+    private Boolean checkQueryWithExternalProcess(String query, int timeout) {
         String result = "";
         try {
             for (int i = 0; i < Z3_RESTART_LIMIT; i++) {
@@ -114,7 +213,246 @@ public class Z3Wrapper {
         } else if (globalOptions.debug && !Z3_QUERY_RESULTS.contains(result)) {
             System.err.println("Unexpected Z3 query result:\n" + result);
         }
-        return result.equals("unsat");
+        return result(result);
     }
-}
 
+    private static Boolean result(Status status) {
+        switch (status) {
+        case UNSATISFIABLE:
+            return true;
+        case SATISFIABLE:
+            return false;
+        default:
+            return null;
+        }
+    }
+
+    private static Boolean result(String output) {
+        switch (output) {
+        case "unsat":
+            return true;
+        case "sat":
+            return false;
+        default:
+            return null;
+        }
+    }
+
+    private interface Z3Session {
+        /**
+         * See {@link #checkUnsat(String, int)}.
+         */
+        Boolean checkUnsat(String query, int timeout);
+
+        boolean isAlive();
+
+        void dispose();
+    }
+
+    /**
+     * A Z3 library context whose solver is reused across queries; each query is checked inside its own
+     * {@code push}/{@code pop} scope. The prelude is parsed once, when the session starts: its assertions are
+     * asserted in the base scope, and its declared sorts and functions are passed to the parser of each query (see
+     * {@link SMTLibPrelude}). If the declarations of the prelude cannot be recovered, which is reported once, the
+     * prelude is parsed together with each query instead.
+     */
+    private class LibrarySession implements Z3Session {
+        private final com.microsoft.z3.Context context = new com.microsoft.z3.Context();
+        private final Solver solver = context.mkSolver();
+        /* the text parsed before each query: the macros of the prelude, or the whole prelude */
+        private String preamble = SMT_PRELUDE;
+        private Symbol[] sortNames;
+        private Sort[] sorts;
+        private Symbol[] declNames;
+        private FuncDecl[] decls;
+        private boolean alive = true;
+
+        LibrarySession() {
+            if (prelude.isComplete()) {
+                try {
+                    loadPrelude();
+                } catch (Z3Exception e) {
+                    solver.reset();
+                    sortNames = null;
+                    sorts = null;
+                    declNames = null;
+                    decls = null;
+                    if (!reportedPreludeFailure.getAndSet(true)) {
+                        kem.registerInternalWarning("Could not load the SMT prelude once per solver session, "
+                                + "parsing it with each query instead", e);
+                    }
+                }
+            }
+        }
+
+        private void loadPrelude() {
+            int sortCount = prelude.sorts().size();
+            int functionCount = prelude.functions().size();
+            int assertionCount = prelude.assertionCount();
+            int total = assertionCount + sortCount + functionCount;
+            if (total == 0) {
+                preamble = prelude.macros();
+                return;
+            }
+            BoolExpr parsed = context.parseSMTLIB2String(SMT_PRELUDE + prelude.probes(), null, null, null, null);
+            Expr[] conjuncts = total == 1 ? new Expr[] {parsed} : parsed.getArgs();
+            if (total > 1 && (!parsed.isAnd() || conjuncts.length != total)) {
+                throw new Z3Exception("unexpected shape of the parsed prelude");
+            }
+
+            sortNames = new Symbol[sortCount];
+            sorts = new Sort[sortCount];
+            for (int i = 0; i < sortCount; i++) {
+                sorts[i] = probedTerm(conjuncts[assertionCount + i]).getSort();
+                sortNames[i] = checkName(sorts[i].getName(), prelude.sorts().get(i));
+            }
+            declNames = new Symbol[functionCount];
+            decls = new FuncDecl[functionCount];
+            for (int i = 0; i < functionCount; i++) {
+                decls[i] = probedTerm(conjuncts[assertionCount + sortCount + i]).getFuncDecl();
+                declNames[i] = checkName(decls[i].getName(), prelude.functions().get(i).name);
+            }
+
+            for (int i = 0; i < assertionCount; i++) {
+                solver.add((BoolExpr) conjuncts[i]);
+            }
+            preamble = prelude.macros();
+        }
+
+        /* the left-hand side of a probe assertion */
+        private Expr probedTerm(Expr probe) {
+            if (!probe.isEq() || probe.getNumArgs() != 2) {
+                throw new Z3Exception("unexpected shape of a probe of the prelude");
+            }
+            return probe.getArgs()[0];
+        }
+
+        /* the name of a recovered sort or function, checked against the symbol declared by the prelude */
+        private Symbol checkName(Symbol name, String declared) {
+            if (!name.toString().equals(SExpression.symbolName(declared))) {
+                throw new Z3Exception("a probe of the prelude recovered " + name + " instead of " + declared);
+            }
+            return name;
+        }
+
+        @Override
+        public Boolean checkUnsat(String query, int timeout) {
+            Boolean result = null;
+            try {
+                Params params = context.mkParams();
+                params.add("timeout", timeout);
+                solver.setParameters(params);
+                solver.push();
+                try {
+                    solver.add(context.parseSMTLIB2String(preamble + query, sortNames, sorts, declNames, decls));
+                    result = result(solver.check());
+                } finally {
+                    solver.pop();
+                }
+            } catch (Z3Exception e) {
+                kem.registerCriticalWarning(
+                        "failed to translate smtlib expression:\n" + SMT_PRELUDE + query);
+            } catch (UnsatisfiedLinkError e) {
+                alive = false;
+                System.err.println(System.getProperty("java.library.path"));
+                throw e;
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+
+        @Override
+        public void dispose() {
+            context.dispose();
+        }
+    }
+
+    /**
+     * A long-lived {@code z3 -in} process which is sent the prelude once; each query is checked
+     * inside its own {@code (push)}/{@code (pop)} scope so that its declarations are discarded afterwards.
+     */
+    private class ExternalProcessSession implements Z3Session {
+        private Process z3Process;
+        private BufferedWriter input;
+        private BufferedReader output;
+
+        @Override
+        public Boolean checkUnsat(String query, int timeout) {
+            String result = null;
+            for (int i = 0; i < Z3_RESTART_LIMIT && result == null; i++) {
+                try {
+                    if (!isAlive()) {
+                        start();
+                    }
+                    input.write("(push)\n(set-option :timeout " + timeout + ")\n" + query
+                            + "(check-sat)\n(pop)\n(echo \"" + Z3_SESSION_SENTINEL + "\")\n");
+                    input.flush();
+                    result = readResult();
+                } catch (IOException e) {
+                    result = null;
+                }
+                if (result == null) {
+                    dispose();
+                }
+            }
+            if (result == null) {
+                result = "unknown";
+                if (globalOptions.debug) {
+                    System.err.println("Z3 crashed on query:\n" + SMT_PRELUDE + query + "(check-sat)\n");
+                }
+            } else if (globalOptions.debug && !Z3_QUERY_RESULTS.contains(result)) {
+                System.err.println("Unexpected Z3 query result:\n" + result);
+            }
+            return result(result);
+        }
+
+        private void start() throws IOException {
+            ProcessBuilder pb = files.getProcessBuilder().command(
+                    OS.current().getNativeExecutable("z3"),
+                    "-in",
+                    "-smt2");
+            pb.redirectInput(ProcessBuilder.Redirect.PIPE);
+            pb.redirectOutput(ProcessBuilder.Redirect.PIPE);
+            z3Process = pb.start();
+            input = new BufferedWriter(new OutputStreamWriter(z3Process.getOutputStream()));
+            output = new BufferedReader(new InputStreamReader(z3Process.getInputStream()));
+            input.write(SMT_PRELUDE);
+            input.flush();
+        }
+
+        /**
+         * Reads the output of one query up to the sentinel, returning the check-sat result, or
+         * {@code null} if the process died before answering.
+         */
+        private String readResult() throws IOException {
+            String result = null;
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.contains(Z3_SESSION_SENTINEL)) {
+                    return result == null ? "unknown" : result;
+                }
+                if (result == null || Z3_QUERY_RESULTS.contains(line)) {
+                    result = line;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return z3Process != null && z3Process.isAlive();
+        }
+
+        @Override
+        public void dispose() {
+            if (z3Process != null) {
+                z3Process.destroy();
+                z3Process = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.builtins;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.kframework.backend.java.kil.TermContext;
+import org.mockito.Mock;
+
+import java.math.BigInteger;
+
+public class BuiltinIntOperationsTest {
+
+    @Mock
+    TermContext context;
+
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+    @Test
+    public void testOverflowPromotion() {
+        IntToken max = IntToken.of(Long.MAX_VALUE);
+        IntToken min = IntToken.of(Long.MIN_VALUE);
+        assertEquals(IntToken.of(LONG_MAX.add(BigInteger.ONE)), BuiltinIntOperations.add(max, IntToken.of(1), context));
+        assertEquals(IntToken.of(LONG_MIN.subtract(BigInteger.ONE)), BuiltinIntOperations.sub(min, IntToken.of(1), context));
+        assertEquals(IntToken.of(LONG_MAX.multiply(LONG_MAX)), BuiltinIntOperations.mul(max, max, context));
+        assertEquals(IntToken.of(LONG_MIN.negate()), BuiltinIntOperations.div(min, IntToken.of(-1), context));
+        assertEquals(IntToken.of(LONG_MIN.negate()), BuiltinIntOperations.abs(min, context));
+        assertEquals(IntToken.of(BigInteger.ONE.shiftLeft(64)), BuiltinIntOperations.shl(IntToken.of(1), IntToken.of(64), context));
+        assertNull(BuiltinIntOperations.div(max, IntToken.of(0), context));
+    }
+
+    @Test
+    public void testCanonicalRepresentation() {
+        IntToken big = IntToken.of(LONG_MAX.add(BigInteger.ONE));
+        IntToken small = BuiltinIntOperations.sub(big, IntToken.of(1), context);
+        assertTrue(small.isLong());
+        assertEquals(IntToken.of(Long.MAX_VALUE), small);
+        assertEquals(LONG_MAX.hashCode(), small.hashCode());
+        assertSame(IntToken.of(42), IntToken.of(BigInteger.valueOf(42)));
+        assertEquals(IntToken.of("-9223372036854775809"), IntToken.of(LONG_MIN.subtract(BigInteger.ONE)));
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.indexing.IndexingTable;
+import org.kframework.backend.java.symbolic.BuiltinFunction;
+import org.kframework.backend.java.symbolic.ConjunctiveFormula;
+import org.kframework.backend.java.symbolic.KILtoSMTLib;
+import org.kframework.kil.loader.Context;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefinitionTest {
+
+    @Mock
+    KExceptionManager kem;
+
+    @Mock
+    GlobalContext global;
+
+    @Mock
+    BuiltinFunction builtins;
+
+    private Definition definition;
+    private KLabelConstant function;
+
+    @Before
+    public void setUp() {
+        Context context = new Context();
+        context.setTokenSorts(Collections.emptySet());
+        context.setDataStructureSorts(Collections.emptyMap());
+        definition = new Definition(context, kem, new IndexingTable.Data());
+        when(global.getDefinition()).thenReturn(definition);
+        function = KLabelConstant.of("definitionTestFunction", definition);
+        definition.addRule(functionRule(function));
+    }
+
+    private static Rule functionRule(KLabelConstant kLabel) {
+        Rule rule = mock(Rule.class);
+        when(rule.isFunction()).thenReturn(true);
+        when(rule.definedKLabel()).thenReturn(kLabel);
+        return rule;
+    }
+
+    @Test
+    public void testRuleTablesSurviveSMTQueries() {
+        List<Rule> rules = definition.functionRulesOn(function);
+        FunctionRuleIndex index = definition.functionRuleIndex(function);
+        assertTrue(definition.isEvaluable(function, builtins));
+
+        /* reads the function rules to translate the smt-lemma axioms */
+        KILtoSMTLib.translateConstraint(ConjunctiveFormula.of(global));
+
+        assertSame(rules, definition.functionRulesOn(function));
+        assertSame(index, definition.functionRuleIndex(function));
+        assertEquals(1, definition.functionRules().size());
+    }
+
+    @Test
+    public void testRuleTablesFollowMutations() {
+        assertEquals(1, definition.functionRulesOn(function).size());
+        definition.addRule(functionRule(function));
+        assertEquals(2, definition.functionRulesOn(function).size());
+        definition.clearFunctionAndAnywhereRules();
+        assertTrue(definition.functionRulesOn(function).isEmpty());
+        assertFalse(definition.isEvaluable(function, builtins));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFunctionRulesAreReadOnly() {
+        definition.functionRules().clear();
+    }
+}
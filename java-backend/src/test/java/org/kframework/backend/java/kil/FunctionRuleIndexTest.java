@@ -0,0 +1,145 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.kil;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.indexing.IndexingTable;
+import org.kframework.kil.Attribute;
+import org.kframework.kil.Attributes;
+import org.kframework.kil.loader.Context;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FunctionRuleIndexTest {
+
+    private static final BigInteger LARGE = BigInteger.ONE.shiftLeft(100);
+
+    @Mock
+    KExceptionManager kem;
+
+    private KLabelConstant f;
+    private KLabelConstant a;
+    private KLabelConstant b;
+    private KLabelConstant g;
+
+    @Before
+    public void setUp() {
+        Context context = new Context();
+        context.setTokenSorts(Collections.emptySet());
+        context.setDataStructureSorts(Collections.emptyMap());
+        Definition definition = new Definition(context, kem, new IndexingTable.Data());
+        f = KLabelConstant.of("functionRuleIndexTestF", definition);
+        a = KLabelConstant.of("functionRuleIndexTestA", definition);
+        b = KLabelConstant.of("functionRuleIndexTestB", definition);
+
+        Attributes function = new Attributes();
+        function.add(Attribute.FUNCTION);
+        Definition functions = mock(Definition.class);
+        when(functions.kLabelAttributesOf("functionRuleIndexTestG")).thenReturn(function);
+        g = KLabelConstant.of("functionRuleIndexTestG", functions);
+        assertTrue(a.isConstructor());
+        assertFalse(g.isConstructor());
+    }
+
+    private static KItem apply(KLabelConstant kLabel, Term... arguments) {
+        return new KItem(kLabel, KCollection.upKind(KList.concatenate(arguments), Kind.KLIST), Sort.KITEM, true);
+    }
+
+    private static Rule rule(Term leftHandSide) {
+        Rule rule = mock(Rule.class);
+        when(rule.leftHandSide()).thenReturn(leftHandSide);
+        return rule;
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int i : indices) {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    private static Variable variable(String name) {
+        return new Variable(name, Sort.INT);
+    }
+
+    @Test
+    public void testTokenKeys() {
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(
+                rule(apply(f, IntToken.of(0))),
+                rule(apply(f, IntToken.of(5))),
+                rule(apply(f, IntToken.of(LARGE)))));
+
+        assertEquals(bits(0), index.candidates(apply(f, IntToken.of(0))));
+        /* the same value backed by a long and by a BigInteger */
+        assertEquals(bits(1), index.candidates(apply(f, IntToken.of(BigInteger.valueOf(5)))));
+        assertEquals(bits(2), index.candidates(apply(f, IntToken.of(LARGE.toString()))));
+        assertTrue(index.candidates(apply(f, IntToken.of(LARGE.add(BigInteger.ONE)))).isEmpty());
+        assertTrue(index.candidates(apply(f, IntToken.of(7))).isEmpty());
+    }
+
+    @Test
+    public void testConstructorKeys() {
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(
+                rule(apply(f, apply(a), IntToken.of(1))),
+                rule(apply(f, apply(b), IntToken.of(1))),
+                rule(apply(f, apply(a), IntToken.of(2)))));
+
+        assertEquals(bits(0, 2), index.candidates(apply(f, apply(a), variable("X"))));
+        assertEquals(bits(0), index.candidates(apply(f, apply(a), IntToken.of(1))));
+        assertEquals(bits(1), index.candidates(apply(f, apply(b), IntToken.of(1))));
+        assertTrue(index.candidates(apply(f, apply(b), IntToken.of(2))).isEmpty());
+    }
+
+    @Test
+    public void testVariableAndFunctionArguments() {
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(
+                rule(apply(f, apply(a))),
+                rule(apply(f, variable("X"))),
+                rule(apply(f, apply(g, variable("Y"))))));
+
+        /* the patterns without a key may apply to any argument */
+        assertEquals(bits(0, 1, 2), index.candidates(apply(f, apply(a))));
+        assertEquals(bits(1, 2), index.candidates(apply(f, apply(b))));
+        assertEquals(bits(1, 2), index.candidates(apply(f, IntToken.of(0))));
+        /* nor do subject arguments without a key exclude any rule */
+        assertEquals(index.all(), index.candidates(apply(f, variable("Z"))));
+        assertEquals(index.all(), index.candidates(apply(f, apply(g, IntToken.of(0)))));
+    }
+
+    @Test
+    public void testMixedArities() {
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(
+                rule(apply(f, apply(a))),
+                rule(apply(f, apply(a), apply(b)))));
+
+        assertEquals(bits(0, 1), index.all());
+        assertEquals(index.all(), index.candidates(apply(f, apply(b))));
+        assertEquals(index.all(), index.candidates(apply(f, apply(b), apply(b))));
+    }
+
+    @Test
+    public void testOwiseRuleIsAlwaysACandidate() {
+        /* f(0) => 1, f(1) => 1, f(N) => f(N - 1) + f(N - 2) [owise] */
+        FunctionRuleIndex index = new FunctionRuleIndex(ImmutableList.of(
+                rule(apply(f, IntToken.of(0))),
+                rule(apply(f, IntToken.of(1))),
+                rule(apply(f, variable("N")))));
+
+        assertEquals(bits(0, 2), index.candidates(apply(f, IntToken.of(0))));
+        assertEquals(bits(1, 2), index.candidates(apply(f, IntToken.of(1))));
+        assertEquals(bits(2), index.candidates(apply(f, IntToken.of(LARGE))));
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.junit.Test;
+import org.kframework.backend.java.builtins.BuiltinIntOperations;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.backend.java.kil.Variable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+
+import static org.junit.Assert.*;
+
+public class HookInvokerTest {
+
+    private static MethodHandle add() throws NoSuchMethodException, IllegalAccessException {
+        return MethodHandles.lookup().findStatic(BuiltinIntOperations.class, "add",
+                MethodType.methodType(IntToken.class, IntToken.class, IntToken.class, TermContext.class));
+    }
+
+    @Test
+    public void testInvoke() throws Throwable {
+        HookInvoker add = HookInvoker.of(add());
+        assertEquals(IntToken.of(3), add.invoke(null, IntToken.of(1), IntToken.of(2)));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testArgumentOfTheWrongType() throws Throwable {
+        HookInvoker.of(add()).invoke(null, IntToken.of(1), new Variable("X", Sort.INT));
+    }
+
+    @Test(expected = WrongMethodTypeException.class)
+    public void testWrongNumberOfArguments() throws Throwable {
+        HookInvoker.of(add()).invoke(null, IntToken.of(1));
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SMTQueryCacheTest {
+
+    @Test
+    public void testAlphaRenamingAndConjunctOrder() {
+        String query1 = "(declare-fun f (Int) Int)\n"
+                + "(declare-fun X () Int)\n"
+                + "(declare-fun Y () Int)\n"
+                + "(assert (and (= (f X) 1) (< X Y)))";
+        String query2 = "(declare-fun f (Int) Int)\n"
+                + "(declare-fun B () Int)\n"
+                + "(declare-fun A () Int)\n"
+                + "(assert (and (< A B) (= (f A) 1)))";
+        assertEquals(SMTQueryCache.canonicalize(query1), SMTQueryCache.canonicalize(query2));
+        assertEquals(SMTQueryCache.key("", query1, 50), SMTQueryCache.key("", query2, 50));
+        assertNotEquals(SMTQueryCache.key("", query1, 50), SMTQueryCache.key("", query1, 5000));
+    }
+
+    @Test
+    public void testAlphaRenamingOfConjunctsOfTheSameShape() {
+        String query1 = "(declare-fun X () Int)\n"
+                + "(declare-fun Y () Int)\n"
+                + "(declare-fun Z () Int)\n"
+                + "(assert (and (< X Y) (< Y Z)))";
+        String query2 = "(declare-fun C () Int)\n"
+                + "(declare-fun B () Int)\n"
+                + "(declare-fun A () Int)\n"
+                + "(assert (and (< C B) (< B A)))";
+        assertEquals(SMTQueryCache.canonicalize(query1), SMTQueryCache.canonicalize(query2));
+    }
+
+    @Test
+    public void testDistinctQueries() {
+        String query1 = "(declare-fun X () Int)\n"
+                + "(declare-fun Y () Int)\n"
+                + "(assert (and (< X Y) (< Y X)))";
+        String query2 = "(declare-fun X () Int)\n"
+                + "(declare-fun Y () Int)\n"
+                + "(assert (and (< X Y) (< X Y)))";
+        assertNotEquals(SMTQueryCache.canonicalize(query1), SMTQueryCache.canonicalize(query2));
+    }
+
+    @Test
+    public void testQuotedSymbols() {
+        String query1 = "(declare-fun |X| () Int)\n"
+                + "(declare-fun Y () Int)\n"
+                + "(assert (< X |Y|))";
+        String query2 = "(declare-fun A () Int)\n"
+                + "(declare-fun B () Int)\n"
+                + "(assert (< A B))";
+        assertEquals(SMTQueryCache.canonicalize(query1), SMTQueryCache.canonicalize(query2));
+    }
+
+    @Test
+    public void testQueriesWhichAreNotAlphaEquivalent() {
+        String[][] queries = {
+                /* a constant used in a definition, which is unsat in the first query and sat in the second */
+                {"(declare-fun X () Int)\n(declare-fun Z () Int)\n(define-fun g () Int X)\n(assert (> X g))",
+                        "(declare-fun Y () Int)\n(declare-fun X () Int)\n(define-fun g () Int X)\n(assert (> Y g))"},
+                /* the same constant twice */
+                {"(declare-fun X () Int)\n(declare-fun Y () Int)\n(assert (< X Y))",
+                        "(declare-fun X () Int)\n(declare-fun Y () Int)\n(assert (< X X))"},
+                /* constants of different sorts */
+                {"(declare-fun X () Int)\n(assert (= X X))",
+                        "(declare-fun X () Bool)\n(assert (= X X))"},
+                /* a bound variable and a constant */
+                {"(declare-fun X () Int)\n(assert (forall ((x Int)) (< x X)))",
+                        "(declare-fun X () Int)\n(assert (forall ((x Int)) (< X x)))"},
+                /* a quoted symbol which is not a simple symbol */
+                {"(declare-fun |a b| (Int) Int)\n(declare-fun X () Int)\n(assert (= (|a b| X) 0))",
+                        "(declare-fun |a  b| (Int) Int)\n(declare-fun X () Int)\n(assert (= (|a  b| X) 0))"},
+                /* an atom of the query which looks like a renamed constant */
+                {"(declare-fun X () Int)\n(assert (= X |#0|))",
+                        "(declare-fun X () Int)\n(assert (= X X))"},
+        };
+        for (String[] pair : queries) {
+            assertNotEquals(pair[0], SMTQueryCache.canonicalize(pair[0]), SMTQueryCache.canonicalize(pair[1]));
+            assertNotEquals(pair[0], SMTQueryCache.key("", pair[0], 50), SMTQueryCache.key("", pair[1], 50));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnbalancedQuery() {
+        SMTQueryCache.canonicalize("(declare-fun X () Int)\n(assert (< X 0)");
+    }
+
+    @Test
+    public void testEviction() {
+        SMTQueryCache cache = new SMTQueryCache(2, null);
+        cache.put("a", true);
+        cache.put("b", false);
+        assertEquals(Boolean.TRUE, cache.get("a"));
+        cache.put("c", true);
+        assertNull(cache.get("b"));
+        assertEquals(Boolean.TRUE, cache.get("a"));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testPersistentCacheIsSharedBetweenRuns() throws IOException {
+        File file = File.createTempFile("smt-cache", ".txt");
+        file.deleteOnExit();
+        SMTQueryCache first = new SMTQueryCache(10, file);
+        SMTQueryCache second = new SMTQueryCache(10, file);
+        first.put("a", true);
+        second.put("b", false);
+        first.put("a", true);
+
+        SMTQueryCache next = new SMTQueryCache(10, file);
+        assertEquals(Boolean.TRUE, next.get("a"));
+        assertEquals(Boolean.FALSE, next.get("b"));
+        assertNull(next.get("c"));
+        assertEquals(2, Files.readAllLines(file.toPath()).size());
+    }
+}
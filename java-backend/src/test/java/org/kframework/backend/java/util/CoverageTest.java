@@ -0,0 +1,78 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+import org.kframework.attributes.Location;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.kil.Rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class CoverageTest {
+
+    @Test
+    public void testRunsSharingAFileAddUpTheirCounts() throws IOException {
+        File file = new File(Files.createTempDirectory("coverage").toFile(), "coverage.txt");
+        /* lines without a count, as written by older versions */
+        Files.write(file.toPath(), Arrays.asList(
+                "Source(a.k):Location(1,1,1,10)",
+                "Source(a.k):Location(1,1,1,10)"), StandardCharsets.UTF_8);
+
+        /* two runs started before either flushes */
+        Coverage first = new Coverage(file);
+        Coverage second = new Coverage(file);
+        first.record(rule("a.k", 1));
+        second.record(rule("a.k", 1));
+        second.record(rule("b.k", 3));
+        first.flush();
+        second.flush();
+        first.record(rule("a.k", 1));
+        first.flush();
+        /* nothing new to add */
+        second.flush();
+
+        Map<String, Long> counts = Coverage.read(file);
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(5), counts.get(Source.apply("a.k") + ":" + new Location(1, 1, 1, 10)));
+        assertEquals(Long.valueOf(1), counts.get(Source.apply("b.k") + ":" + new Location(3, 1, 3, 10)));
+        assertEquals(Arrays.asList(
+                "5," + Source.apply("a.k") + ":" + new Location(1, 1, 1, 10),
+                "1," + Source.apply("b.k") + ":" + new Location(3, 1, 3, 10)),
+                Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private static Rule rule(String file, int line) {
+        Rule rule = mock(Rule.class);
+        when(rule.getSource()).thenReturn(Source.apply(file));
+        when(rule.getLocation()).thenReturn(new Location(line, 1, line, 10));
+        return rule;
+    }
+
+    @Test
+    public void testRulesAreCountedByLocation() throws IOException {
+        File file = new File(Files.createTempDirectory("coverage").toFile(), "coverage.txt");
+        Coverage coverage = Coverage.of(file);
+        Rule first = rule("a.k", 1);
+        Rule second = rule("a.k", 2);
+        coverage.record(first);
+        coverage.record(first);
+        coverage.record(second);
+        /* another rule at the same location */
+        coverage.record(rule("a.k", 1));
+        Rule unlocated = mock(Rule.class);
+        coverage.record(unlocated);
+
+        Map<String, Long> counts = coverage.counts();
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(3), counts.get(Source.apply("a.k") + ":" + new Location(1, 1, 1, 10)));
+        assertEquals(Long.valueOf(1), counts.get(Source.apply("a.k") + ":" + new Location(2, 1, 2, 10)));
+    }
+}
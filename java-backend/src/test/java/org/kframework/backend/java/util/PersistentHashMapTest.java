@@ -0,0 +1,125 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PersistentHashMapTest {
+
+    /**
+     * Key with a deliberately poor hash function, to exercise collision nodes.
+     */
+    private static class CollidingKey {
+        private final int value;
+
+        CollidingKey(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value % 7;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).value == value;
+        }
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> actual = PersistentHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000) - 2500;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.minus(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.plus(key, i);
+            }
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(expected.entrySet(), new HashSet<>(actual.entrySet()));
+    }
+
+    @Test
+    public void testCollisions() {
+        Map<CollidingKey, Integer> expected = new HashMap<>();
+        PersistentHashMap<CollidingKey, Integer> actual = PersistentHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            expected.put(new CollidingKey(i), i);
+            actual = actual.plus(new CollidingKey(i), i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            expected.remove(new CollidingKey(i));
+            actual = actual.minus(new CollidingKey(i));
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+    @Test
+    public void testPersistence() {
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            map = map.plus(i, i);
+        }
+        PersistentHashMap<Integer, Integer> updated = map.plus(500, -1).minus(7);
+        assertEquals(Integer.valueOf(500), map.get(500));
+        assertEquals(Integer.valueOf(7), map.get(7));
+        assertEquals(Integer.valueOf(-1), updated.get(500));
+        assertNull(updated.get(7));
+        assertEquals(1000, map.size());
+        assertEquals(999, updated.size());
+        assertSame(map, map.minus(1000));
+        assertEquals(map, updated.plus(500, 500).plus(7, 7));
+    }
+
+    @Test
+    public void testSet() {
+        Random random = new Random(7);
+        Set<Integer> expected = new HashSet<>();
+        PersistentHashSet<Integer> actual = PersistentHashSet.empty();
+        for (int i = 0; i < 10000; i++) {
+            int element = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                expected.add(element);
+                actual = actual.plus(element);
+            } else {
+                expected.remove(element);
+                actual = actual.minus(element);
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        assertEquals(actual, PersistentHashSet.copyOf(expected));
+    }
+
+    @Test
+    public void testIterationOrderDoesNotDependOnInsertionOrder() {
+        PersistentHashSet<String> forwards = PersistentHashSet.empty();
+        PersistentHashSet<String> backwards = PersistentHashSet.empty();
+        for (int i = 0; i < 1000; i++) {
+            forwards = forwards.plus("element" + i);
+            backwards = backwards.plus("element" + (999 - i));
+        }
+        assertEquals(new ArrayList<>(forwards), new ArrayList<>(backwards));
+        assertEquals(new ArrayList<>(forwards.minus("element0").plus("element0")), new ArrayList<>(forwards));
+    }
+}
@@ -0,0 +1,87 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class PersistentVectorTest {
+
+    @Test
+    public void testAgainstArrayList() {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> actual = PersistentVector.empty();
+        for (int i = 0; i < 20000; i++) {
+            switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                expected.add(i);
+                actual = actual.plus(i);
+                break;
+            case 2:
+                expected.add(0, i);
+                actual = actual.plusFirst(i);
+                break;
+            case 3:
+                int from = random.nextInt(expected.size() + 1);
+                int to = from + random.nextInt(expected.size() - from + 1);
+                if (to - from > expected.size() / 2) {
+                    expected = new ArrayList<>(expected.subList(from, to));
+                    actual = actual.subList(from, to);
+                }
+                break;
+            default:
+                List<Integer> other = IntStream.range(0, random.nextInt(100)).boxed().collect(Collectors.toList());
+                PersistentVector<Integer> otherVector = PersistentVector.copyOf(other);
+                if (random.nextBoolean()) {
+                    expected.addAll(other);
+                    actual = actual.concat(otherVector);
+                } else {
+                    expected.addAll(0, other);
+                    actual = otherVector.concat(actual);
+                }
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testConcatenationOfLargeVectors() {
+        List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> actual = PersistentVector.empty();
+        for (int i = 0; i < 200; i++) {
+            List<Integer> chunk = IntStream.range(i * 1000, i * 1000 + 37 * i).boxed().collect(Collectors.toList());
+            expected.addAll(chunk);
+            actual = actual.concat(PersistentVector.copyOf(chunk));
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.subList(1000, 50000), actual.subList(1000, 50000));
+        assertEquals(PersistentVector.copyOf(expected), actual);
+    }
+
+    @Test
+    public void testPersistence() {
+        PersistentVector<Integer> vector = PersistentVector.copyOf(IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+        PersistentVector<Integer> appended = vector.plus(1000);
+        PersistentVector<Integer> sliced = vector.subList(10, 20);
+        assertEquals(1000, vector.size());
+        assertEquals(1001, appended.size());
+        assertEquals(Integer.valueOf(999), vector.get(999));
+        assertEquals(IntStream.range(10, 20).boxed().collect(Collectors.toList()), sliced);
+        assertSame(vector, vector.subList(0, 1000));
+        assertSame(vector, vector.concat(PersistentVector.empty()));
+    }
+}
@@ -0,0 +1,105 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.kil.Attributes;
+import org.kframework.utils.BaseTestCase;
+import org.mockito.Mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RuleProfilerTest extends BaseTestCase {
+
+    @Mock
+    Definition definition;
+
+    @Before
+    public void setUp() {
+        when(definition.signaturesOf(anyString())).thenReturn(Collections.emptySet());
+        when(definition.allSorts()).thenReturn(Collections.singleton(Sort.of("Foo")));
+        when(definition.kLabelAttributesOf(anyString())).thenReturn(new Attributes());
+    }
+
+    @Test
+    public void testReportAndStacks() throws IOException, InterruptedException {
+        File file = File.createTempFile("profile", ".tsv");
+        RuleProfiler profiler = new RuleProfiler(() -> definition, file);
+        KLabelConstant outer = KLabelConstant.of("profiledOuter", definition);
+        KLabelConstant inner = KLabelConstant.of("profiledInner", definition);
+
+        RuleProfiler.Frame outerFrame = profiler.enterFunction(outer);
+        outerFrame.apply();
+        for (int i = 0; i < 3; i++) {
+            RuleProfiler.Frame innerFrame = profiler.enterFunction(inner);
+            innerFrame.apply();
+            profiler.smtCall();
+            Thread.sleep(2);
+            profiler.exit(innerFrame);
+        }
+        profiler.exit(outerFrame);
+        /* not attributed to any function */
+        profiler.smtCall();
+        profiler.write();
+
+        List<String> report = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, report.size());
+        assertTrue(report.get(0).startsWith("self ms\t"));
+        /* sorted by decreasing self time */
+        String[] innerRow = report.get(1).split("\t");
+        String[] outerRow = report.get(2).split("\t");
+        assertEquals("profiledInner", innerRow[7]);
+        assertEquals("3", innerRow[2]);
+        assertEquals("3", innerRow[5]);
+        assertEquals("profiledOuter", outerRow[7]);
+        assertEquals("1", outerRow[2]);
+        assertEquals("0", outerRow[5]);
+        assertTrue(Double.parseDouble(outerRow[1]) >= Double.parseDouble(innerRow[1]));
+
+        List<String> stacks = Files.readAllLines(new File(file.getPath() + ".folded").toPath(), StandardCharsets.UTF_8);
+        assertTrue(stacks.stream().anyMatch(s -> s.matches("function profiledOuter;function profiledInner \\d+")));
+        assertTrue(stacks.stream().allMatch(s -> s.startsWith("function profiledOuter")));
+    }
+
+    @Test
+    public void testDeferredRecordsAreOnlyAddedWhenCommitted() throws IOException {
+        File file = File.createTempFile("profile", ".tsv");
+        RuleProfiler profiler = new RuleProfiler(() -> definition, file);
+        KLabelConstant kept = KLabelConstant.of("profiledKept", definition);
+        KLabelConstant discarded = KLabelConstant.of("profiledDiscarded", definition);
+
+        RuleProfiler.Deferred keptRecords = profiler.startDeferring();
+        RuleProfiler.Frame frame = profiler.enterFunction(kept);
+        frame.apply();
+        profiler.smtCall();
+        profiler.exit(frame);
+        profiler.stopDeferring(keptRecords);
+
+        RuleProfiler.Deferred discardedRecords = profiler.startDeferring();
+        frame = profiler.enterFunction(discarded);
+        frame.apply();
+        profiler.exit(frame);
+        profiler.stopDeferring(discardedRecords);
+
+        profiler.write();
+        assertTrue(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).stream()
+                .noneMatch(row -> row.endsWith("\t1\t0\t0\t1\tfunction\tprofiledKept")));
+
+        keptRecords.commit();
+        profiler.write();
+        List<String> report = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(report.stream().anyMatch(row -> row.endsWith("\t1\t0\t0\t1\tfunction\tprofiledKept")));
+        assertTrue(report.stream().anyMatch(row -> row.endsWith("\t0\t0\t0\t0\tfunction\tprofiledDiscarded")));
+    }
+}
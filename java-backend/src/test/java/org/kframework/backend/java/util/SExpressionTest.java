@@ -0,0 +1,47 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SExpressionTest {
+
+    @Test
+    public void testStringsAndQuotedSymbols() {
+        assertEquals(Arrays.asList(Arrays.asList("echo", "\"a \"\" ; (b\""), Arrays.asList("assert", "|x ) y|")),
+                SExpression.read("(echo \"a \"\" ; (b\") ; comment )\n(assert |x ) y|)"));
+        assertEquals("x ) y", SExpression.symbolName("|x ) y|"));
+        assertEquals("x", SExpression.symbolName("x"));
+    }
+
+    @Test
+    public void testPrint() {
+        assertEquals("(assert (and (< x y) true))",
+                SExpression.toString(SExpression.read("(assert\n  (and (< x y)\ttrue)) ; comment").get(0)));
+        assertEquals(Collections.singletonList(Collections.emptyList()), SExpression.read("()"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingParenthesis() {
+        SExpression.read("(assert (< x y)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExtraParenthesis() {
+        SExpression.read("(assert (< x y)))");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedQuotedSymbol() {
+        SExpression.read("(assert |x)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedString() {
+        SExpression.read("(echo \"a\"\")");
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SMTLibPreludeTest {
+
+    private static final String PRELUDE = ""
+            + "(set-option :auto-config false)\n"
+            + "; int extra\n"
+            + "(define-fun int_max ((x Int) (y Int)) Int (ite (< x y) y x))\n"
+            + "(declare-sort IntSet)\n"
+            + "(declare-fun smt_set_emp () IntSet)\n"
+            + "(declare-fun smt_set_lt ((IntSet) (IntSet)) Bool) ; parenthesized sorts\n"
+            + "(declare-const |a b| Int)\n"
+            + "(assert (forall ((s IntSet)) (not (smt_set_lt s s))))\n"
+            + "(assert (= (int_max 1 2) 2))\n";
+
+    @Test
+    public void testCommandsAreClassified() {
+        SMTLibPrelude prelude = new SMTLibPrelude(PRELUDE);
+        assertTrue(prelude.isComplete());
+        assertEquals(Collections.singletonList("IntSet"), prelude.sorts());
+        assertEquals(3, prelude.functions().size());
+        assertEquals("smt_set_emp", prelude.functions().get(0).name);
+        assertEquals(Collections.emptyList(), prelude.functions().get(0).domain);
+        assertEquals(Arrays.asList("IntSet", "IntSet"), prelude.functions().get(1).domain);
+        assertEquals("|a b|", prelude.functions().get(2).name);
+        assertEquals(2, prelude.assertionCount());
+        assertEquals("(define-fun int_max ((x Int) (y Int)) Int (ite (< x y) y x))\n", prelude.macros());
+    }
+
+    @Test
+    public void testProbes() {
+        assertEquals(""
+                + "(declare-fun |k!sort!0| () IntSet)\n"
+                + "(assert (= |k!sort!0| |k!sort!0|))\n"
+                + "(assert (= smt_set_emp smt_set_emp))\n"
+                + "(declare-fun |k!arg!1!0| () IntSet)\n"
+                + "(declare-fun |k!arg!1!1| () IntSet)\n"
+                + "(assert (= (smt_set_lt |k!arg!1!0| |k!arg!1!1|) (smt_set_lt |k!arg!1!0| |k!arg!1!1|)))\n"
+                + "(assert (= |a b| |a b|))\n",
+                new SMTLibPrelude(PRELUDE).probes());
+    }
+
+    @Test
+    public void testUnsupportedCommandsMakeThePreludeIncomplete() {
+        assertFalse(new SMTLibPrelude("(declare-datatypes () ((Pair (mk-pair (first Int)))))").isComplete());
+        assertFalse(new SMTLibPrelude("(declare-sort Array2 2)").isComplete());
+        assertFalse(new SMTLibPrelude("(push)").isComplete());
+        assertFalse(new SMTLibPrelude("(declare-sort IntSet) (assert true").isComplete());
+    }
+}
@@ -0,0 +1,51 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.kore.K;
+import org.kframework.utils.KoreUtils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+
+public class ConvertInputTest {
+
+    /* a balanced concatenation of the list items from (inclusive) to to (exclusive) */
+    private static K list(int from, int to) {
+        if (to - from == 1) {
+            return KApply(KLabel("ListItem"), KToken(Integer.toString(from), Sort("Int")));
+        }
+        int middle = (from + to) >>> 1;
+        return KApply(KLabel("_List_"), list(from, middle), list(middle, to));
+    }
+
+    @Test
+    public void testLargeGroundInputIsConvertedAsBySequentialConversion() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/prove-fresh.k", "PROVE-FRESH", "PROVE-FRESH-SYNTAX", false, false, true);
+        utils.requestScope.enter();
+        try {
+            InitializeRewriter.SymbolicRewriterGlue rewriter = (InitializeRewriter.SymbolicRewriterGlue)
+                    utils.injector.getInstance(InitializeRewriter.class).apply(utils.compiledDef.executionModule());
+            KOREtoBackendKIL converter = new KOREtoBackendKIL(rewriter.module, rewriter.definition, rewriter.rewritingContext, false);
+
+            /* about 3 << 13 nodes, above the size from which ground inputs are converted in parallel */
+            K items = list(0, 1 << 13);
+            Term expected = converter.convert(items);
+            assertEquals(expected, converter.convertInput(items));
+
+            /* with a term of the backend as a subterm, which is kept as it is */
+            Term backendTerm = converter.convert(list(0, 2));
+            K mixed = KApply(KLabel("_List_"), items, backendTerm);
+            assertEquals(converter.convert(mixed), converter.convertInput(mixed));
+        } finally {
+            utils.requestScope.exit();
+        }
+    }
+}
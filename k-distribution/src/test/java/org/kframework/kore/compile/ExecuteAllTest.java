@@ -0,0 +1,73 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.RewriterResult;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.kore.K;
+import org.kframework.rewriter.Rewriter;
+import org.kframework.utils.KoreUtils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ExecuteAllTest {
+
+    private static Rewriter rewriter(KoreUtils utils, int threads) {
+        utils.injector.getInstance(JavaExecutionOptions.class).executeThreads = threads;
+        return utils.injector.getInstance(InitializeRewriter.class).apply(utils.compiledDef.executionModule());
+    }
+
+    private static List<K> results(List<RewriterResult> results) {
+        return results.stream().map(RewriterResult::k).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testProgramsRunBackToBackOnOneRewriter() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/prove-fresh.k", "PROVE-FRESH", "PROVE-FRESH-SYNTAX", false, false, true);
+        K first = utils.getParsed("start 2", Source.apply("generated by " + getClass().getSimpleName()));
+        K second = utils.getParsed("start 3", Source.apply("generated by " + getClass().getSimpleName()));
+
+        utils.requestScope.enter();
+        try {
+            /* each program on a rewriter of its own */
+            Rewriter fresh = rewriter(utils, 1);
+            K expectedFirst = fresh.execute(first, Optional.empty()).k();
+            fresh.close();
+            fresh = rewriter(utils, 1);
+            K expectedSecond = fresh.execute(second, Optional.empty()).k();
+            fresh.close();
+            assertNotEquals(expectedFirst, expectedSecond);
+
+            Rewriter shared = rewriter(utils, 1);
+            try {
+                assertEquals(expectedFirst, shared.execute(first, Optional.empty()).k());
+                assertEquals(expectedSecond, shared.execute(second, Optional.empty()).k());
+                assertEquals(expectedFirst, shared.execute(first, Optional.empty()).k());
+            } finally {
+                shared.close();
+            }
+
+            Rewriter parallel = rewriter(utils, 2);
+            try {
+                List<K> programs = Arrays.asList(first, second, first, second);
+                List<K> expected = Arrays.asList(expectedFirst, expectedSecond, expectedFirst, expectedSecond);
+                assertEquals(expected, results(parallel.executeAll(programs, Optional.empty())));
+                assertEquals(expected, results(parallel.executeAll(programs, Optional.empty())));
+            } finally {
+                parallel.close();
+            }
+        } finally {
+            utils.requestScope.exit();
+        }
+    }
+}
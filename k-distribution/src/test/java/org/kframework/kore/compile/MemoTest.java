@@ -0,0 +1,49 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.symbolic.FunctionCache;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.kore.K;
+import org.kframework.utils.KoreUtils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class MemoTest {
+
+    private FunctionCache run(KoreUtils utils, String program) throws URISyntaxException {
+        K pgm = utils.getParsed(program, Source.apply("generated by " + getClass().getSimpleName()));
+        utils.requestScope.enter();
+        try {
+            InitializeRewriter.SymbolicRewriterGlue rewriter = (InitializeRewriter.SymbolicRewriterGlue)
+                    utils.injector.getInstance(InitializeRewriter.class).apply(utils.compiledDef.executionModule());
+            rewriter.execute(pgm, Optional.empty());
+            return rewriter.rewritingContext.kItemOps.getFunctionCache();
+        } finally {
+            utils.requestScope.exit();
+        }
+    }
+
+    @Test
+    public void testMemoFunctionsAreMemoized() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/memo.k", "MEMO", "MEMO-SYNTAX", false, false, true);
+        FunctionCache cache = run(utils, "fib 20");
+        assertNotNull(cache);
+        /* one entry for each of fibonacci(0) to fibonacci(20), each computed once */
+        assertEquals(21, cache.size());
+        assertTrue(cache.hits() > 0);
+    }
+
+    @Test
+    public void testImpureFunctionsAreNotMemoized() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/memo.k", "MEMO", "MEMO-SYNTAX", false, false, true);
+        /* next is marked memo, but also impure, so no cache is even created */
+        assertNull(run(utils, "tick 3"));
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.definition.Definition;
+import org.kframework.definition.Module;
+import org.kframework.kompile.Kompile;
+import org.kframework.kompile.KompileOptions;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+
+import java.io.File;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+
+public class ParallelPassesTest {
+
+    private Definition kompile(boolean parallelPasses) throws URISyntaxException {
+        KompileOptions kompileOptions = new KompileOptions();
+        kompileOptions.outerParsing.noPrelude = true;
+        kompileOptions.experimental.parallelPasses = parallelPasses;
+        File definitionFile = new File(ParallelPassesTest.class.getResource("/compiler-tests/strategies_imp.k").toURI());
+        Kompile kompile = new Kompile(kompileOptions, FileUtil.testFileUtil(), new KExceptionManager(new GlobalOptions()), false);
+        return kompile.run(definitionFile, "IMP", "IMP-SYNTAX").kompiledDefinition;
+    }
+
+    @Test
+    public void testParallelPassesKompileTheSameDefinition() throws URISyntaxException {
+        /* the definition has rules with anonymous variables and casts, which are resolved by stateful resolvers */
+        Definition sequential = kompile(false);
+        Definition parallel = kompile(true);
+        for (Module module : iterable(sequential.modules())) {
+            assertEquals(module.name(), module, parallel.getModule(module.name()).get());
+        }
+        assertEquals(sequential.modules().size(), parallel.modules().size());
+        assertEquals(sequential, parallel);
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.backend.java.symbolic.ProofExecutionMode;
+import org.kframework.kore.K;
+import org.kframework.krun.KRunOptions;
+import org.kframework.main.GlobalOptions;
+import org.kframework.rewriter.Rewriter;
+import org.kframework.utils.KoreUtils;
+import org.kframework.utils.Stopwatch;
+import org.kframework.utils.file.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ParallelProveTest {
+
+    private List<String> prove(KoreUtils utils, K pgm, File spec, int threads) {
+        KRunOptions options = new KRunOptions();
+        options.experimental.prove = spec.getAbsolutePath();
+        GlobalOptions globalOptions = new GlobalOptions();
+        utils.requestScope.enter();
+        try {
+            utils.injector.getInstance(JavaExecutionOptions.class).proveThreads = threads;
+            Rewriter rewriter = utils.injector.getInstance(InitializeRewriter.class).apply(utils.compiledDef.executionModule());
+            List<K> unproven = new ProofExecutionMode(utils.kem, options, new Stopwatch(globalOptions), FileUtil.testFileUtil(), globalOptions)
+                    .execute(pgm, rewriter, utils.compiledDef);
+            return unproven.stream().map(Object::toString).collect(Collectors.toList());
+        } finally {
+            utils.requestScope.exit();
+        }
+    }
+
+    @Test
+    public void testClaimsDoNotDependOnTheNumberOfThreads() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/prove-fresh.k", "PROVE-FRESH", "PROVE-FRESH-SYNTAX", false, false, true);
+        K pgm = utils.getParsed("start 0", Source.apply("generated by " + getClass().getSimpleName()));
+        File spec = new File(ParallelProveTest.class.getResource("/compiler-tests/prove-fresh-spec.k").toURI());
+
+        /* sequential proofs share the fresh counter, so their fresh constants differ from those of parallel ones */
+        assertEquals(4, prove(utils, pgm, spec, 1).size());
+        List<String> parallel = prove(utils, pgm, spec, 2);
+        assertEquals(4, parallel.size());
+        assertEquals(parallel, prove(utils, pgm, spec, 4));
+    }
+}
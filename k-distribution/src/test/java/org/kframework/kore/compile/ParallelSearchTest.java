@@ -0,0 +1,71 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.compile;
+
+import org.junit.Test;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
+import org.kframework.builtin.BooleanUtils;
+import org.kframework.definition.Rule;
+import org.kframework.kore.K;
+import org.kframework.kore.KORE;
+import org.kframework.kore.KVariable;
+import org.kframework.rewriter.Rewriter;
+import org.kframework.rewriter.SearchType;
+import org.kframework.utils.KoreUtils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ParallelSearchTest {
+
+    private List<String> search(KoreUtils utils, K pgm, int threads) {
+        return search(utils, pgm, threads, Optional.empty());
+    }
+
+    private List<String> search(KoreUtils utils, K pgm, int threads, Optional<Integer> bound) {
+        utils.requestScope.enter();
+        try {
+            utils.injector.getInstance(JavaExecutionOptions.class).searchThreads = threads;
+            Rewriter rewriter = utils.injector.getInstance(InitializeRewriter.class).apply(utils.compiledDef.executionModule());
+            List<? extends Map<? extends KVariable, ? extends K>> searchResults = rewriter.search(pgm, Optional.empty(), bound,
+                    new Rule(KORE.KVariable("X"), BooleanUtils.TRUE, BooleanUtils.TRUE, KORE.Att()),
+                    SearchType.FINAL);
+            return searchResults.stream()
+                    .flatMap(m -> m.values().stream())
+                    .map(Object::toString)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } finally {
+            utils.requestScope.exit();
+        }
+    }
+
+    @Test
+    public void testFreshConstantsMatchSequentialSearch() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/search-fresh.k", "SEARCH-FRESH", "SEARCH-FRESH-SYNTAX", true, false, true);
+        K pgm = utils.getParsed("start 4", Source.apply("generated by " + getClass().getSimpleName()));
+
+        List<String> sequential = search(utils, pgm, 1);
+        /* one final state for each subset of the four steps drawing a fresh constant */
+        assertEquals(16, sequential.size());
+        assertEquals(sequential, search(utils, pgm, 4));
+    }
+
+    @Test
+    public void testBoundedSearchMatchesSequentialSearch() throws IOException, URISyntaxException {
+        KoreUtils utils = new KoreUtils("/compiler-tests/search-fresh.k", "SEARCH-FRESH", "SEARCH-FRESH-SYNTAX", true, false, true);
+        K pgm = utils.getParsed("start 4", Source.apply("generated by " + getClass().getSimpleName()));
+
+        List<String> sequential = search(utils, pgm, 1, Optional.of(3));
+        assertEquals(3, sequential.size());
+        assertEquals(sequential, search(utils, pgm, 4, Optional.of(3)));
+    }
+}
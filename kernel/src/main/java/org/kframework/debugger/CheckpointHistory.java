@@ -0,0 +1,221 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.debugger;
+
+import org.kframework.kore.K;
+import org.kframework.parser.binary.BinaryParser;
+import org.kframework.unparser.ToBinary;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Persistent history of the checkpoints of a {@link DebuggerState}, ordered by step number.
+ * <p>
+ * A history is a linked list from its last checkpoint back to its first one. Adding a checkpoint or truncating the
+ * history returns a new history sharing all the older checkpoints with the original one, so the successive versions
+ * of a state, and states copied from each other, never duplicate checkpoints. Configurations themselves are
+ * immutable and share all their unchanged subterms with the configurations they were rewritten from.
+ * <p>
+ * Each checkpoint also points to one of its ancestors, chosen so that the checkpoint preceding a given step is found
+ * in a number of hops logarithmic in the length of the history.
+ * <p>
+ * The configuration of a checkpoint may be spilled to a file in KAST binary format; it is read back, without being
+ * kept in memory again, whenever the checkpoint is used.
+ */
+public final class CheckpointHistory {
+
+    private static final class Node {
+        private final int step;
+        private final int depth;
+        private final Node parent;
+        private final Node jump;
+        private K k;
+        private File file;
+
+        private Node(int step, K k, Node parent) {
+            this.step = step;
+            this.k = k;
+            this.parent = parent;
+            if (parent == null) {
+                this.depth = 0;
+                this.jump = this;
+            } else {
+                this.depth = parent.depth + 1;
+                Node parentJump = parent.jump;
+                this.jump = parent.depth - parentJump.depth == parentJump.depth - parentJump.jump.depth
+                        ? parentJump.jump
+                        : parent;
+            }
+        }
+
+        private K k() {
+            return k != null ? k : BinaryParser.parse(file);
+        }
+    }
+
+    private final Node last;
+
+    /* the factor by which the interval between checkpoints was multiplied by thinning the history */
+    private final int spacing;
+
+    /*
+     * An upper bound of the number of resident checkpoints, maintained as checkpoints are added so that the history
+     * does not need to be walked. It is only an upper bound because checkpoints shared with other histories may have
+     * been spilled through them; spilling this history makes it exact again.
+     */
+    private int residentSize;
+
+    private CheckpointHistory(Node last, int spacing, int residentSize) {
+        this.last = last;
+        this.spacing = spacing;
+        this.residentSize = residentSize;
+    }
+
+    /**
+     * Returns a history consisting of a single checkpoint.
+     */
+    public static CheckpointHistory of(int step, K k) {
+        return new CheckpointHistory(new Node(step, k, null), 1, 1);
+    }
+
+    /**
+     * Returns this history extended with a checkpoint after its last one.
+     */
+    public CheckpointHistory put(int step, K k) {
+        if (step <= last.step) {
+            throw KEMException.debuggerError("Checkpoint at step " + step + " is not after the last checkpoint at step " + last.step);
+        }
+        return new CheckpointHistory(new Node(step, k, last), spacing, residentSize + 1);
+    }
+
+    public int size() {
+        return last.depth + 1;
+    }
+
+    public int firstStep() {
+        Node node = last;
+        while (node.parent != null) {
+            node = node.jump != node ? node.jump : node.parent;
+        }
+        return node.step;
+    }
+
+    public int lastStep() {
+        return last.step;
+    }
+
+    private Node floorNode(int step) {
+        Node node = last;
+        while (node.step > step) {
+            if (node.parent == null) {
+                return null;
+            }
+            node = node.jump.step > step ? node.jump : node.parent;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the step number of the last checkpoint at or before the given step, or -1 if there is none.
+     */
+    public int floorStep(int step) {
+        Node node = floorNode(step);
+        return node == null ? -1 : node.step;
+    }
+
+    /**
+     * Returns the configuration of the checkpoint at the given step, or null if there is none.
+     */
+    public K get(int step) {
+        Node node = floorNode(step);
+        return node == null || node.step != step ? null : node.k();
+    }
+
+    /**
+     * Returns the prefix of this history ending with the last checkpoint at or before the given step,
+     * or null if there is none.
+     */
+    public CheckpointHistory truncate(int step) {
+        Node node = floorNode(step);
+        return node == null ? null : node == last ? this
+                : new CheckpointHistory(node, spacing, Math.min(residentSize, node.depth + 1));
+    }
+
+    /**
+     * Returns the factor by which the interval between the checkpoints of this history was multiplied by
+     * {@link #thin()}, i.e. 2 to the number of times it was thinned.
+     */
+    public int spacing() {
+        return spacing;
+    }
+
+    /**
+     * Returns an upper bound of the number of checkpoints whose configuration is held in memory, in constant time.
+     * It is exact after {@link #spill}.
+     */
+    public int residentSize() {
+        return residentSize;
+    }
+
+    /**
+     * Spills to disk all the configurations held in memory, except those of the given number of most recent resident
+     * checkpoints. Configurations which were spilled before are not written again.
+     *
+     * @param fileForStep the file to which to write the configuration of the checkpoint at the given step.
+     */
+    public void spill(int keep, IntFunction<File> fileForStep) {
+        residentSize = 0;
+        for (Node node = last; node != null; node = node.parent) {
+            if (node.k == null) {
+                continue;
+            }
+            if (keep > 0) {
+                keep--;
+                residentSize++;
+                continue;
+            }
+            if (node.file == null) {
+                File file = fileForStep.apply(node.step);
+                file.getParentFile().mkdirs();
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                    ToBinary.apply(out, node.k);
+                } catch (IOException e) {
+                    throw KEMException.debuggerError("Could not write checkpoint to " + file + ": " + e.getMessage());
+                }
+                node.file = file;
+            }
+            node.k = null;
+        }
+    }
+
+    /**
+     * Returns a history keeping every other checkpoint of this one, and always the first and the last.
+     */
+    public CheckpointHistory thin() {
+        List<Node> nodes = new ArrayList<>(size());
+        for (Node node = last; node != null; node = node.parent) {
+            nodes.add(node);
+        }
+        Node thinned = null;
+        int resident = 0;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (i == 0 || i == nodes.size() - 1 || (nodes.size() - 1 - i) % 2 == 0) {
+                Node node = nodes.get(i);
+                Node copy = new Node(node.step, node.k, thinned);
+                copy.file = node.file;
+                thinned = copy;
+                if (node.k != null) {
+                    resident++;
+                }
+            }
+        }
+        return new CheckpointHistory(thinned, spacing * 2, resident);
+    }
+}
@@ -1,14 +1,11 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.debugger;
 
-import com.google.common.collect.Maps;
 import org.kframework.kore.K;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 /**
  * Created by Manasvi on 6/15/15.
@@ -17,14 +14,15 @@ import java.util.TreeMap;
  * The Debugger can have multiple states at the same time,
  * but only one state is active.
  * <p>
- * Every State has a Checkpoint Enabled History.
+ * Every State has a Checkpoint Enabled History, which
+ * shares its checkpoints with the states it was derived from.
  * <p>
  * A State essentially represents a specific branch in the
  * execution tree of a program.
  */
 public class DebuggerState {
 
-    private final NavigableMap<Integer, K> checkpointMap;
+    private final CheckpointHistory checkpoints;
 
     private final List<DebuggerMatchResult> watchList;
 
@@ -32,15 +30,15 @@ public class DebuggerState {
 
     private final int stepNum;
 
-    public DebuggerState(K currentK, int stepNum, NavigableMap<Integer, K> checkpointMap, List<DebuggerMatchResult> watchList) {
-        this.checkpointMap = new TreeMap<>(checkpointMap);
+    public DebuggerState(K currentK, int stepNum, CheckpointHistory checkpoints, List<DebuggerMatchResult> watchList) {
+        this.checkpoints = checkpoints;
         this.watchList = new ArrayList<>(watchList);
         this.currentK = currentK;
         this.stepNum = stepNum;
     }
 
     public DebuggerState(DebuggerState copyState) {
-        this.checkpointMap = new TreeMap<>(copyState.getCheckpointMap());
+        this.checkpoints = copyState.getCheckpoints();
         this.watchList = new ArrayList<>(copyState.getWatchList());
         this.currentK = copyState.getCurrentK();
         this.stepNum = copyState.getStepNum();
@@ -55,20 +53,20 @@ public class DebuggerState {
     }
 
     /**
-     * Get the last checkpoint from the Map.
+     * Get the last checkpoint from the History.
      * The last checkpoint may not have the most recent K.
      *
-     * @return The most recent checkpoint element in the Map
+     * @return The most recent checkpoint element in the History
      */
     public int getlastMapCheckpoint() {
-        return checkpointMap.lastKey();
+        return checkpoints.lastStep();
     }
 
     public List<DebuggerMatchResult> getWatchList() {
         return Collections.unmodifiableList(watchList);
     }
 
-    public NavigableMap<Integer, K> getCheckpointMap() {
-        return Maps.unmodifiableNavigableMap(checkpointMap);
+    public CheckpointHistory getCheckpoints() {
+        return checkpoints;
     }
 }
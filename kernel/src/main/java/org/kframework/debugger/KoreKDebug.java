@@ -12,19 +12,22 @@ import org.kframework.kore.KVariable;
 import org.kframework.krun.KRun;
 import org.kframework.krun.KRunOptions;
 import org.kframework.rewriter.SearchType;
+import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
  * Kore Based Debugger Implementation.
+ * <p>
+ * If a checkpoint budget is given, the number of checkpoints held in memory by a state is bounded by it. When a state
+ * exceeds it, its older checkpoints are either spilled to disk, or thinned out by doubling the checkpoint interval of
+ * that state.
  */
 public class KoreKDebug implements KDebug {
 
@@ -37,6 +40,9 @@ public class KoreKDebug implements KDebug {
     private final KExceptionManager kem;
     private KRunOptions options;
     private CompiledDefinition compiledDef;
+    private final int checkpointBudget;
+    private final boolean spillCheckpoints;
+    private int spilledCheckpoints;
 
     /**
      * Start a Debugger Session. The initial Configuration becomes a part of the new and only state of the Debugger
@@ -58,10 +64,13 @@ public class KoreKDebug implements KDebug {
         this.kem = kem;
         this.options = options;
         this.compiledDef = compiledDef;
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>();
-        checkpointMap.put(DEFAULT_ID, initialK);
+        this.checkpointBudget = options.experimental.debuggerCheckpointBudget;
+        if (checkpointBudget != 0 && checkpointBudget < 2) {
+            throw KEMException.criticalError("The debugger checkpoint budget must be at least 2, found " + checkpointBudget);
+        }
+        this.spillCheckpoints = options.experimental.debuggerSpillCheckpoints && files != null;
         List<DebuggerMatchResult> watchList = new ArrayList<>();
-        DebuggerState initialState = new DebuggerState(initialK, DEFAULT_ID, checkpointMap, watchList);
+        DebuggerState initialState = new DebuggerState(initialK, DEFAULT_ID, CheckpointHistory.of(DEFAULT_ID, initialK), watchList);
         stateList.add(initialState);
         activeStateIndex = DEFAULT_ID;
     }
@@ -77,21 +86,22 @@ public class KoreKDebug implements KDebug {
         K currentK = currentState.getCurrentK();
         int activeStateCheckpoint = currentState.getStepNum();
         RewriterResult result;
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>(currentState.getCheckpointMap());
+        CheckpointHistory checkpoints = currentState.getCheckpoints();
         List<DebuggerMatchResult> origWatchList = currentState.getWatchList();
-        while (steps >= checkpointInterval) {
-            result = rewriter.execute(currentK, Optional.of(checkpointInterval));
-            if (isFinalState(checkpointInterval, result)) {
+        while (steps >= interval(checkpoints)) {
+            int interval = interval(checkpoints);
+            result = rewriter.execute(currentK, Optional.of(interval));
+            if (isFinalState(interval, result)) {
                 return processStateData(result.k(),
                         activeStateCheckpoint + result.rewriteSteps().get(),
                         currentStateIndex,
-                        checkpointMap,
+                        checkpoints,
                         origWatchList
                 );
             }
-            steps -= checkpointInterval;
-            activeStateCheckpoint += checkpointInterval;
-            checkpointMap.put(activeStateCheckpoint, result.k());
+            steps -= interval;
+            activeStateCheckpoint += interval;
+            checkpoints = withinBudget(checkpoints.put(activeStateCheckpoint, result.k()));
             currentK = result.k();
         }
         result = rewriter.execute(currentK, Optional.of(steps));
@@ -99,7 +109,7 @@ public class KoreKDebug implements KDebug {
             return processStateData(result.k(),
                     activeStateCheckpoint + result.rewriteSteps().get(),
                     currentStateIndex,
-                    checkpointMap,
+                    checkpoints,
                     origWatchList
             );
 
@@ -108,19 +118,36 @@ public class KoreKDebug implements KDebug {
         return processStateData(result.k(),
                 activeStateCheckpoint,
                 currentStateIndex,
-                checkpointMap,
+                checkpoints,
                 origWatchList
         );
     }
 
+    /* Private Helper function returning the checkpoint interval of a state, which grows as its history is thinned */
+    private int interval(CheckpointHistory checkpoints) {
+        return checkpointInterval * checkpoints.spacing();
+    }
+
+    /* Private Helper function to keep the checkpoints held in memory within the budget, if any */
+    private CheckpointHistory withinBudget(CheckpointHistory checkpoints) {
+        if (checkpointBudget == 0 || checkpoints.residentSize() <= checkpointBudget) {
+            return checkpoints;
+        }
+        if (spillCheckpoints) {
+            checkpoints.spill(checkpointBudget / 2, step -> files.resolveTemp("checkpoints/" + spilledCheckpoints++ + ".bin"));
+            return checkpoints;
+        }
+        return checkpoints.thin();
+    }
+
     /* Private Helper function to do make a new state with the requested data */
-    private DebuggerState processStateData(K finalK, int stepNum, int stateNum, NavigableMap<Integer, K> checkpointMap, List<DebuggerMatchResult> watchList) {
+    private DebuggerState processStateData(K finalK, int stepNum, int stateNum, CheckpointHistory checkpoints, List<DebuggerMatchResult> watchList) {
         List<DebuggerMatchResult> updatedWatchList = updateWatchList(watchList, finalK);
         stateList.remove(stateNum);
         DebuggerState nextState = new DebuggerState(
                 finalK,
                 stepNum,
-                checkpointMap,
+                checkpoints,
                 updatedWatchList
         );
         stateList.add(stateNum, nextState);
@@ -153,27 +180,26 @@ public class KoreKDebug implements KDebug {
         DebuggerState currentState = stateList.get(initialStateNum);
         int currentCheckpoint = currentState.getStepNum();
         int target = currentCheckpoint - steps;
-        NavigableMap<Integer, K> currMap = new TreeMap<>(currentState.getCheckpointMap());
-        Map.Entry<Integer, K> relevantEntry = currMap.floorEntry(target);
-        if (relevantEntry == null) {
+        CheckpointHistory checkpoints = currentState.getCheckpoints().truncate(target);
+        if (checkpoints == null) {
             /* Invalid Operation, no need to change the state */
             return null;
         }
 
-        int floorKey = relevantEntry.getKey();
-        processStateData(relevantEntry.getValue(),
+        int floorKey = checkpoints.lastStep();
+        K floorK = checkpoints.get(floorKey);
+        processStateData(floorK,
                 floorKey,
                 initialStateNum,
-                currMap.headMap(floorKey, true),
-                updateWatchList(currentState.getWatchList(), relevantEntry.getValue()));
+                checkpoints,
+                updateWatchList(currentState.getWatchList(), floorK));
         return step(initialStateNum, target - floorKey);
     }
 
     @Override
     public DebuggerState jumpTo(int initialStateNum, int configurationNum) {
         DebuggerState currentState = stateList.get(initialStateNum);
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>(currentState.getCheckpointMap());
-        int firstKey = checkpointMap.firstKey();
+        int firstKey = currentState.getCheckpoints().firstStep();
         if (configurationNum < firstKey) {
             return null;
         }
@@ -193,11 +219,13 @@ public class KoreKDebug implements KDebug {
     public DebuggerState resume() {
         DebuggerState activeState = stateList.get(activeStateIndex);
         DebuggerState steppedState = activeState;
+        int interval;
         do {
             activeState = steppedState;
-            steppedState = step(activeStateIndex, checkpointInterval);
+            interval = interval(activeState.getCheckpoints());
+            steppedState = step(activeStateIndex, interval);
         }
-        while (steppedState.getStepNum() - activeState.getStepNum() >= checkpointInterval && !isFinalConfiguration(steppedState.getCurrentK()));
+        while (steppedState.getStepNum() - activeState.getStepNum() >= interval && !isFinalConfiguration(steppedState.getCurrentK()));
         return steppedState;
     }
 
@@ -258,7 +286,7 @@ public class KoreKDebug implements KDebug {
         DebuggerState nextState = new DebuggerState(
                 activeState.getCurrentK(),
                 activeState.getStepNum(),
-                new TreeMap<>(activeState.getCheckpointMap()),
+                activeState.getCheckpoints(),
                 watchList);
         stateList.add(activeStateIndex, nextState);
     }
@@ -277,7 +305,7 @@ public class KoreKDebug implements KDebug {
                 new DebuggerState(
                         currActiveState.getCurrentK(),
                         currActiveState.getStepNum(),
-                        new TreeMap<>(currActiveState.getCheckpointMap()),
+                        currActiveState.getCheckpoints(),
                         updatedList)
 
         );
@@ -7,6 +7,7 @@ import com.google.inject.Provider;
 import org.kframework.attributes.Source;
 import org.kframework.kompile.CompiledDefinition;
 import org.kframework.kore.K;
+import org.kframework.unparser.ToBinary;
 import org.kframework.unparser.ToKast;
 import org.kframework.main.FrontEnd;
 import org.kframework.utils.Stopwatch;
@@ -103,7 +104,17 @@ public class KastFrontEnd extends FrontEnd {
                 mod = mod2.get();
             }
             K parsed = def.getParser(mod, sort, kem).apply(FileUtil.read(stringToParse), source);
-            System.out.println(ToKast.apply(parsed));
+            switch (options.output) {
+            case KAST:
+                System.out.println(ToKast.apply(parsed));
+                break;
+            case BINARY:
+                ToBinary.apply(System.out, parsed);
+                System.out.flush();
+                break;
+            default:
+                throw KEMException.criticalError("Unsupported output mode for kast: " + options.output);
+            }
             sw.printTotal("Total");
             return 0;
         } finally {
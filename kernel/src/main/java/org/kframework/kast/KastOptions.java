@@ -9,9 +9,11 @@ import com.google.inject.Provider;
 import org.kframework.attributes.Source;
 import org.kframework.kore.Sort;
 import org.kframework.main.GlobalOptions;
+import org.kframework.unparser.OutputModes;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.inject.RequestScoped;
+import org.kframework.utils.options.BaseEnumConverter;
 import org.kframework.utils.options.DefinitionLoadingOptions;
 
 import java.io.Reader;
@@ -89,6 +91,23 @@ public final class KastOptions {
     @Parameter(names={"--module", "-m"}, description="Parse text in the specified module. Defaults to the syntax module of the definition.")
     public String module;
 
+    @Parameter(names={"--output", "-o"}, converter=OutputModeConverter.class,
+            description="How to print the parsed term. <mode> is either [kast|binary]. In binary mode, the term " +
+            "is streamed to the output without building its encoding in memory.")
+    public OutputModes output = OutputModes.KAST;
+
+    public static class OutputModeConverter extends BaseEnumConverter<OutputModes> {
+
+        public OutputModeConverter(String optionName) {
+            super(optionName);
+        }
+
+        @Override
+        public Class<OutputModes> enumClass() {
+            return OutputModes.class;
+        }
+    }
+
     @ParametersDelegate
     public Experimental experimental = new Experimental();
 
@@ -0,0 +1,207 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.kframework.attributes.Att;
+import org.kframework.definition.Configuration;
+import org.kframework.definition.Context;
+import org.kframework.definition.Definition;
+import org.kframework.definition.DefinitionTransformer;
+import org.kframework.definition.Module;
+import org.kframework.definition.Production;
+import org.kframework.definition.ProductionItem;
+import org.kframework.definition.Rule;
+import org.kframework.definition.Sentence;
+import org.kframework.kore.InjectedKLabel;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.KRewrite;
+import org.kframework.kore.KSequence;
+import org.kframework.kore.KToken;
+import org.kframework.kore.KVariable;
+import scala.Function1;
+import scala.Option;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.kframework.Collections.*;
+
+/**
+ * Results of the module-local passes of the compilation pipeline, persisted between runs of kompile in the
+ * kompiled directory, so that only the modules whose own sentences or transitively imported modules changed
+ * are compiled again.
+ * <p>
+ * Only passes whose result on a module depends on nothing but the module (with its imports) and the parameters
+ * of the pass may be cached; the parameters must be part of the key under which the pass is cached.
+ * <p>
+ * The results are keyed by a fingerprint of the contents of the module rather than by the module itself, because
+ * {@link Module#equals} only compares names and sentences, and {@link Production#equals} ignores the attributes
+ * other than klabel, while passes such as the resolution of strictness depend on them.
+ */
+public class CompilationCache implements Serializable {
+
+    /* for each cached pass, its results by fingerprint of the transformed module */
+    private final Map<String, Map<String, Module>> results = new HashMap<>();
+
+    /* fingerprints of the modules of the current run */
+    private transient Map<Module, String> fingerprints;
+
+    /* statistics of the current run */
+    private transient int reusedModules;
+    private transient int transformedModules;
+
+    /**
+     * Returns a pass which applies the given transformer, reusing its results from the previous run, and records
+     * its new results.
+     */
+    public Function1<Definition, Definition> cached(String key, DefinitionTransformer transformer) {
+        return d -> {
+            Map<String, Module> previous = results.getOrDefault(key, Collections.emptyMap());
+            DefinitionTransformer reusing = transformer.reusing(m -> Option.apply(previous.get(fingerprint(m))));
+            Definition result = reusing.apply(d);
+            Map<String, Module> current = new HashMap<>();
+            for (scala.Tuple2<Module, Module> entry : iterable(reusing.moduleTransformer().resultsFor(d.modules()))) {
+                String fingerprint = fingerprint(entry._1());
+                if (previous.containsKey(fingerprint)) {
+                    reusedModules++;
+                } else {
+                    transformedModules++;
+                }
+                current.put(fingerprint, entry._2());
+            }
+            results.put(key, current);
+            return result;
+        };
+    }
+
+    /**
+     * Returns a summary of the modules reused from the previous run, e.g. "12/15 cached modules".
+     */
+    public String summary() {
+        return reusedModules + "/" + (reusedModules + transformedModules) + " cached modules";
+    }
+
+    /**
+     * Returns a hash of the name, the attributes, the local sentences with all their attributes and those of their
+     * subterms, and the fingerprints of the imports of the given module.
+     */
+    synchronized String fingerprint(Module module) {
+        if (fingerprints == null) {
+            fingerprints = new IdentityHashMap<>();
+        }
+        String fingerprint = fingerprints.get(module);
+        if (fingerprint == null) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            putString(hasher, module.name());
+            putString(hasher, canonical(module.att()));
+            for (String s : stream(module.imports()).map(this::fingerprint).sorted().collect(Collectors.toList())) {
+                putString(hasher, s);
+            }
+            hasher.putChar('\0');
+            for (String s : stream(module.localSentences()).map(CompilationCache::canonical).sorted().collect(Collectors.toList())) {
+                putString(hasher, s);
+            }
+            fingerprint = hasher.hash().toString();
+            fingerprints.put(module, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static void putString(Hasher hasher, String s) {
+        hasher.putInt(s.length()).putString(s, StandardCharsets.UTF_8);
+    }
+
+    private static String canonical(Sentence sentence) {
+        StringBuilder sb = new StringBuilder();
+        if (sentence instanceof Production) {
+            Production p = (Production) sentence;
+            sb.append("Production(").append(p.sort().name());
+            for (ProductionItem item : iterable(p.items())) {
+                sb.append(',').append(item.getClass().getSimpleName());
+                append(sb, item.toString());
+            }
+        } else if (sentence instanceof Rule) {
+            Rule r = (Rule) sentence;
+            sb.append("Rule(");
+            append(sb, r.body());
+            append(sb, r.requires());
+            append(sb, r.ensures());
+        } else if (sentence instanceof Context) {
+            Context c = (Context) sentence;
+            sb.append("Context(");
+            append(sb, c.body());
+            append(sb, c.requires());
+        } else if (sentence instanceof Configuration) {
+            Configuration c = (Configuration) sentence;
+            sb.append("Configuration(");
+            append(sb, c.body());
+            append(sb, c.ensures());
+        } else {
+            sb.append(sentence.getClass().getName()).append('(');
+            append(sb, sentence.toString());
+        }
+        sb.append(')');
+        append(sb, sentence.att());
+        return sb.toString();
+    }
+
+    private static String canonical(Att att) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, att);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, Att att) {
+        List<String> entries = stream(att.att()).map(k -> {
+            StringBuilder entry = new StringBuilder();
+            append(entry, k);
+            return entry.toString();
+        }).sorted().collect(Collectors.toList());
+        sb.append('[');
+        entries.forEach(sb::append);
+        sb.append(']');
+    }
+
+    private static void append(StringBuilder sb, K k) {
+        if (k instanceof KApply) {
+            sb.append("KApply(");
+            append(sb, ((KApply) k).klabel().name());
+            ((KApply) k).klist().items().forEach(item -> append(sb, item));
+        } else if (k instanceof KToken) {
+            sb.append("KToken(");
+            append(sb, ((KToken) k).s());
+            append(sb, ((KToken) k).sort().name());
+        } else if (k instanceof KVariable) {
+            sb.append("KVariable(");
+            append(sb, ((KVariable) k).name());
+        } else if (k instanceof KSequence) {
+            sb.append("KSequence(");
+            ((KSequence) k).items().forEach(item -> append(sb, item));
+        } else if (k instanceof KRewrite) {
+            sb.append("KRewrite(");
+            append(sb, ((KRewrite) k).left());
+            append(sb, ((KRewrite) k).right());
+        } else if (k instanceof InjectedKLabel) {
+            sb.append("InjectedKLabel(");
+            append(sb, ((InjectedKLabel) k).klabel().name());
+        } else {
+            sb.append(k.getClass().getName()).append('(');
+            append(sb, k.toString());
+        }
+        sb.append(')');
+        append(sb, k.att());
+    }
+
+    /* length-prefixed, so that the concatenation of the strings is unambiguous */
+    private static void append(StringBuilder sb, String s) {
+        sb.append(s.length()).append(':').append(s);
+    }
+}
@@ -47,6 +47,12 @@ import java.util.stream.Stream;
  */
 
 public class CompiledDefinition implements Serializable {
+    /**
+     * Names of the sections of compiled.bin, which is a {@link org.kframework.utils.KompiledArchive}.
+     */
+    public static final String KOMPILE_OPTIONS_SECTION = "kompileOptions";
+    public static final String DEFINITION_SECTION = "compiledDefinition";
+
     public final KompileOptions kompileOptions;
     private final Definition parsedDefinition;
     public final Definition kompiledDefinition;
@@ -34,8 +34,6 @@ import scala.collection.Set;
 import scala.util.Either;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,7 +54,7 @@ import static org.kframework.kore.KORE.*;
  */
 public class DefinitionParsing {
     public static final Sort START_SYMBOL = Sort("RuleContent");
-    private final File cacheFile;
+    private final File cacheDirectory;
     private boolean autoImportDomains;
 
     private final KExceptionManager kem;
@@ -75,13 +73,13 @@ public class DefinitionParsing {
             KExceptionManager kem,
             ParserUtils parser,
             boolean cacheParses,
-            File cacheFile,
+            File cacheDirectory,
             boolean autoImportDomains) {
         this.lookupDirectories = lookupDirectories;
         this.kem = kem;
         this.parser = parser;
         this.cacheParses = cacheParses;
-        this.cacheFile = cacheFile;
+        this.cacheDirectory = cacheDirectory;
         this.autoImportDomains = autoImportDomains;
         this.loader = new BinaryLoader(this.kem);
         this.isStrict = isStrict;
@@ -103,16 +101,7 @@ public class DefinitionParsing {
         Module module = modules.iterator().next();
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
-
-        if (cacheParses) {
-            try {
-                caches = loader.load(Map.class, cacheFile);
-            } catch (FileNotFoundException e) {
-            } catch (IOException | ClassNotFoundException e) {
-                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
-            }
-        }
+        caches = new ParseCacheStore(cacheDirectory, isStrict, cacheParses, loader, kem);
 
         ResolveConfig resolveConfig = new ResolveConfig(definition.getParsedDefinition(), isStrict, this::parseBubble, this::getParser);
         Module modWithConfig = resolveConfig.apply(module);
@@ -130,9 +119,7 @@ public class DefinitionParsing {
     }
 
     private void saveCaches() {
-        if (cacheParses) {
-            loader.saveOrDie(cacheFile, caches);
-        }
+        caches.save();
     }
 
     public Definition parseDefinitionAndResolveBubbles(File definitionFile, String mainModuleName, String mainProgramsModule) {
@@ -184,16 +171,7 @@ public class DefinitionParsing {
         }
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
-
-        if (cacheParses) {
-            try {
-                caches = loader.load(Map.class, cacheFile);
-            } catch (FileNotFoundException e) {
-            } catch (IOException | ClassNotFoundException e) {
-                kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
-            }
-        }
+        caches = new ParseCacheStore(cacheDirectory, isStrict, cacheParses, loader, kem);
 
         ResolveConfig resolveConfig = new ResolveConfig(definitionWithConfigBubble, isStrict, this::parseBubble, this::getParser);
         gen = new RuleGrammarGenerator(definitionWithConfigBubble, isStrict);
@@ -202,7 +180,7 @@ public class DefinitionParsing {
         return defWithConfig;
     }
 
-    Map<String, ParseCache> caches;
+    ParseCacheStore caches;
     private java.util.Set<KEMException> errors;
     RuleGrammarGenerator gen;
 
@@ -292,20 +270,7 @@ public class DefinitionParsing {
     }
 
     private ParseCache loadCache(Module parser) {
-        ParseCache cachedParser = caches.get(parser.name());
-        if (cachedParser == null || !equalsSyntax(cachedParser.getModule(), parser) || cachedParser.isStrict() != isStrict) {
-            cachedParser = new ParseCache(parser, isStrict, java.util.Collections.synchronizedMap(new HashMap<>()));
-            caches.put(parser.name(), cachedParser);
-        }
-        return cachedParser;
-    }
-
-    private boolean equalsSyntax(Module _this, Module that) {
-        if (!_this.productions().equals(that.productions())) return false;
-        if (!_this.priorities().equals(that.priorities())) return false;
-        if (!_this.leftAssoc().equals(that.leftAssoc())) return false;
-        if (!_this.rightAssoc().equals(that.rightAssoc())) return false;
-        return _this.sortDeclarations().equals(that.sortDeclarations());
+        return caches.get(parser);
     }
 
     private Stream<? extends K> parseBubble(Module module, Bubble b) {
@@ -34,6 +34,7 @@ import org.kframework.kore.compile.checks.CheckStreams;
 import org.kframework.main.GlobalOptions;
 import org.kframework.parser.concrete2kore.ParserUtils;
 import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
+import org.kframework.utils.BinaryLoader;
 import org.kframework.utils.Stopwatch;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
@@ -42,6 +43,8 @@ import org.kframework.utils.file.JarInfo;
 import scala.Function1;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -65,6 +68,10 @@ public class Kompile {
     private final ParserUtils parser;
     private final Stopwatch sw;
     private final DefinitionParsing definitionParsing;
+    private final boolean cacheCompilation;
+    private final File compilationCacheFile;
+    private final BinaryLoader loader;
+    private CompilationCache compilationCache;
     java.util.Set<KEMException> errors;
 
     public Kompile(KompileOptions kompileOptions, FileUtil files, KExceptionManager kem, Stopwatch sw, boolean cacheParses) {
@@ -93,8 +100,11 @@ public class Kompile {
         List<File> lookupDirectories = kompileOptions.outerParsing.includes.stream().map(files::resolveWorkingDirectory).collect(Collectors.toList());
         this.definitionParsing = new DefinitionParsing(
                 lookupDirectories, kompileOptions.strict(), kem,
-                parser, cacheParses, files.resolveKompiled("cache.bin"), !kompileOptions.outerParsing.noPrelude);
+                parser, cacheParses, files.resolveKompiled("cache"), !kompileOptions.outerParsing.noPrelude);
         this.sw = sw;
+        this.cacheCompilation = cacheParses;
+        this.compilationCacheFile = files.resolveKompiled("compilation-cache.bin");
+        this.loader = new BinaryLoader(kem);
     }
 
     public CompiledDefinition run(File definitionFile, String mainModuleName, String mainProgramsModuleName) {
@@ -116,14 +126,33 @@ public class Kompile {
 
         checkDefinition(parsedDef);
 
+        compilationCache = loadCompilationCache();
         Definition kompiledDefinition = pipeline.apply(parsedDef);
-        sw.printIntermediate("Apply compile pipeline");
+        if (compilationCache != null) {
+            sw.printIntermediate("Apply compile pipeline [" + compilationCache.summary() + "]");
+            loader.saveOrDie(compilationCacheFile, compilationCache);
+        } else {
+            sw.printIntermediate("Apply compile pipeline");
+        }
 
         ConfigurationInfoFromModule configInfo = new ConfigurationInfoFromModule(kompiledDefinition.mainModule());
 
         return new CompiledDefinition(kompileOptions, parsedDef, kompiledDefinition, configInfo.getDefaultCell(configInfo.topCell()).klabel());
     }
 
+    private CompilationCache loadCompilationCache() {
+        if (!cacheCompilation) {
+            return null;
+        }
+        try {
+            return loader.load(CompilationCache.class, compilationCacheFile);
+        } catch (FileNotFoundException e) {
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            kem.registerInternalHiddenWarning("Invalidating serialized compilation cache due to corruption.", e);
+        }
+        return new CompilationCache();
+    }
+
     public Definition parseDefinition(File definitionFile, String mainModuleName, String mainProgramsModule) {
         return definitionParsing.parseDefinitionAndResolveBubbles(definitionFile, mainModuleName, mainProgramsModule);
     }
@@ -133,28 +162,56 @@ public class Kompile {
     }
 
     public Function<Definition, Definition> defaultSteps() {
-        DefinitionTransformer convertStrictToContexts = DefinitionTransformer.from(new ResolveStrict(kompileOptions)::resolve, "resolving strict and seqstrict attributes");
-        DefinitionTransformer resolveHeatCoolAttribute = DefinitionTransformer.fromSentenceTransformer(new ResolveHeatCoolAttribute(new HashSet<>(kompileOptions.transition))::resolve, "resolving heat and cool attributes");
-        DefinitionTransformer convertAnonVarsToNamedVars = DefinitionTransformer.fromSentenceTransformer(new ResolveAnonVar()::resolve, "resolving \"_\" vars");
-        DefinitionTransformer resolveSemanticCasts =
-                DefinitionTransformer.fromSentenceTransformer(new ResolveSemanticCasts(kompileOptions.backend.equals(Backends.JAVA))::resolve, "resolving semantic casts");
-        DefinitionTransformer generateSortPredicateSyntax = DefinitionTransformer.from(new GenerateSortPredicateSyntax()::gen, "adding sort predicate productions");
-
-        return def -> asScalaFunc(this::resolveIOStreams)
-                .andThen(convertStrictToContexts)
-                .andThen(convertAnonVarsToNamedVars)
-                .andThen(d -> new ConvertContextsToHeatCoolRules(kompileOptions).resolve(d))
-                .andThen(resolveHeatCoolAttribute)
-                .andThen(resolveSemanticCasts)
-                .andThen(generateSortPredicateSyntax)
-                .andThen(this::resolveFreshConstants)
-                .andThen(AddImplicitComputationCell::transformDefinition)
-                .andThen(new Strategy(kompileOptions.experimental.heatCoolStrategies).addStrategyCellToRulesTransformer())
-                .andThen(ConcretizeCells::transformDefinition)
-                .andThen(this::addSemanticsModule)
+        DefinitionTransformer convertStrictToContexts = parallelize(DefinitionTransformer.from(new ResolveStrict(kompileOptions)::resolve, "resolving strict and seqstrict attributes"));
+        DefinitionTransformer resolveHeatCoolAttribute = parallelize(DefinitionTransformer.fromSentenceTransformer(new ResolveHeatCoolAttribute(new HashSet<>(kompileOptions.transition))::resolve, "resolving heat and cool attributes"));
+        // the resolvers below keep per-sentence state, so each sentence gets its own resolver, with or without
+        // --parallel-passes, and the result does not depend on the order in which the sentences are resolved
+        DefinitionTransformer convertAnonVarsToNamedVars = parallelize(DefinitionTransformer.fromSentenceTransformer((Sentence s) -> new ResolveAnonVar().resolve(s), "resolving \"_\" vars"));
+        boolean skipSortPredicates = kompileOptions.backend.equals(Backends.JAVA);
+        DefinitionTransformer resolveSemanticCasts = parallelize(DefinitionTransformer.fromSentenceTransformer((Sentence s) -> new ResolveSemanticCasts(skipSortPredicates).resolve(s), "resolving semantic casts"));
+        DefinitionTransformer generateSortPredicateSyntax = parallelize(DefinitionTransformer.from(new GenerateSortPredicateSyntax()::gen, "adding sort predicate productions"));
+
+        // the passes below which are cached only depend on the module they transform and on the parameters in their key
+        return def -> timed("resolving io streams", this::resolveIOStreams)
+                .andThen(timed("resolving strict and seqstrict attributes",
+                        cached("resolving strict and seqstrict attributes, strict=" + kompileOptions.strict(), convertStrictToContexts)))
+                .andThen(timed("resolving \"_\" vars", cached("resolving \"_\" vars", convertAnonVarsToNamedVars)))
+                .andThen(timed("converting contexts to heat/cool rules", d -> new ConvertContextsToHeatCoolRules(kompileOptions).resolve(d)))
+                .andThen(timed("resolving heat and cool attributes",
+                        cached("resolving heat and cool attributes, transitions=" + kompileOptions.transition, resolveHeatCoolAttribute)))
+                .andThen(timed("resolving semantic casts",
+                        cached("resolving semantic casts, skipSortPredicates=" + skipSortPredicates, resolveSemanticCasts)))
+                .andThen(timed("adding sort predicate productions", cached("adding sort predicate productions", generateSortPredicateSyntax)))
+                .andThen(timed("resolving !Var variables", this::resolveFreshConstants))
+                .andThen(timed("adding implicit computation cell", AddImplicitComputationCell::transformDefinition))
+                .andThen(timed("adding strategy cell", new Strategy(kompileOptions.experimental.heatCoolStrategies).addStrategyCellToRulesTransformer()))
+                .andThen(timed("concretizing configuration", ConcretizeCells::transformDefinition))
+                .andThen(timed("adding semantics module", this::addSemanticsModule))
                 .apply(def);
     }
 
+    /**
+     * Caches the results of a module-local pass across runs of kompile; see {@link CompilationCache}.
+     */
+    private Function1<Definition, Definition> cached(String key, DefinitionTransformer transformer) {
+        return compilationCache != null ? compilationCache.cached(key, transformer) : transformer;
+    }
+
+    private DefinitionTransformer parallelize(DefinitionTransformer transformer) {
+        return kompileOptions.experimental.parallelPasses ? transformer.inParallel() : transformer;
+    }
+
+    /**
+     * Wraps a compilation pass so that its running time is reported by the {@link Stopwatch} (under {@code --verbose}).
+     */
+    private Function1<Definition, Definition> timed(String name, Function1<Definition, Definition> pass) {
+        return d -> {
+            Definition result = pass.apply(d);
+            sw.printIntermediate("  " + name);
+            return result;
+        };
+    }
+
     public Rule parseAndCompileRule(CompiledDefinition compiledDef, String contents, Source source, Optional<Rule> parsedRule) {
         Rule parsed = parsedRule.orElse(parseRule(compiledDef, contents, source));
         return compileRule(compiledDef, parsed);
@@ -201,7 +258,8 @@ public class Kompile {
     }
 
     public Definition resolveFreshConstants(Definition input) {
-        return DefinitionTransformer.from(new ResolveFreshConstants(input)::resolve, "resolving !Var variables")
+        // ResolveFreshConstants keeps per-sentence state, so each module gets its own resolver
+        return parallelize(DefinitionTransformer.from((Module m) -> new ResolveFreshConstants(input).resolve(m), "resolving !Var variables"))
                 .apply(input);
     }
 
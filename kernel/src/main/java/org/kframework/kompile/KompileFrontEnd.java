@@ -1,6 +1,7 @@
 // Copyright (c) 2013-2016 K Team. All Rights Reserved.
 package org.kframework.kompile;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.Module;
 import com.google.inject.Provider;
@@ -67,7 +68,9 @@ public class KompileFrontEnd extends FrontEnd {
 
         Kompile kompile = new Kompile(options, files, kem, sw);
         CompiledDefinition def = kompile.run(options.outerParsing.mainDefinitionFile(files), options.mainModule(files), options.syntaxModule(files), koreBackend.get().steps(kompile));
-        loader.saveOrDie(files.resolveKompiled("compiled.bin"), def);
+        loader.saveArchiveOrDie(files.resolveKompiled("compiled.bin"), ImmutableMap.of(
+                CompiledDefinition.KOMPILE_OPTIONS_SECTION, def.kompileOptions,
+                CompiledDefinition.DEFINITION_SECTION, def));
         koreBackend.get().accept(def);
         loader.saveOrDie(files.resolveKompiled("timestamp"), "");
         sw.printIntermediate("Save to disk");
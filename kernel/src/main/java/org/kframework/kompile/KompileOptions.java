@@ -109,5 +109,8 @@ public class KompileOptions implements Serializable {
         @Parameter(names="--legacy-kast", description="Compile with settings based on the old KAST structure")
         public boolean legacyKast = false;
 
+        @Parameter(names="--parallel-passes", description="Transform independent modules, and the sentences of each module, in parallel during compilation.")
+        public boolean parallelPasses = false;
+
     }
 }
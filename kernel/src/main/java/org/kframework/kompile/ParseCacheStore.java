@@ -0,0 +1,193 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.kframework.definition.Module;
+import org.kframework.parser.concrete2kore.ParseCache;
+import org.kframework.utils.BinaryLoader;
+import org.kframework.utils.errorsystem.KEMException;
+import org.kframework.utils.errorsystem.KExceptionManager;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.kframework.Collections.*;
+
+/**
+ * On-disk store of the {@link ParseCache}s of a definition, with one file (shard) per parser module. A shard is
+ * named after its module and a hash of the syntax of the module, so definitions sharing a kompiled directory, or
+ * successive versions of a module, use distinct shards.
+ * <p>
+ * Shards are loaded when their module is first needed, and only the shards to which parses were added are written
+ * back, each one atomically, so concurrent kompiles never read a partially written shard. A shard is written back
+ * merged with the one on disk, under a lock on the directory, so that concurrent kompiles do not lose each other's
+ * parses. Writing back also deletes the shards of previous versions of the modules used, and the single cache file
+ * which preceded the shards.
+ */
+public class ParseCacheStore {
+
+    private final File directory;
+    private final boolean isStrict;
+    private final boolean persistent;
+    private final BinaryLoader loader;
+    private final KExceptionManager kem;
+
+    /* the single cache file, in the kompiled directory, used before the parses were sharded */
+    private static final String LEGACY_CACHE = "cache.bin";
+    private static final String LOCK = ".lock";
+    /* file locks are held by the whole JVM, so stores sharing a directory in one JVM also synchronize on this */
+    private static final Object SAVE_LOCK = new Object();
+
+    /* all the shards used so far, and the last one used for each module name */
+    private final List<Shard> shards = new ArrayList<>();
+    private final Map<String, Shard> shardsByName = new HashMap<>();
+
+    private static final class Shard {
+        private final File file;
+        private final ParseCache cache;
+        /* number of parses in the shard when it was last loaded or saved */
+        private int savedSize;
+
+        private Shard(File file, ParseCache cache) {
+            this.file = file;
+            this.cache = cache;
+            this.savedSize = cache.getCache().size();
+        }
+    }
+
+    /**
+     * @param persistent if false, nothing is loaded from or saved to the directory
+     */
+    public ParseCacheStore(File directory, boolean isStrict, boolean persistent, BinaryLoader loader, KExceptionManager kem) {
+        this.directory = directory;
+        this.isStrict = isStrict;
+        this.persistent = persistent;
+        this.loader = loader;
+        this.kem = kem;
+    }
+
+    /**
+     * Returns the parse cache of the given parser module, loading its shard if necessary.
+     */
+    public synchronized ParseCache get(Module parser) {
+        Shard shard = shardsByName.get(parser.name());
+        if (shard != null && equalsSyntax(shard.cache.getModule(), parser)) {
+            return shard.cache;
+        }
+        File file = shardFile(parser);
+        ParseCache cache = persistent ? load(file, parser) : null;
+        if (cache == null) {
+            cache = new ParseCache(parser, isStrict, java.util.Collections.synchronizedMap(new HashMap<>()));
+        }
+        shard = new Shard(file, cache);
+        shards.add(shard);
+        shardsByName.put(parser.name(), shard);
+        return cache;
+    }
+
+    private ParseCache load(File file, Module parser) {
+        try {
+            ParseCache cache = loader.load(ParseCache.class, file);
+            /* guard against hash collisions */
+            if (cache.isStrict() == isStrict && equalsSyntax(cache.getModule(), parser)) {
+                return cache;
+            }
+        } catch (FileNotFoundException e) {
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            kem.registerInternalHiddenWarning("Invalidating serialized cache " + file + " due to corruption.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Writes back the shards to which parses were added since they were loaded, merged with their current contents
+     * on disk, and deletes the superseded shards of the modules used.
+     */
+    public synchronized void save() {
+        if (!persistent) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw KEMException.criticalError("Could not create directory " + directory);
+        }
+        File lockFile = new File(directory, LOCK);
+        synchronized (SAVE_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                for (Shard shard : shards) {
+                    if (shard.cache.getCache().size() != shard.savedSize) {
+                        ParseCache saved = load(shard.file, shard.cache.getModule());
+                        if (saved != null) {
+                            saved.getCache().forEach(shard.cache.getCache()::putIfAbsent);
+                        }
+                        loader.saveAtomicallyOrDie(shard.file, shard.cache);
+                        shard.savedSize = shard.cache.getCache().size();
+                    }
+                }
+                deleteSupersededShards();
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not lock " + lockFile, e);
+            }
+        }
+    }
+
+    private void deleteSupersededShards() {
+        Set<File> used = new HashSet<>();
+        for (Shard shard : shards) {
+            used.add(shard.file.getAbsoluteFile());
+        }
+        for (String name : shardsByName.keySet()) {
+            Pattern shardName = Pattern.compile(Pattern.quote(fileName(name)) + "-[0-9a-f]{16}\\.bin");
+            File[] files = directory.listFiles((dir, file) -> shardName.matcher(file).matches());
+            if (files != null) {
+                for (File file : files) {
+                    if (!used.contains(file.getAbsoluteFile())) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+        new File(directory.getAbsoluteFile().getParentFile(), LEGACY_CACHE).delete();
+    }
+
+    private File shardFile(Module parser) {
+        Hasher hasher = Hashing.sha256().newHasher().putBoolean(isStrict);
+        Stream.of(
+                stream(parser.productions()).map(Object::toString).sorted(),
+                stream(parser.leftAssoc()).map(Object::toString).sorted(),
+                stream(parser.rightAssoc()).map(Object::toString).sorted(),
+                stream(parser.sortDeclarations()).map(Object::toString).sorted(),
+                Stream.of(parser.priorities().toString()))
+                .forEach(strings -> {
+                    strings.forEach(s -> hasher.putString(s, StandardCharsets.UTF_8).putChar('\n'));
+                    hasher.putChar('\0');
+                });
+        return new File(directory, fileName(parser.name()) + "-" + hasher.hash().toString().substring(0, 16) + ".bin");
+    }
+
+    private static String fileName(String moduleName) {
+        return moduleName.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    static boolean equalsSyntax(Module _this, Module that) {
+        if (!_this.productions().equals(that.productions())) return false;
+        if (!_this.priorities().equals(that.priorities())) return false;
+        if (!_this.leftAssoc().equals(that.leftAssoc())) return false;
+        if (!_this.rightAssoc().equals(that.rightAssoc())) return false;
+        return _this.sortDeclarations().equals(that.sortDeclarations());
+    }
+}
@@ -17,8 +17,11 @@ public class ResolveAnonVar {
 
     private Set<KVariable> vars = new HashSet<>();
 
+    // the anonymous variables of each sentence are numbered from _0, so that their names do not depend on the
+    // order in which sentences and modules are resolved, which the compilation cache relies on
     void resetVars() {
         vars.clear();
+        counter = 0;
     }
 
     private Rule resolve(Rule rule) {
@@ -1,6 +1,7 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.krun;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.kframework.attributes.Source;
 import org.kframework.builtin.Sorts;
@@ -33,10 +34,15 @@ import org.kframework.utils.errorsystem.ParseFailedException;
 import org.kframework.utils.file.FileUtil;
 import scala.Tuple2;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -82,37 +88,40 @@ public class KRun {
 
 
         Rewriter rewriter = rewriterGenerator.apply(compiledDef.executionModule());
-
-        Object result = executionMode.execute(program, rewriter, compiledDef);
-
-        if (result instanceof K) {
-            prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) result);
-            if (options.exitCodePattern != null) {
-                Rule exitCodePattern = compilePattern(files, kem, options.exitCodePattern, options, compiledDef, Source.apply("<command line: --exit-code>"));
-                List<? extends Map<? extends KVariable, ? extends K>> res = rewriter.match((K) result, exitCodePattern);
-                return getExitCode(kem, res);
-            }
-        } else if (result instanceof Tuple2) {
-            Tuple2<?, ?> tuple = (Tuple2<?, ?>) result;
-            if (tuple._1() instanceof K && tuple._2() instanceof Integer) {
-                prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) tuple._1());
-                return (Integer) tuple._2();
-            }
-            if (tuple._1() instanceof SearchResult && tuple._2() instanceof Integer) {
-                printSearchResult((SearchResult) tuple._1(), options, compiledDef);
-                return (Integer) tuple._2();
+        try {
+            Object result = executionMode.execute(program, rewriter, compiledDef);
+
+            if (result instanceof K) {
+                printResult(compiledDef, (K) result, options);
+                if (options.exitCodePattern != null) {
+                    Rule exitCodePattern = compilePattern(files, kem, options.exitCodePattern, options, compiledDef, Source.apply("<command line: --exit-code>"));
+                    List<? extends Map<? extends KVariable, ? extends K>> res = rewriter.match((K) result, exitCodePattern);
+                    return getExitCode(kem, res);
+                }
+            } else if (result instanceof Tuple2) {
+                Tuple2<?, ?> tuple = (Tuple2<?, ?>) result;
+                if (tuple._1() instanceof K && tuple._2() instanceof Integer) {
+                    printResult(compiledDef, (K) tuple._1(), options);
+                    return (Integer) tuple._2();
+                }
+                if (tuple._1() instanceof SearchResult && tuple._2() instanceof Integer) {
+                    printSearchResult((SearchResult) tuple._1(), options, compiledDef);
+                    return (Integer) tuple._2();
+                }
+            } else if (result instanceof SearchResult) {
+                printSearchResult((SearchResult) result, options, compiledDef);
+                return 0;
+            } else if (options.experimental.prove != null) {
+                if (((List) result).isEmpty()) {
+                    System.out.println("true");
+                }
+            } else if (result instanceof Integer) {
+                return (Integer) result;
             }
-        } else if (result instanceof SearchResult) {
-            printSearchResult((SearchResult) result, options, compiledDef);
             return 0;
-        } else if (options.experimental.prove != null) {
-            if (((List) result).isEmpty()) {
-                System.out.println("true");
-            }
-        } else if (result instanceof Integer) {
-            return (Integer) result;
+        } finally {
+            rewriter.close();
         }
-        return 0;
     }
 
     private void printSearchResult(SearchResult result, KRunOptions options, CompiledDefinition compiledDef) {
@@ -172,6 +181,31 @@ public class KRun {
         return vars.iterator().next();
     }
 
+    private void printResult(CompiledDefinition compiledDef, K result, KRunOptions options) {
+        if (options.output == OutputModes.BINARY) {
+            outputBinary(result, options);
+        } else {
+            prettyPrint(compiledDef, options.output, s -> outputFile(s, options), result);
+        }
+    }
+
+    /**
+     * Writes the term in the KAST binary format directly to the output, without building its encoding in memory.
+     */
+    public void outputBinary(K result, KRunOptions options) {
+        if (options.outputFile == null) {
+            ToBinary.apply(System.out, result);
+            System.out.flush();
+        } else {
+            File file = files.resolveWorkingDirectory(options.outputFile);
+            try (OutputStream out = new FileOutputStream(file)) {
+                ToBinary.apply(out, result);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write to " + file, e);
+            }
+        }
+    }
+
     //TODO(dwightguth): use Writer
     public void outputFile(String output, KRunOptions options) {
         outputFile(output.getBytes(), options);
@@ -366,18 +400,33 @@ public class KRun {
         Map<String, String> environment = new HashMap<>();
         environment.put("KRUN_SORT", startSymbol.name());
         environment.put("KRUN_COMPILED_DEF", files.resolveDefinitionDirectory(".").getAbsolutePath());
-        RunProcess.ProcessOutput output = RunProcess.execute(environment, files.getProcessBuilder(), tokens.toArray(new String[tokens.size()]));
+        RunProcess.StreamedOutput<K> output = RunProcess.execute(environment, files.getProcessBuilder(),
+                in -> parseKast(in, source), tokens.toArray(new String[tokens.size()]));
 
         if (output.exitCode != 0) {
             throw new ParseFailedException(new KException(KException.ExceptionType.ERROR, KException.KExceptionGroup.CRITICAL, "Parser returned a non-zero exit code: "
-                    + output.exitCode + "\nStdout:\n" + new String(output.stdout) + "\nStderr:\n" + new String(output.stderr)));
+                    + output.exitCode + "\nStderr:\n" + new String(output.stderr)));
         }
+        return output.stdout;
+    }
 
-        byte[] kast = output.stdout != null ? output.stdout : new byte[0];
-        if (BinaryParser.isBinaryKast(kast)) {
-            return BinaryParser.parse(kast);
-        } else {
-            return KoreParser.parse(new String(kast), source);
+    /**
+     * Parses the output of an external parser, streaming it if it is in the KAST binary format.
+     */
+    private static K parseKast(InputStream in, Source source) {
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            buffered.mark(5);
+            byte[] magic = new byte[5];
+            int read = IOUtils.read(buffered, magic);
+            buffered.reset();
+            if (read == magic.length && BinaryParser.isBinaryKast(magic)) {
+                return BinaryParser.parse(buffered);
+            } else {
+                return KoreParser.parse(new String(IOUtils.toByteArray(buffered)), source);
+            }
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read the output of the parser", e);
         }
     }
 }
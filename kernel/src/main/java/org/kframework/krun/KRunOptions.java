@@ -255,6 +255,16 @@ public final class KRunOptions {
             return debugger;
         }
 
+        @Parameter(names="--debugger-checkpoint-budget", description="Maximum number of checkpoints the debugger keeps in memory " +
+                "for each state, or 0 for no maximum. When it is exceeded, older checkpoints are spilled to disk if " +
+                "--debugger-spill-checkpoints is on, otherwise half of the checkpoints of the state are discarded and its " +
+                "checkpoint interval is doubled.")
+        public int debuggerCheckpointBudget = 0;
+
+        @Parameter(names="--debugger-spill-checkpoints", description="Spill older checkpoints of the debugger to disk " +
+                "in KAST binary format instead of discarding them.")
+        public boolean debuggerSpillCheckpoints = false;
+
         @Parameter(names="--ltlmc", description="Specify the formula for model checking at the commandline.")
         public String ltlmc;
 
@@ -274,7 +284,7 @@ public final class KRunOptions {
         @Parameter(names="--trace", description="Print a trace of every rule applied.")
         public boolean trace = false;
 
-        @Parameter(names="--coverage-file", description="Record a trace of locations of all rules and terms applied.")
+        @Parameter(names="--coverage-file", description="Count the applications of each rule, by location, and add the counts to those already in the given file.")
         public File coverage = null;
 
         @Parameter(names="--native-libraries", description="Native libraries to link the rewrite engine against. Useful in defining rewriter plugins.",
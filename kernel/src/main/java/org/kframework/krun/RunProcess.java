@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 // instantiate processes
@@ -46,8 +47,65 @@ public class RunProcess {
         }
     }
 
+    public static class StreamedOutput<T> {
+        public final T stdout;
+        public final byte[] stderr;
+        public final int exitCode;
+
+        public StreamedOutput(T stdout, byte[] stderr, int exitCode) {
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.exitCode = exitCode;
+        }
+    }
+
     private RunProcess() {}
 
+    /**
+     * Runs a process like {@link #execute(Map, ProcessBuilder, String...)}, but hands its standard output to
+     * {@code reader} while the process is running instead of collecting it in memory. If the process exits with a
+     * non-zero exit code, the result of the reader is null and any exception it threw is ignored.
+     */
+    public static <T> StreamedOutput<T> execute(Map<String, String> environment, ProcessBuilder pb, Function<InputStream, T> reader, String... commands) {
+        try {
+            if (commands.length <= 0) {
+                throw KEMException.criticalError("Need command options to run");
+            }
+
+            pb = pb.command(commands);
+            pb.environment().putAll(environment);
+            Process process = pb.start();
+
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            PrintStream errWriter = new PrintStream(err);
+            Thread errThread = getOutputStreamThread(process::getErrorStream, errWriter);
+            errThread.start();
+
+            T result = null;
+            RuntimeException failure = null;
+            try (InputStream in = process.getInputStream()) {
+                result = reader.apply(in);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            process.waitFor();
+            errThread.join();
+            errWriter.flush();
+
+            if (process.exitValue() != 0) {
+                return new StreamedOutput<>(null, err.toByteArray(), process.exitValue());
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new StreamedOutput<>(result, err.toByteArray(), process.exitValue());
+
+        } catch (IOException | InterruptedException e) {
+            throw KEMException.criticalError("Error while running process:" + e.getMessage(), e);
+        }
+    }
+
     public static ProcessOutput execute(Map<String, String> environment, ProcessBuilder pb, String... commands) {
 
 
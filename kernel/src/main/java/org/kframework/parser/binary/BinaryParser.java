@@ -1,14 +1,21 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.parser.binary;
 
+import org.apache.commons.io.IOUtils;
 import org.kframework.kore.ADT;
 import org.kframework.kore.K;
 import org.kframework.kore.KLabel;
 import org.kframework.utils.errorsystem.KEMException;
 import scala.collection.immutable.List$;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -50,6 +57,9 @@ import static org.kframework.kore.KORE.*;
  * simply by concatenating the terms together after stripping their MAGIC prefix and suffix. This will not be as
  * space-compact as if the term was outputted all at once, but can be done in constant time without requiring the terms
  * to be modified internally, and will still deserialze correctly.
+ *
+ * Terms can be read from memory, from a memory-mapped file, or incrementally from a channel through a buffer of bounded
+ * size, so that the encoded term never needs to be held in memory as a whole.
  */
 public class BinaryParser {
 
@@ -58,11 +68,71 @@ public class BinaryParser {
     public static final int BEGIN = 0, KTOKEN = 1, KAPPLY = 2, KSEQUENCE = 3, KVARIABLE = 4, KREWRITE = 5,
             INJECTEDKLABEL = 6, END = 7;
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private final ByteBuffer data;
+    private final ReadableByteChannel channel;
+    /* the stream read by channel if it supports mark, so that the bytes read past the term can be given back */
+    private final InputStream markedStream;
+    /* the number of bytes read by the last refill */
+    private int refilled;
     private final List<String> interns = new ArrayList<>();
 
-    private BinaryParser(ByteBuffer data) {
+    /**
+     * @param data         the bytes to parse, or the buffer into which bytes are read from {@code channel}
+     * @param channel      the channel to refill {@code data} from, or null if {@code data} contains the whole term
+     * @param markedStream the stream read by {@code channel}, marked before each refill, or null
+     */
+    private BinaryParser(ByteBuffer data, ReadableByteChannel channel, InputStream markedStream) {
         this.data = data;
+        this.channel = channel;
+        this.markedStream = markedStream;
+    }
+
+    /**
+     * Ensures that at least {@code n} bytes can be read from the buffer, refilling it from the channel if needed.
+     * Each refill reads as many bytes as the channel provides, up to the capacity of the buffer.
+     */
+    private void require(int n) throws IOException {
+        if (data.remaining() >= n || channel == null) {
+            return;
+        }
+        data.compact();
+        if (markedStream != null) {
+            markedStream.mark(data.remaining());
+        }
+        int start = data.position();
+        try {
+            while (data.position() < n) {
+                if (channel.read(data) < 0) {
+                    throw KEMException.criticalError("Unexpected end of KAST binary term.");
+                }
+            }
+        } finally {
+            refilled = data.position() - start;
+            data.flip();
+        }
+    }
+
+    /**
+     * Gives the bytes read past the end of the term back to the marked stream, by resetting it to the beginning of
+     * the last refill and skipping the bytes of that refill which belong to the term.
+     */
+    private void unreadRemaining() throws IOException {
+        if (markedStream != null && data.hasRemaining()) {
+            markedStream.reset();
+            IOUtils.skipFully(markedStream, refilled - data.remaining());
+        }
+    }
+
+    private byte getByte() throws IOException {
+        require(1);
+        return data.get();
+    }
+
+    private int getInt() throws IOException {
+        require(4);
+        return data.getInt();
     }
 
     private K read400() throws IOException {
@@ -70,7 +140,7 @@ public class BinaryParser {
         Deque<K> stack = new ArrayDeque<>();
         int type = 0;
         while(type != END) {
-            type = data.get();
+            type = getByte();
             scala.collection.immutable.List<K> items;
             int arity;
             switch (type) {
@@ -79,7 +149,7 @@ public class BinaryParser {
                 break;
             case KAPPLY:
                 KLabel lbl = readKLabel();
-                arity = data.getInt();
+                arity = getInt();
                 items = List$.MODULE$.<K>empty();
                 for (int i = 0; i < arity; i++) {
                     items = items.$colon$colon(stack.pop());
@@ -87,7 +157,7 @@ public class BinaryParser {
                 stack.push(KApply(lbl, KList(items)));
                 break;
             case KSEQUENCE:
-                arity = data.getInt();
+                arity = getInt();
                 items = List$.MODULE$.<K>empty();
                 for (int i = 0; i < arity; i++) {
                     items = items.$colon$colon(stack.pop());
@@ -116,18 +186,22 @@ public class BinaryParser {
 
     private KLabel readKLabel() throws IOException {
         String lbl = readString();
-        if (data.get() != 0)
+        if (getByte() != 0)
             return KVariable(lbl);
         return KLabel(lbl);
     }
 
     private String readString() throws IOException {
-        int idx = data.getInt();
+        int idx = getInt();
         if (idx == 0) {
-            int len = data.getInt();
+            int len = getInt();
             char[] buf = new char[len];
-            for (int i = 0; i < len; i++) {
-                buf[i] = data.getChar();
+            for (int i = 0; i < len; ) {
+                int chunk = Math.min(len - i, BUFFER_SIZE / 2);
+                require(2 * chunk);
+                for (int j = 0; j < chunk; j++) {
+                    buf[i++] = data.getChar();
+                }
             }
             String s = new String(buf);
             interns.add(s);
@@ -147,21 +221,68 @@ public class BinaryParser {
 
     public static K parse(ByteBuffer data) {
         try {
-            byte[] magic = new byte[5];
-            data.get(magic);
-            if (!Arrays.equals(magic, MAGIC)) {
-                throw KEMException.compilerError("Reading binary data from input source which is not a KAST term.");
-            }
-            int major = data.get();
-            int minor = data.get();
-            int build = data.get();
-            if (major == 4 && minor == 0 && build == 0) {
-                return new BinaryParser(data).read400();
-            } else {
-                throw KEMException.compilerError("Unsupported version of KAST binary file: " + major + "." + minor + "." + build);
-            }
+            return new BinaryParser(data, null, null).read();
         } catch (IOException e) {
             throw KEMException.criticalError("Could not read K term from binary", e);
         }
     }
+
+    /**
+     * Parses a term read incrementally from the given channel, which is left open. The channel is read ahead in
+     * blocks of up to 64KB, so the bytes following the term in the channel may have been consumed.
+     */
+    public static K parse(ReadableByteChannel channel) {
+        return parse(channel, null);
+    }
+
+    /**
+     * Parses a term read incrementally from the given stream, which is left open. If the stream supports
+     * {@link InputStream#mark}, as a {@link java.io.BufferedInputStream} does, it is left positioned right after the
+     * end of the term, so that the caller can read what follows (e.g. another term); otherwise, the bytes following
+     * the term may have been consumed, as with {@link #parse(ReadableByteChannel)}.
+     */
+    public static K parse(InputStream in) {
+        return parse(Channels.newChannel(in), in.markSupported() ? in : null);
+    }
+
+    private static K parse(ReadableByteChannel channel, InputStream markedStream) {
+        ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+        data.flip();
+        try {
+            BinaryParser parser = new BinaryParser(data, channel, markedStream);
+            K result = parser.read();
+            parser.unreadRemaining();
+            return result;
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read K term from binary", e);
+        }
+    }
+
+    /**
+     * Parses a term from a memory-mapped file, without copying the file into the heap.
+     */
+    public static K parse(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read K term from binary file " + file, e);
+        }
+    }
+
+    private K read() throws IOException {
+        require(MAGIC.length + 3);
+        byte[] magic = new byte[MAGIC.length];
+        data.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw KEMException.compilerError("Reading binary data from input source which is not a KAST term.");
+        }
+        int major = data.get();
+        int minor = data.get();
+        int build = data.get();
+        if (major == 4 && minor == 0 && build == 0) {
+            return read400();
+        } else {
+            throw KEMException.compilerError("Unsupported version of KAST binary file: " + major + "." + minor + "." + build);
+        }
+    }
 }
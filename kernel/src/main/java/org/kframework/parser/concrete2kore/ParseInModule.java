@@ -46,6 +46,8 @@ public class ParseInModule implements Serializable {
     private final Module parsingModule;
     private volatile Grammar grammar = null;
     private final boolean strict;
+    /** Inputs of at least this length are parsed in the streaming mode of the {@link Parser} */
+    private static final int STREAMING_THRESHOLD = 1 << 16;
     public ParseInModule(Module seedModule) {
         this(seedModule, seedModule, seedModule, seedModule, true);
     }
@@ -134,7 +136,7 @@ public class ParseInModule implements Serializable {
             return new Tuple2<>(Left.apply(Sets.newHashSet(new ParseFailedException(kex))), warn);
         }
 
-        Parser parser = new Parser(input, source, startLine, startColumn);
+        Parser parser = new Parser(input, source, startLine, startColumn, input.length() >= STREAMING_THRESHOLD);
         Term parsed;
         try {
             parsed = parser.parse(startSymbolNT, 0);
@@ -61,6 +61,13 @@ public class Grammar implements Serializable {
     /** The set of "root" NonTerminals */
     private BiMap<String, NonTerminal> startNonTerminals = HashBiMap.create();
 
+    /** The scanner for all the {@link RegExState}s of the grammar, created by {@link #compile()} */
+    private TokenScanner scanner;
+
+    public TokenScanner getScanner() {
+        return scanner;
+    }
+
     public boolean add(NonTerminal newNT) {
         if (startNonTerminals.containsKey(newNT.name)) {
             return false;
@@ -161,7 +168,8 @@ public class Grammar implements Serializable {
     static final RunAutomaton pattern = new RunAutomaton(new RegExp("("+ multiLine +"|"+ singleLine +"|"+ whites +")*").toAutomaton(), false);
 
     /**
-     * Calculates Nullability and OrderingInfo for all the states in the grammar.
+     * Calculates Nullability and OrderingInfo for all the states in the grammar,
+     * and builds the {@link TokenScanner} for its terminals.
      * Must be called before being handed over to the parser, but after
      * the grammar is finished being built.
      */
@@ -225,6 +233,15 @@ public class Grammar implements Serializable {
                 state.orderingInfo = new State.OrderingInfo(i);
             }
         }
+
+        // build the scanner for all the terminals
+        List<RegExState> regExStates = new ArrayList<>();
+        for (State state : allStates) {
+            if (state instanceof RegExState) {
+                regExStates.add((RegExState) state);
+            }
+        }
+        scanner = new TokenScanner(regExStates);
     }
 
     /**
@@ -512,6 +529,12 @@ public class Grammar implements Serializable {
         public final RunAutomaton precedePattern;
         public final RunAutomaton followPattern;
 
+        /** The scanner of the grammar, and the indices of the patterns in it, set by {@link Grammar#compile()} */
+        TokenScanner scanner;
+        int patternIndex;
+        int followIndex;
+        int precedeIndex;
+
         public RegExState(String name, NonTerminal nt, RunAutomaton pattern) {
             this(name, nt, new RunAutomaton(BasicAutomata.makeEmpty(), false), pattern, new RunAutomaton(BasicAutomata.makeEmpty(), false));
         }
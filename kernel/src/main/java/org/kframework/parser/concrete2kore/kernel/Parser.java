@@ -58,6 +58,20 @@ import java.util.TreeSet;
  * (preferably in that order) for more information.
  *
  * ----------------
+ * Streaming mode
+ * ----------------
+ *
+ * Every {@link StateReturn} added to the queue ends at or after the end of
+ * the {@link StateReturn} being processed, so the smallest end of the queued
+ * {@link StateReturn}s (the frontier) never decreases. Processing a
+ * {@link StateReturn} only looks up records at or after its end, thus in
+ * streaming mode the parser periodically removes the records before the
+ * frontier from the tables. The records still needed to build the result are
+ * kept alive by the records referring to them, and those of failed parses are
+ * garbage collected, so the size of the tables is proportional to the number
+ * of parses open at the frontier rather than to the size of the input.
+ *
+ * ----------------
  * Terminology
  * ----------------
  *
@@ -100,6 +114,8 @@ public class Parser {
     private static class StateCall {
         /** The {@link Function} storing the AST parsed so far */
         final Function function = Function.empty();
+        /** For a {@link NonTerminalState}, the {@link NonTerminalCall} of its child, set on activation */
+        NonTerminalCall childCall;
 
         private static class Key implements AutoVivifyingBiMap.Create<StateCall> {
             /** The {@link NonTerminalCall} containing this StateCall */
@@ -370,19 +386,43 @@ public class Parser {
     private static class StateReturnWorkList {
         private final HashSet<StateReturn> contains = new HashSet<>();
         private final TreeSet<StateReturn> ordering = new TreeSet<>();
+        // the number of queued or in process state returns ending at each position
+        private final int[] pending;
+        private int frontier = 0;
+
+        StateReturnWorkList(int inputLength) {
+            pending = new int[inputLength + 1];
+        }
+
         public void enqueue(StateReturn stateReturn) {
             if (!contains.add(stateReturn)) return;
             ordering.add(stateReturn);
+            pending[stateReturn.key.stateEnd]++;
         }
         public void addAll(Set<? extends StateReturn> c) {
-            if (!contains.addAll(c)) return;
-            ordering.addAll(c);
+            for (StateReturn stateReturn : c) {
+                enqueue(stateReturn);
+            }
         }
         public StateReturn dequeue() {
             StateReturn next = ordering.pollFirst();
             contains.remove(next);
             return next;
         }
+        /** Marks a dequeued state return as processed */
+        public void done(StateReturn stateReturn) {
+            pending[stateReturn.key.stateEnd]--;
+        }
+        /**
+         * Returns the smallest end of the queued or in process state returns,
+         * or the length of the input plus one if there are none.
+         */
+        public int frontier() {
+            while (frontier < pending.length && pending[frontier] == 0) {
+                frontier++;
+            }
+            return frontier;
+        }
     }
 
     /**
@@ -394,7 +434,7 @@ public class Parser {
         // the reverse input used for precede restrictions
         final String reverseInput;
         // a priority queue containing the return states to be processed
-        final StateReturnWorkList stateReturnWorkList = new StateReturnWorkList();
+        final StateReturnWorkList stateReturnWorkList;
         // a preprocessed correspondence from index to line and column in the input string
         // TODO: replace lines and columns with Location class
         // TODO: extract Location class into it's own file
@@ -403,8 +443,18 @@ public class Parser {
         AutoVivifyingBiMap<NonTerminalCall.Key, NonTerminalCall> ntCalls = new AutoVivifyingBiMap<>();
         AutoVivifyingBiMap<StateCall.Key, StateCall> stateCalls = new AutoVivifyingBiMap<>();
         AutoVivifyingBiMap<StateReturn.Key, StateReturn> stateReturns = new AutoVivifyingBiMap<>();
-
-        public ParseState(String input, int startLine, int startColumn) {
+        // the matches of the terminals of the grammar being parsed, created on first use
+        TokenScanner.Matches matches;
+        // the furthest position at which a primitive state was called, and the regex states called there
+        int furthestPrimitiveBegin = 0;
+        final Set<RegExState> furthestTokens = new HashSet<>();
+        // whether the records before the frontier are removed from the tables
+        final boolean streaming;
+        // the frontier when the tables were last collected, and their size which triggers the next collection
+        int collectedFrontier = 0;
+        int collectThreshold = MIN_COLLECT_THRESHOLD;
+
+        public ParseState(String input, int startLine, int startColumn, boolean streaming) {
             /**
              * Create arrays corresponding to the index in the input CharSequence and the line and
              * column in the text. Tab counts as one.
@@ -415,6 +465,8 @@ public class Parser {
              */
             this.input = input;
             this.reverseInput = new StringBuilder(input).reverse().toString();
+            this.stateReturnWorkList = new StateReturnWorkList(input.length());
+            this.streaming = streaming;
             lines = new int[input.length()+1];
             columns = new int[input.length()+1];
             int l = startLine;
@@ -533,16 +585,27 @@ public class Parser {
 
     ////////////////
 
+    /** The minimum total size of the tables before they are collected in streaming mode */
+    private static final int MIN_COLLECT_THRESHOLD = 1 << 16;
+
     private final ParseState s;
     private final Source source;
 
     public Parser(String input) {
-        s = new ParseState(input, 1, 1);
+        s = new ParseState(input, 1, 1, false);
         this.source = Source.apply("<unknown>");
     }
 
     public Parser(String input, Source source, int startLine, int startColumn) {
-        s = new ParseState(input, startLine, startColumn);
+        this(input, source, startLine, startColumn, false);
+    }
+
+    /**
+     * @param streaming if true, the records of the parser tables which can no longer be looked up are
+     *                  removed during the parse (see the overview above).
+     */
+    public Parser(String input, Source source, int startLine, int startColumn, boolean streaming) {
+        s = new ParseState(input, startLine, startColumn, streaming);
         this.source = source;
     }
 
@@ -554,17 +617,21 @@ public class Parser {
      */
     public Term parse(NonTerminal nt, int position) {
         assert nt != null : "Start symbol cannot be null.";
-        activateStateCall(s.stateCalls.get(new StateCall.Key(s.ntCalls.get(
-            new NonTerminalCall.Key(nt, position)), position, nt.entryState)),
+        NonTerminalCall startCall = s.ntCalls.get(new NonTerminalCall.Key(nt, position));
+        activateStateCall(stateCall(new StateCall.Key(startCall, position, nt.entryState)),
             Function.IDENTITY);
 
         for (StateReturn stateReturn;
              (stateReturn = s.stateReturnWorkList.dequeue()) != null;) {
             this.workListStep(stateReturn);
+            s.stateReturnWorkList.done(stateReturn);
+            if (s.streaming) {
+                collectTables();
+            }
         }
 
         Ambiguity result = Ambiguity.apply(new HashSet<>());
-        for(StateReturn stateReturn : s.ntCalls.get(new NonTerminalCall.Key(nt,position)).exitStateReturns) {
+        for(StateReturn stateReturn : startCall.exitStateReturns) {
             if (stateReturn.key.stateEnd == s.input.length()) {
                 result.items().add(KList.apply(ConsPStack.singleton(Ambiguity.apply(stateReturn.function.values))));
             }
@@ -594,21 +661,49 @@ public class Parser {
      * maximum point in the input string.
      */
     public ParseError getErrors() {
-        int current = 0;
-        for (StateCall.Key key : s.stateCalls.keySet()) {
-            if (key.state instanceof PrimitiveState)
-                current = Math.max(current, key.stateBegin);
-        }
+        int current = s.furthestPrimitiveBegin;
         Set<Pair<Production, RegExState>> tokens = new HashSet<>();
-        for (StateCall.Key key : s.stateCalls.keySet()) {
-            if (key.state instanceof RegExState && key.stateBegin == current) {
-                tokens.add(new ImmutablePair<>(
-                    null, ((RegExState) key.state)));
-            }
+        for (RegExState state : s.furthestTokens) {
+            tokens.add(new ImmutablePair<>(null, state));
         }
         return new ParseError(source, current, s.lines[current], s.columns[current], tokens);
     }
 
+    // retrieves a state call, keeping track of the furthest position at which a primitive state was called
+    private StateCall stateCall(StateCall.Key key) {
+        if (key.state instanceof PrimitiveState && key.stateBegin >= s.furthestPrimitiveBegin) {
+            if (key.stateBegin > s.furthestPrimitiveBegin) {
+                s.furthestPrimitiveBegin = key.stateBegin;
+                s.furthestTokens.clear();
+            }
+            if (key.state instanceof RegExState) {
+                s.furthestTokens.add((RegExState) key.state);
+            }
+        }
+        return s.stateCalls.get(key);
+    }
+
+    // in streaming mode, remove the records before the frontier from the tables once they have doubled in size
+    private void collectTables() {
+        int frontier = s.stateReturnWorkList.frontier();
+        if (frontier <= s.collectedFrontier || frontier > s.input.length()) {
+            return;
+        }
+        int size = s.ntCalls.size() + s.stateCalls.size() + s.stateReturns.size();
+        if (size < s.collectThreshold) {
+            return;
+        }
+        s.ntCalls.removeKeys(key -> key.ntBegin < frontier);
+        s.stateCalls.removeKeys(key -> key.stateBegin < frontier);
+        s.stateReturns.removeKeys(key -> key.stateEnd < frontier);
+        if (s.matches != null) {
+            s.matches.discardBefore(frontier);
+        }
+        s.collectedFrontier = frontier;
+        size = s.ntCalls.size() + s.stateCalls.size() + s.stateReturns.size();
+        s.collectThreshold = Math.max(MIN_COLLECT_THRESHOLD, 2 * size);
+    }
+
     /**
      * Contains the maximum position in the text which the parser managed to recognize.
      */
@@ -647,7 +742,7 @@ public class Parser {
                 }
             } else if (state instanceof NextableState) {
                 for (State nextState : ((NextableState) state).next) {
-                    activateStateCall(s.stateCalls.get(new StateCall.Key(
+                    activateStateCall(stateCall(new StateCall.Key(
                         stateReturn.key.stateCall.key.ntCall, stateReturn.key.stateEnd, nextState)),
                         stateReturn.function);
                 }
@@ -674,13 +769,12 @@ public class Parser {
                     new Rule.MetaData.Location(endPosition, s.lines[endPosition], s.columns[endPosition]),
                     s.input));
         } else if (stateReturn.key.stateCall.key.state instanceof NonTerminalState) {
+            // the child call is not looked up, as its record may have been removed in streaming mode
             return stateReturn.function.addNTCall(
                 stateReturn.key.stateCall.function,
                 s.stateReturns.get(new StateReturn.Key(
-                    s.stateCalls.get(new StateCall.Key(
-                        s.ntCalls.get(new NonTerminalCall.Key(
-                            ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child,
-                            stateReturn.key.stateCall.key.stateBegin)),
+                    stateCall(new StateCall.Key(
+                        stateReturn.key.stateCall.childCall,
                         stateReturn.key.stateEnd,
                         ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child.exitState)),
                     stateReturn.key.stateEnd)).function);
@@ -699,6 +793,17 @@ public class Parser {
             s.stateReturnWorkList.enqueue(
                 s.stateReturns.get(
                     new StateReturn.Key(stateCall, stateCall.key.stateBegin)));
+        } else if (nextState instanceof RegExState && ((RegExState) nextState).scanner != null) {
+            RegExState regExState = (RegExState) nextState;
+            if (s.matches == null) {
+                s.matches = regExState.scanner.new Matches(s.input, s.reverseInput);
+            }
+            int matchEnd = s.matches.matchEnd(regExState, stateCall.key.stateBegin);
+            if (matchEnd != -1) {
+                s.stateReturnWorkList.enqueue(
+                    s.stateReturns.get(
+                        new StateReturn.Key(stateCall, matchEnd)));
+            }
         } else if (nextState instanceof PrimitiveState) {
             for (PrimitiveState.MatchResult matchResult :
                     ((PrimitiveState)nextState).matches(s.input, s.reverseInput, stateCall.key.stateBegin)) {
@@ -712,8 +817,9 @@ public class Parser {
             NonTerminalCall ntCall = s.ntCalls.get(new NonTerminalCall.Key(
                 ((NonTerminalState) nextState).child, stateCall.key.stateBegin));
             ntCall.callers.add(stateCall);
+            stateCall.childCall = ntCall;
             // activate the entry state call (almost like activateStateCall but we have no stateReturn)
-            StateCall entryStateCall = s.stateCalls.get(new StateCall.Key(
+            StateCall entryStateCall = stateCall(new StateCall.Key(
                 ntCall, stateCall.key.stateBegin, ntCall.key.nt.entryState));
             activateStateCall(entryStateCall, Function.IDENTITY);
             // process existStateReturns already done in the ntCall
@@ -0,0 +1,289 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore.kernel;
+
+import dk.brics.automaton.RunAutomaton;
+import org.kframework.parser.concrete2kore.kernel.Grammar.RegExState;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scanner for the terminals of a {@link Grammar}, built once per grammar by {@link Grammar#compile()}.
+ * <p>
+ * The distinct automata of the {@link RegExState}s of the grammar are merged into two automata: one running forward,
+ * for the patterns and the follow restrictions, and one running on the reversed input, for the precede restrictions.
+ * A single run of a merged automaton from a position finds the longest match of every one of its automata at that
+ * position. The states of the merged automata are built lazily, as the inputs require them, and are shared by all
+ * the parses with the grammar.
+ * <p>
+ * The parser asks for the matches of many terminals at the same positions, so each parse memoizes the result of the
+ * runs by position in a {@link Matches}.
+ */
+public class TokenScanner implements Serializable {
+
+    private final Automaton forward;
+    private final Automaton backward;
+
+    /**
+     * Creates a scanner for the given states, and assigns them their indices in the merged automata.
+     */
+    TokenScanner(Collection<RegExState> states) {
+        Map<RunAutomaton, Integer> forwardIndices = new IdentityHashMap<>();
+        Map<RunAutomaton, Integer> backwardIndices = new IdentityHashMap<>();
+        List<RunAutomaton> forwardAutomata = new ArrayList<>();
+        List<RunAutomaton> backwardAutomata = new ArrayList<>();
+        for (RegExState state : states) {
+            state.patternIndex = index(state.pattern, forwardIndices, forwardAutomata);
+            state.followIndex = index(state.followPattern, forwardIndices, forwardAutomata);
+            state.precedeIndex = index(state.precedePattern, backwardIndices, backwardAutomata);
+            state.scanner = this;
+        }
+        this.forward = new Automaton(forwardAutomata.toArray(new RunAutomaton[forwardAutomata.size()]));
+        this.backward = new Automaton(backwardAutomata.toArray(new RunAutomaton[backwardAutomata.size()]));
+    }
+
+    /* returns -1 for the automata which never match */
+    private static int index(RunAutomaton automaton, Map<RunAutomaton, Integer> indices, List<RunAutomaton> automata) {
+        Integer index = indices.get(automaton);
+        if (index == null) {
+            index = -1;
+            for (int state = 0; state < automaton.getSize(); state++) {
+                if (automaton.isAccept(state)) {
+                    index = automata.size();
+                    automata.add(automaton);
+                    break;
+                }
+            }
+            indices.put(automaton, index);
+        }
+        return index;
+    }
+
+    /**
+     * The matches of the terminals of the grammar on one input, memoized by position.
+     */
+    public final class Matches {
+        private final String input;
+        private final String reverseInput;
+        private final int[][] forwardRuns;
+        private final int[][] backwardRuns;
+        private int discarded = 0;
+
+        public Matches(String input, String reverseInput) {
+            this.input = input;
+            this.reverseInput = reverseInput;
+            this.forwardRuns = new int[input.length() + 1][];
+            this.backwardRuns = new int[input.length() + 1][];
+        }
+
+        /**
+         * Returns the end of the match of the given state at the given position, or -1 if it does not match there.
+         * Behaves as {@link RegExState#matches(String, String, int)}.
+         */
+        public int matchEnd(RegExState state, int startPosition) {
+            assert state.scanner == TokenScanner.this;
+            int matchedLength = longestMatch(forwardRuns, forward, input, startPosition, state.patternIndex);
+            if (matchedLength == -1)
+                return -1;
+            if (longestMatch(forwardRuns, forward, input, startPosition + matchedLength, state.followIndex) != -1)
+                return -1;
+            if (longestMatch(backwardRuns, backward, reverseInput, input.length() - startPosition, state.precedeIndex) != -1)
+                return -1;
+            return startPosition + matchedLength;
+        }
+
+        /**
+         * Drops the memoized runs which are only used by matches starting before the given position.
+         */
+        public void discardBefore(int position) {
+            for (; discarded < position; discarded++) {
+                forwardRuns[discarded] = null;
+                backwardRuns[input.length() - discarded] = null;
+            }
+        }
+
+        private int longestMatch(int[][] runs, Automaton automaton, String text, int position, int index) {
+            if (index == -1) {
+                return -1;
+            }
+            int[] run = runs[position];
+            if (run == null) {
+                run = automaton.run(text, position);
+                runs[position] = run;
+            }
+            /* run holds pairs of automaton index and match length, sorted by index */
+            int low = 0;
+            int high = run.length / 2 - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleIndex = run[2 * middle];
+                if (middleIndex < index) {
+                    low = middle + 1;
+                } else if (middleIndex > index) {
+                    high = middle - 1;
+                } else {
+                    return run[2 * middle + 1];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Lazily determinized product of several {@link RunAutomaton}s. A state of the product holds the states of the
+     * automata which are still running; its transitions are computed on first use, for the classes of characters
+     * on which none of the automata distinguish.
+     */
+    private static final class Automaton implements Serializable {
+        private final RunAutomaton[] automata;
+        private final char[] points;
+
+        private transient volatile ConcurrentHashMap<State, State> states;
+        private transient volatile State initial;
+
+        Automaton(RunAutomaton[] automata) {
+            this.automata = automata;
+            TreeSet<Character> points = new TreeSet<>();
+            points.add('\u0000');
+            for (RunAutomaton automaton : automata) {
+                for (char point : automaton.getCharIntervals()) {
+                    points.add(point);
+                }
+            }
+            this.points = new char[points.size()];
+            int i = 0;
+            for (char point : points) {
+                this.points[i++] = point;
+            }
+        }
+
+        private State initial() {
+            State result = initial;
+            if (result == null) {
+                synchronized (this) {
+                    result = initial;
+                    if (result == null) {
+                        states = new ConcurrentHashMap<>();
+                        int[] indices = new int[automata.length];
+                        int[] runStates = new int[automata.length];
+                        for (int i = 0; i < automata.length; i++) {
+                            indices[i] = i;
+                            runStates[i] = automata[i].getInitialState();
+                        }
+                        result = intern(new State(indices, runStates));
+                        initial = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private State intern(State state) {
+            State existing = states.putIfAbsent(state, state);
+            return existing != null ? existing : state;
+        }
+
+        private int charClass(char c) {
+            int i = Arrays.binarySearch(points, c);
+            return i >= 0 ? i : -i - 2;
+        }
+
+        private State step(State state, char c) {
+            int charClass = charClass(c);
+            State next = state.next[charClass];
+            if (next == null) {
+                char point = points[charClass];
+                int[] indices = new int[state.indices.length];
+                int[] runStates = new int[state.indices.length];
+                int size = 0;
+                for (int i = 0; i < state.indices.length; i++) {
+                    int runState = automata[state.indices[i]].step(state.runStates[i], point);
+                    if (runState != -1) {
+                        indices[size] = state.indices[i];
+                        runStates[size] = runState;
+                        size++;
+                    }
+                }
+                next = intern(new State(Arrays.copyOf(indices, size), Arrays.copyOf(runStates, size)));
+                state.next[charClass] = next;
+            }
+            return next;
+        }
+
+        /**
+         * Returns the longest match of each automaton at the given position, as pairs of automaton index and match
+         * length sorted by index. Automata which do not match are omitted.
+         */
+        int[] run(String text, int position) {
+            int[] lengths = new int[automata.length];
+            BitSet matched = new BitSet(automata.length);
+            State state = initial();
+            int length = 0;
+            while (true) {
+                for (int index : state.accepting) {
+                    lengths[index] = length;
+                    matched.set(index);
+                }
+                if (state.indices.length == 0 || position + length == text.length()) {
+                    break;
+                }
+                state = step(state, text.charAt(position + length));
+                length++;
+            }
+            int[] run = new int[2 * matched.cardinality()];
+            int i = 0;
+            for (int index = matched.nextSetBit(0); index >= 0; index = matched.nextSetBit(index + 1)) {
+                run[i++] = index;
+                run[i++] = lengths[index];
+            }
+            return run;
+        }
+
+        private final class State {
+            /* the indices of the automata still running, and their states */
+            private final int[] indices;
+            private final int[] runStates;
+            /* the indices of the automata in an accepting state */
+            private final int[] accepting;
+            private final State[] next;
+            private final int hashCode;
+
+            State(int[] indices, int[] runStates) {
+                this.indices = indices;
+                this.runStates = runStates;
+                int[] accepting = new int[indices.length];
+                int size = 0;
+                for (int i = 0; i < indices.length; i++) {
+                    if (automata[indices[i]].isAccept(runStates[i])) {
+                        accepting[size++] = indices[i];
+                    }
+                }
+                this.accepting = Arrays.copyOf(accepting, size);
+                this.next = indices.length == 0 ? null : new State[points.length];
+                this.hashCode = 31 * Arrays.hashCode(indices) + Arrays.hashCode(runStates);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof State)) return false;
+                State that = (State) o;
+                return hashCode == that.hashCode && Arrays.equals(indices, that.indices)
+                        && Arrays.equals(runStates, that.runStates);
+            }
+
+            @Override
+            public int hashCode() {
+                return hashCode;
+            }
+        }
+    }
+}
@@ -12,29 +12,46 @@ import org.kframework.parser.binary.BinaryParser;
 import org.kframework.utils.errorsystem.KEMException;
 
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Writes a KAST term to the KAST binary format. For details of that format, see {@link BinaryParser}.
+ *
+ * The term is written through a buffer of bounded size, so that its encoding never needs to be held in memory
+ * as a whole.
  */
 public class ToBinary {
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     public static void apply(OutputStream out, K k) {
+        apply(Channels.newChannel(out), k);
+    }
+
+    /**
+     * Writes the given term to the channel, which is left open.
+     */
+    public static void apply(WritableByteChannel channel, K k) {
         try {
-            DataOutputStream data = new DataOutputStream(out);
+            ToBinary toBinary = new ToBinary(channel);
             //magic
-            data.writeByte(0x7f);
-            data.writeBytes("KAST");
+            toBinary.writeByte(0x7f);
+            for (char c : "KAST".toCharArray()) {
+                toBinary.writeByte(c);
+            }
             //version
-            data.writeByte(4);
-            data.writeByte(0);
-            data.writeByte(0);
-            new ToBinary(data).traverse(k);
-            data.writeByte(BinaryParser.END);
+            toBinary.writeByte(4);
+            toBinary.writeByte(0);
+            toBinary.writeByte(0);
+            toBinary.traverse(k);
+            toBinary.writeByte(BinaryParser.END);
+            toBinary.flush();
         } catch (IOException e) {
             throw KEMException.criticalError("Could not write K term to binary", e, k);
         }
@@ -47,18 +64,50 @@ public class ToBinary {
         return out.toByteArray();
     }
 
-    DataOutputStream data;
-    Map<String, Integer> interns = new HashMap<>();
+    private final WritableByteChannel channel;
+    private final ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Map<String, Integer> interns = new HashMap<>();
 
-    private ToBinary(DataOutputStream data) {
-        this.data = data;
+    private ToBinary(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Ensures that at least {@code n} bytes can be written to the buffer, writing its contents to the channel if needed.
+     */
+    private void reserve(int n) throws IOException {
+        if (data.remaining() < n) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        data.flip();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+        data.clear();
+    }
+
+    private void writeByte(int b) throws IOException {
+        reserve(1);
+        data.put((byte) b);
+    }
+
+    private void writeBoolean(boolean b) throws IOException {
+        writeByte(b ? 1 : 0);
+    }
+
+    private void writeInt(int i) throws IOException {
+        reserve(4);
+        data.putInt(i);
     }
 
     private void traverse(K k) throws IOException {
         if (k instanceof KToken) {
             KToken tok = (KToken) k;
 
-            data.writeByte(BinaryParser.KTOKEN);
+            writeByte(BinaryParser.KTOKEN);
             writeString(tok.s());
             writeString(tok.sort().name());
 
@@ -68,10 +117,10 @@ public class ToBinary {
             for (K item : app.asIterable()) {
                 traverse(item);
             }
-            data.writeByte(BinaryParser.KAPPLY);
+            writeByte(BinaryParser.KAPPLY);
             writeString(app.klabel().name());
-            data.writeBoolean(app.klabel() instanceof KVariable);
-            data.writeInt(app.size());
+            writeBoolean(app.klabel() instanceof KVariable);
+            writeInt(app.size());
 
         } else if (k instanceof KSequence) {
             KSequence seq = (KSequence) k;
@@ -79,13 +128,13 @@ public class ToBinary {
             for (K item : seq.asIterable()) {
                 traverse(item);
             }
-            data.writeByte(BinaryParser.KSEQUENCE);
-            data.writeInt(seq.size());
+            writeByte(BinaryParser.KSEQUENCE);
+            writeInt(seq.size());
 
         } else if (k instanceof KVariable) {
             KVariable var = (KVariable) k;
 
-            data.writeByte(BinaryParser.KVARIABLE);
+            writeByte(BinaryParser.KVARIABLE);
             writeString(var.name());
 
         } else if (k instanceof KRewrite) {
@@ -93,24 +142,27 @@ public class ToBinary {
 
             traverse(rew.left());
             traverse(rew.right());
-            data.writeByte(BinaryParser.KREWRITE);
+            writeByte(BinaryParser.KREWRITE);
 
         } else if (k instanceof InjectedKLabel) {
             InjectedKLabel inj = (InjectedKLabel) k;
 
-            data.writeByte(BinaryParser.INJECTEDKLABEL);
+            writeByte(BinaryParser.INJECTEDKLABEL);
             writeString(inj.klabel().name());
-            data.writeBoolean(inj.klabel() instanceof KVariable);
+            writeBoolean(inj.klabel() instanceof KVariable);
 
         }
     }
 
     private void writeString(String s) throws IOException {
         int idx = interns.getOrDefault(s, interns.size());
-        data.writeInt(interns.size() - idx);
+        writeInt(interns.size() - idx);
         if (idx == interns.size()) {
-            data.writeInt(s.length());
-            data.writeChars(s);
+            writeInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                reserve(2);
+                data.putChar(s.charAt(i));
+            }
             interns.put(s, interns.size());
         }
     }
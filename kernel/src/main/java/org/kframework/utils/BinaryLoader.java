@@ -17,6 +17,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 
 @RequestScoped
 public class BinaryLoader {
@@ -51,6 +54,30 @@ public class BinaryLoader {
         }
     }
 
+    /**
+     * Saves the given object to a temporary file which is then atomically renamed to the given file name, so that
+     * concurrent readers see either the previous contents of the file or the new ones, never a partial write.
+     */
+    public void saveAtomicallyOrDie(File fileName, Object o) {
+        File dir = fileName.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw KEMException.criticalError("Could not create directory " + dir);
+        }
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(fileName.getName(), ".tmp", dir);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                save(out, o);
+            }
+            Files.move(tmp.toPath(), fileName.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+            throw KEMException.criticalError("Could not write to " + fileName, e);
+        }
+    }
+
     private void saveOrDie(OutputStream out, Object o, String fileName) {
         try {
             save(out, o);
@@ -70,6 +97,49 @@ public class BinaryLoader {
         }
     }
 
+    /**
+     * Saves the given objects as the sections of a {@link KompiledArchive}, so that they can be loaded separately.
+     */
+    public void saveArchiveOrDie(File fileName, Map<String, ?> sections) {
+        File dir = fileName.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw KEMException.criticalError("Could not create directory " + dir);
+        }
+        try {
+            KompiledArchive.write(fileName, sections);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write to " + fileName, e);
+        }
+    }
+
+    public KompiledArchive openArchiveOrDie(File fileName) {
+        if (fileName.exists() && !KompiledArchive.isArchive(fileName)) {
+            throw KEMException.criticalError("Kompiled definition is out of date with "
+                    + "the latest version of the K tool. Please re-run kompile and try again.");
+        }
+        try {
+            return KompiledArchive.open(fileName);
+        } catch (ObjectStreamException e) {
+            throw KEMException.criticalError("Kompiled definition is out of date with "
+                    + "the latest version of the K tool. Please re-run kompile and try again.", e);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read from " + fileName, e);
+        }
+    }
+
+    public <T> T loadOrDie(Class<T> cls, KompiledArchive archive, String section) {
+        try {
+            return archive.get(cls, section);
+        } catch (ClassNotFoundException e) {
+            throw new AssertionError("Something wrong with deserialization", e);
+        } catch (ObjectStreamException e) {
+            throw KEMException.criticalError("Kompiled definition is out of date with "
+                    + "the latest version of the K tool. Please re-run kompile and try again.", e);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read section " + section + " of kompiled definition", e);
+        }
+    }
+
     public <T> T load(Class<T> cls, File fileName) throws IOException, ClassNotFoundException {
         return cls.cast(load(fileName));
     }
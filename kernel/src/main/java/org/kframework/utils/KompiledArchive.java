@@ -0,0 +1,215 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A file holding several named kompiled artifacts (sections) which are decoded independently, on first use.
+ * <p>
+ * The file starts with a header and a directory giving the offset in the file and the length of each section:
+ * <pre>
+ * int magic, int version
+ * int sectionCount, (utf name, long offset, long length)*
+ * section data
+ * </pre>
+ * Each section is a single object graph written with Java serialization, so a section is always decoded as a
+ * whole: the archive only saves the decoding of the sections which are not requested. Objects reachable from
+ * several sections are stored, and decoded, once per section.
+ * <p>
+ * Sections are serialized straight to the file, and the directory is filled in once they are all written. Each
+ * section is memory-mapped on its own, so a section can be at most {@link Integer#MAX_VALUE} bytes long, but the
+ * file as a whole can be larger.
+ */
+public class KompiledArchive {
+
+    private static final int MAGIC = 0x4b42494e; // "KBIN"
+    private static final int VERSION = 3;
+
+    private final Map<String, ByteBuffer> directory = new LinkedHashMap<>();
+    private final Map<String, Object> sections = new HashMap<>();
+
+    private KompiledArchive(File file) throws IOException {
+        String[] names;
+        long[][] entries;
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < 8 || header.readInt() != MAGIC) {
+                throw new InvalidClassException("not a kompiled archive");
+            }
+            if (header.readInt() != VERSION) {
+                throw new InvalidClassException("unsupported kompiled archive version");
+            }
+            names = new String[header.readInt()];
+            entries = new long[names.length][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = header.readUTF();
+                entries[i] = new long[]{header.readLong(), header.readLong()};
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            for (int i = 0; i < names.length; i++) {
+                if (entries[i][0] < 0 || entries[i][1] < 0 || entries[i][0] + entries[i][1] > channel.size()) {
+                    throw new InvalidClassException("section " + names[i] + " is outside of the kompiled archive");
+                }
+                if (entries[i][1] > Integer.MAX_VALUE) {
+                    throw new IOException("section " + names[i] + " of kompiled archive is too large to be mapped");
+                }
+                directory.put(names[i], channel.map(FileChannel.MapMode.READ_ONLY, entries[i][0], entries[i][1]));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given file starts with the header of a kompiled archive.
+     */
+    public static boolean isArchive(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Memory-maps the sections of the given file. No section is decoded until it is requested by {@link #get(String)}.
+     */
+    public static KompiledArchive open(File file) throws IOException {
+        return new KompiledArchive(file);
+    }
+
+    /**
+     * Writes the given sections to a file, in iteration order.
+     */
+    public static void write(File file, Map<String, ?> sections) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            channel.truncate(0);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            /* the directory, with placeholders for the offsets and lengths of the sections */
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(sections.size());
+            long[] entryPositions = new long[sections.size()];
+            int i = 0;
+            for (String name : sections.keySet()) {
+                header.writeUTF(name);
+                entryPositions[i++] = header.size();
+                header.writeLong(0);
+                header.writeLong(0);
+            }
+            header.flush();
+
+            long[][] entries = new long[sections.size()][];
+            i = 0;
+            for (Object section : sections.values()) {
+                long offset = channel.position();
+                try (ObjectOutputStream serializer = new ObjectOutputStream(new UnclosedOutputStream(out))) {
+                    serializer.writeObject(section);
+                }
+                entries[i++] = new long[]{offset, channel.position() - offset};
+            }
+
+            for (i = 0; i < entries.length; i++) {
+                ByteBuffer entry = ByteBuffer.allocate(2 * Long.BYTES);
+                entry.putLong(entries[i][0]).putLong(entries[i][1]).flip();
+                channel.write(entry, entryPositions[i]);
+            }
+        }
+    }
+
+    public Set<String> sections() {
+        return Collections.unmodifiableSet(directory.keySet());
+    }
+
+    public boolean contains(String name) {
+        return directory.containsKey(name);
+    }
+
+    /**
+     * Returns the object stored in the given section, decoding it on first use.
+     */
+    public synchronized Object get(String name) throws IOException, ClassNotFoundException {
+        Object result = sections.get(name);
+        if (result == null) {
+            ByteBuffer entry = directory.get(name);
+            if (entry == null) {
+                throw new IOException("missing section " + name + " in kompiled archive");
+            }
+            ByteBuffer section = entry.duplicate();
+            try (ObjectInputStream deserializer = new ObjectInputStream(new ByteBufferInputStream(section))) {
+                result = deserializer.readObject();
+            }
+            sections.put(name, result);
+        }
+        return result;
+    }
+
+    public <T> T get(Class<T> cls, String name) throws IOException, ClassNotFoundException {
+        return cls.cast(get(name));
+    }
+
+    /* an output stream which flushes, instead of closing, the underlying stream when it is closed */
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.google.common.collect.HashBiMap;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /** A BiMap in which values are automatically added to the map
  * if one doesn't already exist. In other words, it is a BiMap
@@ -58,4 +59,12 @@ public class AutoVivifyingBiMap<K extends AutoVivifyingBiMap.Create<V>,V> {
     public Set<K> keySet() { return map.keySet(); }
 
     public Set<Map.Entry<K, V>> entrySet() { return map.entrySet(); }
+
+    public int size() { return map.size(); }
+
+    /**
+     * Removes the mappings of the keys satisfying the given predicate.
+     * @param predicate    The predicate selecting the keys to remove
+     */
+    public void removeKeys(Predicate<? super K> predicate) { map.keySet().removeIf(predicate); }
 }
@@ -11,6 +11,7 @@ import org.kframework.kompile.KompileOptions;
 import org.kframework.krun.KRunOptions;
 import org.kframework.main.GlobalOptions;
 import org.kframework.utils.BinaryLoader;
+import org.kframework.utils.KompiledArchive;
 import org.kframework.utils.Stopwatch;
 import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
@@ -62,16 +63,22 @@ public class DefinitionLoadingModule extends AbstractModule {
 
 
     @Provides @DefinitionScoped
-    CompiledDefinition koreDefinition(BinaryLoader loader, FileUtil files) {
-        return loader.loadOrDie(CompiledDefinition.class, files.resolveKompiled("compiled.bin"));
+    KompiledArchive compiledArchive(BinaryLoader loader, FileUtil files) {
+        return loader.openArchiveOrDie(files.resolveKompiled("compiled.bin"));
+    }
+
+    @Provides @DefinitionScoped
+    CompiledDefinition koreDefinition(BinaryLoader loader, KompiledArchive archive) {
+        return loader.loadOrDie(CompiledDefinition.class, archive, CompiledDefinition.DEFINITION_SECTION);
     }
 
 
     @Provides
-    KompileOptions kompileOptions(Provider<Context> context, Provider<CompiledDefinition> compiledDef, Provider<FileUtil> files) {
+    KompileOptions kompileOptions(Provider<Context> context, Provider<KompiledArchive> archive, BinaryLoader loader, Provider<FileUtil> files) {
         // a hack, but it's good enough for what we need from it, which is a temporary solution
         if (files.get().resolveKompiled("compiled.bin").exists()) {
-            KompileOptions res = compiledDef.get().kompileOptions;
+            // only decodes the options, not the whole definition
+            KompileOptions res = loader.loadOrDie(KompileOptions.class, archive.get(), CompiledDefinition.KOMPILE_OPTIONS_SECTION);
             return res;
         } else {
             Context res = context.get();
@@ -43,4 +43,16 @@ public class SMTOptions implements Serializable {
 
     @Parameter(names="--z3-impl-timeout", description="The default soft timeout (in milli seconds) of Z3 for checking implication.")
     public int z3ImplTimeout = 5000;
+
+    @Parameter(names="--z3-pool-size", description="Number of persistent Z3 sessions to keep alive and reuse across queries. " +
+            "Each session loads the SMT prelude once and checks queries incrementally. 0 starts a fresh solver for every query.")
+    public int z3PoolSize = 0;
+
+    @Parameter(names="--smt-cache-size", description="Maximum number of SMT query results to remember. " +
+            "Queries are identified up to variable renaming and reordering of conjuncts. 0 disables the cache.")
+    public int smtCacheSize = 0;
+
+    @Parameter(names="--smt-persistent-cache", description="Also store SMT query results in the kompiled directory " +
+            "and reuse them across runs. Requires --smt-cache-size.")
+    public boolean smtPersistentCache = false;
 }
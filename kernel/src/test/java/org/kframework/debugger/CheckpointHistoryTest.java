@@ -0,0 +1,93 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.debugger;
+
+import org.junit.Test;
+import org.kframework.kore.K;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+
+public class CheckpointHistoryTest {
+
+    private static K config(int step) {
+        return KApply(KLabel("<k>"), KToken(Integer.toString(step), Sort("Int")));
+    }
+
+    private static CheckpointHistory history(int size, int interval) {
+        CheckpointHistory history = CheckpointHistory.of(0, config(0));
+        for (int i = 1; i < size; i++) {
+            history = history.put(i * interval, config(i * interval));
+        }
+        return history;
+    }
+
+    @Test
+    public void testFloorAndTruncate() {
+        CheckpointHistory history = history(1000, 10);
+        assertEquals(1000, history.size());
+        assertEquals(0, history.firstStep());
+        assertEquals(9990, history.lastStep());
+        for (int step = 0; step < 10000; step += 7) {
+            assertEquals(step / 10 * 10, history.floorStep(step));
+        }
+        assertEquals(-1, history.floorStep(-1));
+        assertNull(history.get(15));
+        assertEquals(config(420), history.get(420));
+
+        CheckpointHistory prefix = history.truncate(425);
+        assertEquals(420, prefix.lastStep());
+        assertEquals(43, prefix.size());
+        assertNull(history.truncate(-5));
+        /* the original history is unchanged */
+        assertEquals(9990, history.lastStep());
+        assertEquals(config(9990), history.get(9990));
+    }
+
+    @Test
+    public void testThin() {
+        CheckpointHistory thinned = history(11, 10).thin();
+        assertEquals(6, thinned.size());
+        assertEquals(0, thinned.firstStep());
+        assertEquals(100, thinned.lastStep());
+        assertEquals(80, thinned.floorStep(95));
+        assertEquals(config(20), thinned.get(20));
+        assertNull(thinned.get(10));
+
+        assertEquals(2, thinned.spacing());
+        assertEquals(6, thinned.residentSize());
+        assertEquals(4, thinned.thin().spacing());
+
+        thinned = history(4, 10).thin();
+        assertEquals(3, thinned.size());
+        assertEquals(20, thinned.floorStep(25));
+        assertEquals(30, thinned.lastStep());
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        File directory = Files.createTempDirectory("checkpoints").toFile();
+        CheckpointHistory history = history(10, 1);
+        CheckpointHistory prefix = history.truncate(4);
+        assertEquals(10, history.residentSize());
+        assertEquals(5, prefix.residentSize());
+        history.spill(3, step -> new File(directory, step + ".bin"));
+        assertEquals(3, history.residentSize());
+        /* spilled through the history it shares its checkpoints with */
+        prefix.spill(0, step -> {
+            throw new AssertionError("checkpoint at step " + step + " was already spilled");
+        });
+        assertEquals(0, prefix.residentSize());
+        assertEquals(config(2), prefix.get(2));
+        assertEquals(config(2), history.get(2));
+        history.spill(3, step -> {
+            throw new AssertionError("checkpoint at step " + step + " was already spilled");
+        });
+        /* reading a spilled checkpoint does not keep it in memory */
+        assertEquals(3, history.residentSize());
+        assertEquals(config(2), history.get(2));
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import org.junit.Test;
+import org.kframework.attributes.Att;
+import org.kframework.definition.Definition;
+import org.kframework.definition.DefinitionTransformer;
+import org.kframework.definition.Module;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class CompilationCacheTest {
+
+    private final AtomicInteger transformations = new AtomicInteger();
+
+    private Module module(Att productionAtt) {
+        return Module("TEST", Set(), Set(
+                Production("foo", Sort("Exp"), Seq(Terminal("foo"), NonTerminal(Sort("Exp"))), productionAtt)), Att());
+    }
+
+    /* a pass recording the attributes of the productions of the module it transforms */
+    private Definition compile(CompilationCache cache, Module module) {
+        DefinitionTransformer pass = DefinitionTransformer.from(m -> {
+            transformations.incrementAndGet();
+            return Module(m.name(), m.imports(), m.localSentences(),
+                    m.att().add("seen", stream(m.productions()).map(p -> p.att().toString()).sorted().reduce("", String::concat)));
+        }, "test pass");
+        return cache.cached("test pass", pass).apply(Definition(module, Set(module), Att()));
+    }
+
+    /* the cache as saved by a run of kompile and loaded by the next one */
+    private static CompilationCache nextRun(CompilationCache cache) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(cache);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return (CompilationCache) ois.readObject();
+        }
+    }
+
+    @Test
+    public void testUnchangedModuleIsReused() throws IOException, ClassNotFoundException {
+        CompilationCache cache = new CompilationCache();
+        Definition first = compile(cache, module(Att()));
+        assertEquals(1, transformations.get());
+
+        cache = nextRun(cache);
+        Definition second = compile(cache, module(Att()));
+        assertEquals(1, transformations.get());
+        assertEquals("1/1 cached modules", cache.summary());
+        assertEquals(first.mainModule().att(), second.mainModule().att());
+    }
+
+    @Test
+    public void testEditedProductionAttributeIsRecompiled() throws IOException, ClassNotFoundException {
+        CompilationCache cache = new CompilationCache();
+        compile(cache, module(Att()));
+        assertEquals(1, transformations.get());
+
+        Module strict = module(Att().add("strict"));
+        /* the modules are equal, although the attributes of their productions differ */
+        assertEquals(module(Att()), strict);
+
+        cache = nextRun(cache);
+        Definition second = compile(cache, strict);
+        assertEquals(2, transformations.get());
+        assertEquals("0/1 cached modules", cache.summary());
+        assertTrue(second.mainModule().att().<String>get("seen").get().contains("strict"));
+    }
+
+    @Test
+    public void testEditedModuleAttributeIsRecompiled() throws IOException, ClassNotFoundException {
+        CompilationCache cache = new CompilationCache();
+        compile(cache, module(Att()));
+
+        Module edited = Module("TEST", Set(), module(Att()).localSentences(), Att().add("edited"));
+        cache = nextRun(cache);
+        compile(cache, edited);
+        assertEquals(2, transformations.get());
+    }
+}
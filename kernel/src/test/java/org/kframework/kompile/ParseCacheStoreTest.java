@@ -0,0 +1,133 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kframework.definition.Module;
+import org.kframework.main.GlobalOptions;
+import org.kframework.parser.concrete2kore.ParseCache;
+import org.kframework.utils.BinaryLoader;
+import org.kframework.utils.errorsystem.KExceptionManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.Att;
+import static org.kframework.definition.Constructors.*;
+import static org.kframework.kore.KORE.*;
+
+public class ParseCacheStoreTest {
+
+    private final KExceptionManager kem = new KExceptionManager(new GlobalOptions());
+    private File kompiled;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        kompiled = Files.createTempDirectory("kompiled").toFile();
+        kompiled.deleteOnExit();
+        directory = new File(kompiled, "cache");
+    }
+
+    private Module module(String name, String terminal) {
+        return Module(name, Set(), Set(Production(terminal, Sort("Exp"), Seq(Terminal(terminal)), Att())), Att());
+    }
+
+    private ParseCacheStore store() {
+        return new ParseCacheStore(directory, false, true, new BinaryLoader(kem), kem);
+    }
+
+    private static void parse(ParseCache cache, String bubble) {
+        cache.getCache().put(bubble, new ParseCache.ParsedSentence(KToken(bubble, Sort("Exp")), Collections.emptySet()));
+    }
+
+    private List<String> shards() {
+        String[] files = directory.list((dir, file) -> file.endsWith(".bin"));
+        List<String> shards = files == null ? Collections.emptyList() : Arrays.asList(files);
+        shards.forEach(file -> new File(directory, file).deleteOnExit());
+        return shards;
+    }
+
+    @Test
+    public void testShardIsLoadedWhenItsModuleIsFirstNeeded() {
+        ParseCacheStore first = store();
+        ParseCacheStore second = store();
+        parse(first.get(module("A", "foo")), "foo");
+        first.save();
+
+        /* the second store was created before the shard was written */
+        assertTrue(second.get(module("A", "foo")).getCache().containsKey("foo"));
+        assertEquals(1, shards().size());
+    }
+
+    @Test
+    public void testShardOfAnotherSyntaxIsNotUsed() throws IOException {
+        ParseCacheStore store = store();
+        parse(store.get(module("A", "foo")), "foo");
+        store.save();
+        File shardA = new File(directory, shards().get(0));
+        parse(store.get(module("B", "bar")), "bar");
+        store.save();
+        File shardB = directory.listFiles((dir, file) -> file.startsWith("B-"))[0];
+
+        /* as if the shards of the two modules had the same name */
+        Files.copy(shardA.toPath(), shardB.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ParseCache cache = store().get(module("B", "bar"));
+        assertEquals(module("B", "bar"), cache.getModule());
+        assertTrue(cache.getCache().isEmpty());
+    }
+
+    @Test
+    public void testOnlyShardsWithNewParsesAreWrittenBack() {
+        ParseCacheStore store = store();
+        parse(store.get(module("A", "foo")), "foo");
+        store.save();
+        File shard = new File(directory, shards().get(0));
+
+        ParseCacheStore next = store();
+        next.get(module("A", "foo"));
+        assertTrue(shard.delete());
+        next.save();
+        assertFalse(shard.exists());
+    }
+
+    @Test
+    public void testConcurrentParsesAreMerged() {
+        ParseCacheStore first = store();
+        ParseCacheStore second = store();
+        parse(first.get(module("A", "foo")), "foo");
+        parse(second.get(module("A", "foo")), "foo bar");
+        first.save();
+        second.save();
+
+        ParseCache cache = store().get(module("A", "foo"));
+        assertEquals(new HashSet<>(Arrays.asList("foo", "foo bar")), cache.getCache().keySet());
+    }
+
+    @Test
+    public void testSupersededShardsAreDeleted() throws IOException {
+        File legacy = new File(kompiled, "cache.bin");
+        assertTrue(legacy.createNewFile());
+        ParseCacheStore store = store();
+        parse(store.get(module("A", "foo")), "foo");
+        parse(store.get(module("AB", "foo")), "foo");
+        store.save();
+        assertEquals(2, shards().size());
+        assertFalse(legacy.exists());
+
+        ParseCacheStore next = store();
+        parse(next.get(module("A", "bar")), "bar");
+        next.save();
+        assertEquals(2, shards().size());
+        assertEquals(1, directory.listFiles((dir, file) -> file.startsWith("A-")).length);
+        assertTrue(store().get(module("A", "bar")).getCache().containsKey("bar"));
+    }
+}
@@ -4,9 +4,11 @@ package org.kframework.parser.concrete2kore.kernel;
 import com.google.common.collect.Sets;
 import dk.brics.automaton.RegExp;
 import dk.brics.automaton.RunAutomaton;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Assert;
 import org.junit.Test;
 import org.kframework.attributes.Att;
+import org.kframework.attributes.Source;
 import org.kframework.builtin.Sorts;
 import org.kframework.definition.Production;
 import org.kframework.definition.ProductionItem;
@@ -23,6 +25,7 @@ import org.kframework.parser.concrete2kore.kernel.Grammar.PrimitiveState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RegExState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RuleState;
 import org.kframework.parser.concrete2kore.kernel.Rule.WrapLabelRule;
+import org.kframework.utils.errorsystem.ParseFailedException;
 import org.pcollections.ConsPStack;
 
 import java.lang.management.ManagementFactory;
@@ -30,6 +33,7 @@ import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import static org.kframework.Collections.*;
 import static org.kframework.definition.Constructors.*;
@@ -579,6 +583,78 @@ public class ParserTest {
         return Ambiguity.apply(Sets.newHashSet(terms));
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        // A ::= B*  [klabel(seq)]
+        // B ::= "[0-9]+" ","  [klabel(elem)]
+        NonTerminal nt1 = new NonTerminal("StartNT");
+        NonTerminal nt2 = new NonTerminal("ElemNT");
+
+        NonTerminalState nts = new NonTerminalState("NT", nt1, nt2);
+        RuleState rs1 = new RuleState("RuleStateId1", nt1, new WrapLabelRule(label("seq")));
+        nt1.entryState.next.add(nts);
+        nt1.entryState.next.add(rs1);
+        nts.next.add(nts);
+        nts.next.add(rs1);
+        rs1.next.add(nt1.exitState);
+
+        RegExState num = new RegExState("Num", nt2, regex("[0-9]+"));
+        RegExState comma = new RegExState("Comma", nt2, regex(","));
+        RuleState rs2 = new RuleState("RuleStateId2", nt2, new WrapLabelRule(label("elem")));
+        nt2.entryState.next.add(num);
+        num.next.add(comma);
+        comma.next.add(rs2);
+        rs2.next.add(nt2.exitState);
+
+        Grammar grammar = new Grammar();
+        grammar.add(nt1);
+        grammar.compile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append(i).append(',');
+        }
+        String input = sb.toString();
+        Term expected = new Parser(input).parse(nt1, 0);
+        Term result = new Parser(input, Source.apply("<unknown>"), 1, 1, true).parse(nt1, 0);
+        Assert.assertEquals("Streaming check: ", expected, result);
+
+        Parser parser = new Parser(input + "1x,", Source.apply("<unknown>"), 1, 1, true);
+        try {
+            parser.parse(nt1, 0);
+            Assert.fail("Expected a parse error");
+        } catch (ParseFailedException e) {
+            Parser.ParseError error = parser.getErrors();
+            Assert.assertEquals(input.length() + 1, error.position);
+            Assert.assertEquals(Collections.singleton(Pair.of(null, comma)), error.tokens);
+        }
+    }
+
+    @Test
+    public void testTokenScanner() throws Exception {
+        NonTerminal nt1 = new NonTerminal("StartNT");
+        RunAutomaton empty = regex("#");
+        List<RegExState> states = Arrays.asList(
+                new RegExState("if", nt1, empty, regex("if"), regex("[a-z]")),
+                new RegExState("int", nt1, empty, regex("int"), regex("[a-z]")),
+                new RegExState("id", nt1, regex("[a-z]"), regex("[a-z]+"), empty),
+                new RegExState("num", nt1, regex("-"), regex("[0-9]+"), regex("[a-z]")),
+                new RegExState("plus", nt1, empty, regex("\\+\\+?"), empty),
+                new RegExState("whitespace", nt1, Grammar.pattern));
+        TokenScanner scanner = new TokenScanner(states);
+        String input = "if intx+++ifint -12 /* c */ 3a i";
+        String reverseInput = new StringBuilder(input).reverse().toString();
+        TokenScanner.Matches matches = scanner.new Matches(input, reverseInput);
+        for (int position = 0; position <= input.length(); position++) {
+            for (RegExState state : states) {
+                Set<PrimitiveState.MatchResult> expected = state.matches(input, reverseInput, position);
+                int matchEnd = matches.matchEnd(state, position);
+                Assert.assertEquals(state.name + " at " + position,
+                        expected.isEmpty() ? -1 : expected.iterator().next().matchEnd, matchEnd);
+            }
+        }
+    }
+
     public static Production prod(Sort sort, ProductionItem... pi) {
         return Production(sort, immutable(Arrays.asList(pi)));
     }
@@ -12,7 +12,17 @@ import org.kframework.utils.BinaryLoader;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.kframework.kore.KORE.*;
@@ -53,6 +63,107 @@ public class BinaryKASTTest {
         assertEquals(KRewrite(term, term), result2);
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ToBinary.apply(Channels.newChannel(out), term);
+        byte[] str = out.toByteArray();
+        assertArrayEquals(ToBinary.apply(term), str);
+        ByteBuffer in = ByteBuffer.wrap(str);
+        // a channel returning one byte at a time, to exercise refilling the parser's buffer
+        ReadableByteChannel trickle = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (!in.hasRemaining()) {
+                    return -1;
+                }
+                dst.put(in.get());
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertEquals(term, BinaryParser.parse(trickle));
+        File tmp = File.createTempFile("tmp", null);
+        Files.write(tmp.toPath(), str);
+        assertEquals(term, BinaryParser.parse(tmp));
+    }
+
+    @Test
+    public void testConsecutiveTerms() throws Exception {
+        K other = KApply(KLabel("bar"), KToken("foo", Sort("Bar")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ToBinary.apply(out, term);
+        ToBinary.apply(out, other);
+        out.write(42);
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(term, BinaryParser.parse(in));
+        assertEquals(other, BinaryParser.parse(in));
+        // the stream is left right after the end of the second term
+        assertEquals(42, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testChannelIsReadInLargeBlocks() throws Exception {
+        List<K> tokens = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            tokens.add(KToken("token" + i, Sort("Bar")));
+        }
+        K large = KApply(KLabel("tokens"), KList(tokens));
+        ByteBuffer in = ByteBuffer.wrap(ToBinary.apply(large));
+        int[] reads = {0};
+        ReadableByteChannel counting = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) {
+                reads[0]++;
+                if (!in.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(dst.remaining(), in.remaining());
+                ByteBuffer chunk = in.slice();
+                chunk.limit(n);
+                dst.put(chunk);
+                in.position(in.position() + n);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        assertEquals(large, BinaryParser.parse(counting));
+        /* one read per block of 64KB, give or take the block left partly unread by each refill */
+        assertTrue(reads[0] + " reads for " + in.capacity() + " bytes", reads[0] <= 2 * (in.capacity() / (1 << 16) + 1));
+    }
+
+    @Test
+    public void testStreamWithoutMarkIsReadAhead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ToBinary.apply(out, term);
+        out.write(42);
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(out.toByteArray())) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        assertEquals(term, BinaryParser.parse(in));
+        assertEquals(-1, in.read());
+    }
+
     @Test @Ignore
     public void testLarger() throws Exception {
         BinaryLoader loader = new BinaryLoader(new KExceptionManager(new GlobalOptions()));
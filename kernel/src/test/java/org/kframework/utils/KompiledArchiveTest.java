@@ -0,0 +1,65 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class KompiledArchiveTest {
+
+    private static int decoded;
+
+    /* counts how many times it is deserialized */
+    private static class Counted implements Serializable {
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            decoded++;
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = File.createTempFile("archive", ".bin");
+        file.deleteOnExit();
+        Map<String, Integer> map = new HashMap<>();
+        map.put("foo", 1);
+        map.put("bar", 2);
+        List<String> list = new ArrayList<>(Arrays.asList("foo", "baz", "\u00e9\u4e2d"));
+        KompiledArchive.write(file, ImmutableMap.of("map", map, "list", list, "options", "foo"));
+
+        assertTrue(KompiledArchive.isArchive(file));
+        KompiledArchive archive = KompiledArchive.open(file);
+        assertEquals(Arrays.asList("map", "list", "options"), new ArrayList<>(archive.sections()));
+        Map<?, ?> loadedMap = archive.get(Map.class, "map");
+        assertEquals(list, archive.get(List.class, "list"));
+        assertEquals(map, loadedMap);
+        assertSame(loadedMap, archive.get("map"));
+        assertEquals("foo", archive.get("options"));
+    }
+
+    @Test
+    public void testSectionsAreDecodedOnDemand() throws Exception {
+        File file = File.createTempFile("archive", ".bin");
+        file.deleteOnExit();
+        KompiledArchive.write(file, ImmutableMap.of("options", "foo", "definition", new Counted()));
+
+        decoded = 0;
+        KompiledArchive archive = KompiledArchive.open(file);
+        assertEquals("foo", archive.get("options"));
+        assertEquals(0, decoded);
+        archive.get("definition");
+        archive.get("definition");
+        assertEquals(1, decoded);
+    }
+}
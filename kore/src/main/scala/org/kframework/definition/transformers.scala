@@ -16,23 +16,29 @@ object ModuleTransformer {
     fromSentenceTransformer((m: Module, s: Sentence) => f(s), name)
 
   def fromSentenceTransformer(f: (Module, Sentence) => Sentence, name: String): ModuleTransformer =
-    ModuleTransformer(m => {
-      val newSentences = m.localSentences map { s =>
-        try {
-          f(m, s)
-        } catch {
-          case e: KEMException =>
-            e.exception.addTraceFrame("while executing phase \"" + name + "\" on sentence at"
-              + "\n\t" + s.att.get(classOf[Source]).map(_.toString).getOrElse("<none>")
-              + "\n\t" + s.att.get(classOf[Location]).map(_.toString).getOrElse("<none>"))
-            throw e
-        }
+    new SentenceTransformer(f, name, false)
+
+  private[definition] def transformSentences(f: (Module, Sentence) => Sentence, name: String, parallel: Boolean, m: Module): Module = {
+    def transform(s: Sentence): Sentence =
+      try {
+        f(m, s)
+      } catch {
+        case e: KEMException =>
+          e.exception.addTraceFrame("while executing phase \"" + name + "\" on sentence at"
+            + "\n\t" + s.att.get(classOf[Source]).map(_.toString).getOrElse("<none>")
+            + "\n\t" + s.att.get(classOf[Location]).map(_.toString).getOrElse("<none>"))
+          throw e
       }
-      if (newSentences != m.localSentences)
-        Module(m.name, m.imports, newSentences, m.att)
+    val newSentences =
+      if (parallel)
+        m.localSentences.par.map(transform).seq
       else
-        m
-    }, name)
+        m.localSentences map transform
+    if (newSentences != m.localSentences)
+      Module(m.name, m.imports, newSentences, m.att)
+    else
+      m
+  }
 
   def fromRuleBodyTranformer(f: K => K, name: String): ModuleTransformer =
     fromSentenceTransformer(_ match { case r: Rule => r.copy(body = f(r.body)); case s => s }, name)
@@ -59,21 +65,93 @@ object ModuleTransformer {
 /**
   * Transform all modules, transforming each module after its imports.
   * The f function take a module with all the imported modules already transformed, and changes the current module.
+  *
+  * In parallel mode, [[applyAll]] transforms modules which do not import each other concurrently, so f must be
+  * thread safe. The result does not depend on the order in which modules are transformed.
+  *
+  * Before transforming a module, the transformer looks up a result computed earlier, e.g., by a previous run of
+  * kompile, in previousResults (see [[reusing]]).
   */
-class ModuleTransformer(f: Module => Module, name: String) extends (Module => Module) {
+class ModuleTransformer(f: Module => Module, val name: String, val parallel: Boolean,
+                        previousResults: Module => Option[Module]) extends (Module => Module) {
+  def this(f: Module => Module, name: String, parallel: Boolean) = this(f, name, parallel, _ => None)
+
+  def this(f: Module => Module, name: String) = this(f, name, false)
+
   val memoization = collection.concurrent.TrieMap[Module, Module]()
 
+  /**
+    * Returns a transformer applying the same transformation in parallel mode.
+    */
+  def inParallel: ModuleTransformer = new ModuleTransformer(f, name, true, previousResults)
+
+  /**
+    * Returns a transformer applying the same transformation, but reusing the results computed earlier given by
+    * results, e.g., by a previous run of kompile. The function decides which modules are unchanged, since
+    * [[Module.equals]] ignores most attributes.
+    */
+  def reusing(results: Module => Option[Module]): ModuleTransformer = new ModuleTransformer(f, name, parallel, results)
+
   override def apply(input: Module): Module = {
-    memoization.getOrElseUpdate(input, {
+    memoization.getOrElseUpdate(input, previousResults(input).getOrElse({
       var newImports = input.imports map this
       if (newImports != input.imports)
         f(Module(input.name, newImports, input.localSentences, input.att))
       else
         f(input)
-    })
+    }))
+  }
+
+  /**
+    * Returns the results of this transformation on those of the given modules it has been applied to.
+    */
+  def resultsFor(modules: Iterable[Module]): Map[Module, Module] =
+    modules.flatMap(m => memoization.get(m).map(m -> _)).toMap
+
+  /**
+    * Transforms the given modules and all the modules they import, by levels of the import graph: the modules of
+    * a level only import modules of lower levels, which are already transformed (and memoized) when the level is
+    * reached. In parallel mode, the modules of a level are transformed concurrently.
+    */
+  def applyAll(modules: Iterable[Module]): Unit = {
+    val levels = collection.mutable.Map[Module, Int]()
+    def level(m: Module): Int = levels.get(m) match {
+      case Some(l) => l
+      case None =>
+        val l = if (m.imports.isEmpty) 0 else (m.imports map level).max + 1
+        levels.put(m, l)
+        l
+    }
+    modules foreach level
+    levels.groupBy(_._2).toSeq.sortBy(_._1) foreach { case (_, ms) =>
+      if (parallel)
+        ms.keys.par foreach this
+      else
+        ms.keys foreach this
+    }
   }
 }
 
+/**
+  * Transforms all modules sentence by sentence. In parallel mode, the sentences of a module are also transformed
+  * concurrently.
+  */
+class SentenceTransformer(sentenceTransformer: (Module, Sentence) => Sentence, phaseName: String, isParallel: Boolean,
+                          reusedResults: Module => Option[Module])
+  extends ModuleTransformer(
+    (m: Module) => ModuleTransformer.transformSentences(sentenceTransformer, phaseName, isParallel, m),
+    phaseName, isParallel, reusedResults) {
+
+  def this(sentenceTransformer: (Module, Sentence) => Sentence, phaseName: String, isParallel: Boolean) =
+    this(sentenceTransformer, phaseName, isParallel, _ => None)
+
+  override def inParallel: ModuleTransformer =
+    new SentenceTransformer(sentenceTransformer, phaseName, true, reusedResults)
+
+  override def reusing(results: Module => Option[Module]): ModuleTransformer =
+    new SentenceTransformer(sentenceTransformer, phaseName, isParallel, results)
+}
+
 object DefinitionTransformer {
   def fromSentenceTransformer(f: Sentence => Sentence, name: String): DefinitionTransformer =
     DefinitionTransformer(ModuleTransformer.fromSentenceTransformer(f(_), name))
@@ -100,7 +178,20 @@ object DefinitionTransformer {
   def apply(f: Module => Module, name: String): DefinitionTransformer = new DefinitionTransformer(ModuleTransformer(f, name))
 }
 
-class DefinitionTransformer(moduleTransformer: ModuleTransformer) extends (Definition => Definition) {
+class DefinitionTransformer(val moduleTransformer: ModuleTransformer) extends (Definition => Definition) {
+  /**
+    * Returns a transformer applying the same transformation to independent modules, and to the sentences of
+    * each module, concurrently. The underlying module or sentence transformation must be thread safe.
+    */
+  def inParallel: DefinitionTransformer = new DefinitionTransformer(moduleTransformer.inParallel)
+
+  /**
+    * Returns a transformer applying the same transformation, but reusing the given results computed earlier; see
+    * [[ModuleTransformer.reusing]].
+    */
+  def reusing(results: Module => Option[Module]): DefinitionTransformer =
+    new DefinitionTransformer(moduleTransformer.reusing(results))
+
   override def apply(d: Definition): Definition = {
     //    definition.Definition(
     //      moduleTransformer(d.mainModule),
@@ -120,6 +211,8 @@ class SelectiveDefinitionTransformer(moduleTransformer: ModuleTransformer) exten
     // Cosmin: the two lines below are a hack to make sure the two modules are processed by the pass regardless of
     // them not being reachable from the main module
     // I think the right fix would be to explicitly import them when needed
+    if (moduleTransformer.parallel)
+      moduleTransformer.applyAll(Seq(d.mainModule) ++ d.getModule("STDIN-STREAM") ++ d.getModule("STDOUT-STREAM"))
     d.getModule("STDIN-STREAM").foreach(moduleTransformer)
     d.getModule("STDOUT-STREAM").foreach(moduleTransformer)
     definition.Definition(
@@ -22,6 +22,20 @@ trait Rewriter {
    */
   def execute(k: kore.K, depth: Optional[Integer]): RewriterResult
 
+  /**
+   * Executes each of the given independent configurations as execute does. Implementations may execute them
+   * concurrently.
+   * @return the results of the executions, in the order of the configurations
+   */
+  def executeAll(ks: java.util.List[_ <: kore.K], depth: Optional[Integer]): java.util.List[RewriterResult] = {
+    val results = new java.util.ArrayList[RewriterResult](ks.size())
+    val it = ks.iterator()
+    while (it.hasNext) {
+      results.add(execute(it.next(), depth))
+    }
+    results
+  }
+
 
   def `match`(k: kore.K, rule: Rule): java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]
 
@@ -39,4 +53,9 @@ trait Rewriter {
   def executeAndMatch(k: kore.K, depth: Optional[Integer], rule: Rule): Tuple2[RewriterResult, java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]]
 
   def prove(rules: java.util.List[Rule]): java.util.List[kore.K]
+
+  /**
+   * Releases the resources held by the rewriter, such as its threads. The rewriter must not be used afterwards.
+   */
+  def close(): Unit = {}
 }